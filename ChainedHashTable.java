@@ -1,8 +1,15 @@
 import java.io.PrintWriter;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.Random;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A simple implementation of hash tables.
@@ -27,14 +34,32 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
    * We expand the hash table when the load factor is greater than LOAD_FACTOR
    * (see constants below).
    * 
-   * Since some combinations of data and hash function may lead to a situation
-   * in which we get a surprising relationship between values (e.g., all the
-   * hash values are 0 mod 32), when expanding the hash table, we incorporate a
-   * random number.
+   * The number of buckets is always a power of two, so we pick a bucket by
+   * masking the hash rather than dividing. Masking keeps only the low bits,
+   * so we first mix the key's hash code with a seed chosen at startup. That
+   * also keeps clients from picking keys ahead of time that share a bucket.
+   * JSONString keys (the usual case) are hashed from their characters with
+   * the seed, since their hash codes are String's, whose collisions are
+   * easy to come by, and no mixing helps two keys with the same hash code.
+   *
+   * Those keys still share a bucket, so a chain longer than
+   * TREEIFY_THRESHOLD whose keys are all Comparable and of one class
+   * becomes a SortedChain, ordered by mixed hash and then by compareTo,
+   * which we search by bisection. Lookups in such a chain take O(log n)
+   * however the keys collide. (compareTo must agree with equals, as it
+   * does for JSONString.) A sorted chain is still an ArrayList, so
+   * iteration doesn't need to tell the difference.
    * 
    * For experimentation and such, we allow the client to supply a Reporter that
    * is used to report behind-the-scenes work, such as calls to expand the
    * table.
+   *
+   * Since reporting is too expensive to leave on, we also keep a few
+   * primitive counters (resizes, gets, probes) that stats() combines with a
+   * scan of the buckets to give a snapshot of the table. Counting gets
+   * and probes is off unless countGets turns it on: lookups don't
+   * otherwise write to the table, so threads can share one that no one
+   * changes.
    */
 
   // +-----------+-------------------------------------------------------
@@ -46,6 +71,26 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
    */
   static final double LOAD_FACTOR = 0.5;
 
+  /**
+   * The smallest number of buckets.
+   */
+  static final int MIN_CAPACITY = 8;
+
+  /**
+   * The largest number of buckets.
+   */
+  static final int MAX_CAPACITY = 1 << 30;
+
+  /**
+   * The length past which we sort a chain.
+   */
+  static final int TREEIFY_THRESHOLD = 8;
+
+  /**
+   * The seed for hashing keys, chosen once per run.
+   */
+  static final int SEED = new SecureRandom().nextInt();
+
   // +--------+----------------------------------------------------------
   // | Fields |
   // +--------+
@@ -74,10 +119,29 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
   boolean REPORT_BASIC_CALLS = false;
 
   /**
-   * Our helpful random number generator, used primarily when expanding the size
-   * of the table..
+   * Do we count calls to get and the pairs they examine?
+   */
+  boolean COUNT_GETS = false;
+
+  /**
+   * The number of times we have expanded the table.
+   */
+  long resizes = 0;
+
+  /**
+   * The total time spent expanding the table, in nanoseconds.
+   */
+  long resizeNanos = 0;
+
+  /**
+   * The number of calls to get, if we count them.
    */
-  Random rand;
+  long gets = 0;
+
+  /**
+   * The number of pairs examined by calls to get, if we count them.
+   */
+  long probes = 0;
 
   // +--------------+----------------------------------------------------
   // | Constructors |
@@ -87,7 +151,6 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
    * Create a new hash table.
    */
   public ChainedHashTable() {
-    this.rand = new Random();
     this.clear();
     this.reporter = null;
   } // ChainedHashTable
@@ -100,6 +163,18 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
     this.reporter = reporter;
   } // ChainedHashTable(Reporter)
 
+  /**
+   * Create a new hash table with room for expectedSize values before it
+   * needs to expand.
+   */
+  public ChainedHashTable(int expectedSize) {
+    this();
+    int capacity = capacityFor(expectedSize);
+    if (capacity != this.buckets.length) {
+      this.buckets = new Object[capacity];
+    } // if
+  } // ChainedHashTable(int)
+
   // +-------------------+-------------------------------------------
   // | SimpleMap methods |
   // +-------------------+
@@ -135,20 +210,28 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
     int index = find(key);
     @SuppressWarnings("unchecked")
     ArrayList<KVPair<K,V>> alist = (ArrayList<KVPair<K,V>>) buckets[index];
+    if (COUNT_GETS) {
+      ++gets;
+    } // if
     if (alist == null){
       if (REPORT_BASIC_CALLS && (reporter != null)) {
         reporter.report("get(" + key + ") failed");
       } // if reporter != null
       throw new IndexOutOfBoundsException("Invalid key: " + key);
     } else {
-      KVPair<K,V> pair;
-      for(int i = 0; i < alist.size(); i++){
-        pair = alist.get(i);
-        if(pair.key().equals(key)){
-          return pair.value();
-        }
-      }
-      throw new IndexOutOfBoundsException("Invalid key: " + key);
+      long found = locate(alist, key);
+      int i = (int) found;
+      int probed = (int) (found >>> 32);
+      if (COUNT_GETS) {
+        probes += probed;
+      } // if
+      if (probed > JSONEvents.LONG_CHAIN) {
+        recordLongChain(index, alist, probed);
+      } // if
+      if (i < 0) {
+        throw new IndexOutOfBoundsException("Invalid key: " + key);
+      } // if
+      return alist.get(i).value();
     } // get
   } // get(K)
 
@@ -165,16 +248,17 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
   @Override
   public V remove(K key) {
     int index = find(key);
+    @SuppressWarnings("unchecked")
     ArrayList<KVPair<K,V>> alist = (ArrayList<KVPair<K,V>>) buckets[index];
-    for (KVPair<K,V> target: alist) {
-      if (target.key().equals(key)) {
-        V temp = target.value();
-        alist.remove(target);
-        size--;
-        return temp;
-      }
-    }
-    return null;
+    if (alist == null) {
+      return null;
+    } // if
+    int i = indexIn(alist, key);
+    if (i < 0) {
+      return null;
+    } // if
+    size--;
+    return alist.remove(i).value();
   } // remove(K)
 
   /**
@@ -190,22 +274,14 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
 
     // Find out where the key belongs and put the pair there.
     int index = find(key);
-    ArrayList<KVPair<K,V>> alist = (ArrayList<KVPair<K,V>>) this.buckets[index];
-    // Special case: Nothing there yet
-    if (alist == null) {
-      alist = new ArrayList<KVPair<K,V>>();
-      this.buckets[index] = alist;
-    }
-    KVPair<K,V> pair;
-    for (int i = 0; i < alist.size(); i++) {
-      pair = alist.get(i);
-      if (pair.key().equals(key)) {
-        result = pair.value();
-        alist.set(i, new KVPair<K,V>(key, value));
-        return result;
-      }
-    }
-    alist.add(new KVPair<K,V>(key, value));
+    ArrayList<KVPair<K,V>> alist = chainFor(index);
+    int i = indexIn(alist, key);
+    if (i >= 0) {
+      result = alist.get(i).value();
+      alist.set(i, new KVPair<K,V>(key, value));
+      return result;
+    } // if
+    add(index, alist, i, new KVPair<K,V>(key, value));
     ++this.size;
 
     // Report activity, if appropriate
@@ -217,6 +293,29 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
     return result;
   } // set(K,V)
 
+  /**
+   * Add many key/value pairs at once. We size the table once for all of
+   * them, then store the pairs themselves (KVPairs are immutable), rather
+   * than checking the load factor and building a new pair for each one.
+   * As with set, a later pair replaces an earlier one with the same key.
+   */
+  public void putAll(Collection<KVPair<K,V>> pairs) {
+    ensureCapacity(this.size + pairs.size());
+    for (KVPair<K,V> pair : pairs) {
+      insert(pair);
+    } // for
+  } // putAll(Collection)
+
+  /**
+   * Make sure the table can hold expectedSize values without expanding.
+   */
+  public void ensureCapacity(int expectedSize) {
+    int capacity = capacityFor(expectedSize);
+    if (capacity > this.buckets.length) {
+      rehash(capacity);
+    } // if
+  } // ensureCapacity(int)
+
   /**
    * Get the size of the dictionary - the number of values stored.
    */
@@ -245,41 +344,78 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
       int subindex = 0;
 
       public boolean hasNext() {
-        //STUB
-        return false;
-      } // hasNext()
-
-      public KVPair<K,V> next() {
+        // Skip over empty and used-up buckets.
         while(index < buckets.length){
           Object temp = buckets[index];
-          if(temp != null){
-
-            ArrayList<KVPair<K,V>> cur = (ArrayList<KVPair<K,V>>) temp;
-            while(subindex < cur.size()){
-              KVPair<K,V> o = cur.get(subindex);
-              subindex++;
-              return o;
-            }
-            subindex = 0;
-
+          if((temp != null) && (subindex < ((ArrayList<?>) temp).size())){
+            return true;
           }
           index++;
+          subindex = 0;
         }
-        return null;
+        return false;
+      } // hasNext()
+
+      @SuppressWarnings("unchecked")
+      public KVPair<K,V> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        ArrayList<KVPair<K,V>> cur = (ArrayList<KVPair<K,V>>) buckets[index];
+        return cur.get(subindex++);
       } // next()
     }; // new Iterator
   } // iterator()
 
+  /**
+   * Get a spliterator for the key/value pairs. It splits by ranges of
+   * buckets, so that parallel streams can divide the table without
+   * copying it.
+   */
+  @Override
+  public Spliterator<KVPair<K,V>> spliterator() {
+    return new BucketSpliterator<K,V>(this.buckets, 0, this.buckets.length, 0,
+        this.size, Spliterator.SIZED);
+  } // spliterator()
+
+  /**
+   * Stream the key/value pairs.
+   */
+  public Stream<KVPair<K,V>> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  } // stream()
+
+  /**
+   * Stream the key/value pairs in parallel.
+   */
+  public Stream<KVPair<K,V>> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
+  } // parallelStream()
+
   // +-------------------+-------------------------------------------
   // | HashTable methods |
   // +-------------------+
 
   /**
-   * Clear the whole table.
+   * Clear the whole table. We keep the buckets and empty the chains in
+   * place, so a table that is cleared and refilled (see JSONPool)
+   * allocates nothing until it outgrows its old size. Sorted chains are
+   * dropped, since the next keys may not collide.
    */
   @Override
   public void clear() {
-    this.buckets = new Object[10];
+    if (this.buckets == null) {
+      this.buckets = new Object[MIN_CAPACITY];
+    } else {
+      for (int i = 0; i < this.buckets.length; i++) {
+        Object chain = this.buckets[i];
+        if (chain instanceof SortedChain) {
+          this.buckets[i] = null;
+        } else if (chain != null) {
+          ((ArrayList<?>) chain).clear();
+        } // if/else
+      } // for
+    } // if/else
     this.size = 0;
   } // clear()
 
@@ -312,6 +448,78 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
     REPORT_BASIC_CALLS = report;
   } // reportBasicCalls
 
+  /**
+   * Should we count calls to get, and the pairs they examine, for
+   * stats()? Don't turn it on for a table that threads share.
+   */
+  public void countGets(boolean count) {
+    COUNT_GETS = count;
+  } // countGets(boolean)
+
+  /**
+   * Take a snapshot of the table's internal statistics. The counters are
+   * cheap to maintain; the snapshot itself scans every bucket.
+   */
+  public HashTableStats stats() {
+    int[] histogram = new int[HashTableStats.HISTOGRAM_SLOTS];
+    int maxChainLength = 0;
+    int sortedChains = 0;
+    for (int i = 0; i < this.buckets.length; i++) {
+      @SuppressWarnings("unchecked")
+      ArrayList<KVPair<K,V>> alist = (ArrayList<KVPair<K,V>>) this.buckets[i];
+      int length = (alist == null) ? 0 : alist.size();
+      histogram[Math.min(length, HashTableStats.HISTOGRAM_SLOTS - 1)]++;
+      maxChainLength = Math.max(maxChainLength, length);
+      if (alist instanceof SortedChain) {
+        ++sortedChains;
+      } // if
+    } // for
+    return new HashTableStats(this.size, this.buckets.length, this.resizes,
+        this.resizeNanos, this.gets, this.probes, histogram, maxChainLength,
+        sortedChains);
+  } // stats()
+
+  /**
+   * Reset the counters behind stats().
+   */
+  public void resetStats() {
+    this.resizes = 0;
+    this.resizeNanos = 0;
+    this.gets = 0;
+    this.probes = 0;
+  } // resetStats()
+
+  /**
+   * Estimate the bytes of heap the table holds of its own: the table,
+   * the buckets, the chains, and the pairs, but not the keys and values
+   * (see JSONHash.retainedSize).
+   */
+  long overhead() {
+    // size, buckets, reporter, REPORT_BASIC_CALLS, COUNT_GETS, and the
+    // four counters.
+    long result = RetainedSize.align(RetainedSize.OBJECT_HEADER + 4
+        + 2 * RetainedSize.REFERENCE + 1 + 1 + 4 * 8);
+    if (this.buckets == null) {
+      return result;
+    } // if
+    result += RetainedSize.references(this.buckets.length);
+    for (Object bucket : this.buckets) {
+      if (bucket != null) {
+        ArrayList<?> chain = (ArrayList<?>) bucket;
+        if (bucket instanceof SortedChain) {
+          result += RetainedSize.align(RetainedSize.ARRAY_LIST + 2 * RetainedSize.REFERENCE)
+              + RetainedSize.align(RetainedSize.ARRAY_HEADER
+                  + 4L * ((SortedChain<?,?>) bucket).hashes.length);
+        } else {
+          result += RetainedSize.ARRAY_LIST;
+        } // if/else
+        result += RetainedSize.references(RetainedSize.listCapacity(chain.size()));
+        result += RetainedSize.PAIR * chain.size();
+      } // if
+    } // for
+    return result;
+  } // overhead()
+
   // +---------+---------------------------------------------------------
   // | Helpers |
   // +---------+
@@ -321,10 +529,26 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
    */
   void expand() {
     // Figure out the size of the new table
-    int newSize = 2 * this.buckets.length + rand.nextInt(10);
+    if (this.buckets.length >= MAX_CAPACITY) {
+      return;
+    } // if
+    int newSize = 2 * this.buckets.length;
     if (REPORT_BASIC_CALLS && (reporter != null)) {
       reporter.report("Expanding to " + newSize + " elements.");
     } // if reporter != null
+    rehash(newSize);
+  } // expand()
+
+  /**
+   * Move every pair into a new table of newSize buckets. The keys are
+   * already distinct, so each pair goes at the end of its new chain (or
+   * in its place, if the chain is sorted).
+   */
+  @SuppressWarnings("unchecked")
+  void rehash(int newSize) {
+    JSONEvents.Expand event = new JSONEvents.Expand();
+    event.begin();
+    long start = System.nanoTime();
     // Remember the old table
     Object[] oldBuckets = this.buckets;
     // Create a new table of that size.
@@ -340,20 +564,218 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
       }
       for(int j = 0; j < alist.size(); j++){
         pair = alist.get(j);
-        set(pair.key(), pair.value());
-        this.size--;
+        int index = find(pair.key());
+        ArrayList<KVPair<K,V>> chain = chainFor(index);
+        int where = (chain instanceof SortedChain)
+            ? indexIn(chain, pair.key()) : -(chain.size() + 1);
+        add(index, chain, where, pair);
       }
     }
-  } // expand()
+    ++this.resizes;
+    this.resizeNanos += System.nanoTime() - start;
+    event.end();
+    if (event.shouldCommit()) {
+      event.size = this.size;
+      event.oldBuckets = oldBuckets.length;
+      event.newBuckets = newSize;
+      event.commit();
+    } // if
+  } // rehash(int)
+
+  /**
+   * Record a lookup that examined probes pairs of the chain for bucket
+   * index, if a recording wants to know (see JSONEvents).
+   */
+  void recordLongChain(int index, ArrayList<KVPair<K,V>> chain, int probes) {
+    JSONEvents.LongChain event = new JSONEvents.LongChain();
+    if (event.shouldCommit()) {
+      event.bucket = index;
+      event.chainLength = chain.size();
+      event.probes = probes;
+      event.sorted = (chain instanceof SortedChain);
+      event.size = this.size;
+      event.buckets = this.buckets.length;
+      event.keyType = chain.get(0).key().getClass();
+      event.commit();
+    } // if
+  } // recordLongChain(int, ArrayList, int)
+
+  /**
+   * Store a pair without checking the load factor.
+   */
+  void insert(KVPair<K,V> pair) {
+    int index = find(pair.key());
+    ArrayList<KVPair<K,V>> alist = chainFor(index);
+    int i = indexIn(alist, pair.key());
+    if (i >= 0) {
+      alist.set(i, pair);
+      return;
+    } // if
+    add(index, alist, i, pair);
+    ++this.size;
+  } // insert(KVPair)
+
+  /**
+   * Find key in chain. If key isn't there, return -(p + 1), where p is
+   * the position at which to add it.
+   */
+  int indexIn(ArrayList<KVPair<K,V>> chain, K key) {
+    return (int) locate(chain, key);
+  } // indexIn(ArrayList, K)
+
+  /**
+   * Find key in chain, as indexIn does, and count the pairs we look at.
+   * Returns the count in the high 32 bits and what indexIn would return
+   * in the low 32 bits.
+   */
+  static <K,V> long locate(ArrayList<KVPair<K,V>> chain, K key) {
+    if (chain instanceof SortedChain) {
+      SortedChain<K,V> sorted = (SortedChain<K,V>) chain;
+      if (key.getClass() != sorted.keyClass) {
+        // No key in the chain can equal it.
+        return found(0, -(chain.size() + 1));
+      } // if
+      int hash = hash(key);
+      int probed = 0;
+      int lo = 0;
+      int hi = chain.size() - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        ++probed;
+        int order = compare(key, hash, sorted.get(mid).key(), sorted.hashes[mid]);
+        if (order == 0) {
+          return found(probed, mid);
+        } else if (order < 0) {
+          hi = mid - 1;
+        } else {
+          lo = mid + 1;
+        } // if/else
+      } // while
+      return found(probed, -(lo + 1));
+    } // if
+    for (int i = 0; i < chain.size(); i++) {
+      if (chain.get(i).key().equals(key)) {
+        return found(i + 1, i);
+      } // if
+    } // for
+    return found(chain.size(), -(chain.size() + 1));
+  } // locate(ArrayList, K)
+
+  /**
+   * Pack a probe count and an index, for locate.
+   */
+  static long found(int probed, int index) {
+    return ((long) probed << 32) | (index & 0xFFFFFFFFL);
+  } // found(int, int)
+
+  /**
+   * Add a pair whose key isn't in the chain for bucket index, where is
+   * what indexIn returned for it. Sorts the chain once it gets too long,
+   * and goes back to an unsorted chain if a key of another class arrives.
+   */
+  @SuppressWarnings("unchecked")
+  void add(int index, ArrayList<KVPair<K,V>> chain, int where, KVPair<K,V> pair) {
+    if (chain instanceof SortedChain) {
+      if (pair.key().getClass() == ((SortedChain<K,V>) chain).keyClass) {
+        chain.add(-(where + 1), pair);
+        return;
+      } // if
+      chain = new ArrayList<KVPair<K,V>>(chain);
+      this.buckets[index] = chain;
+    } // if
+    chain.add(pair);
+    if ((chain.size() > TREEIFY_THRESHOLD) && sortable(chain)) {
+      this.buckets[index] = new SortedChain<K,V>(chain);
+    } // if
+  } // add(int, ArrayList, int, KVPair)
+
+  /**
+   * Get the chain for a bucket, creating it if need be.
+   */
+  @SuppressWarnings("unchecked")
+  ArrayList<KVPair<K,V>> chainFor(int index) {
+    ArrayList<KVPair<K,V>> alist = (ArrayList<KVPair<K,V>>) this.buckets[index];
+    if (alist == null) {
+      alist = new ArrayList<KVPair<K,V>>();
+      this.buckets[index] = alist;
+    } // if
+    return alist;
+  } // chainFor(int)
+
+  /**
+   * Figure out how many buckets we need to hold expectedSize values
+   * without going over the load factor.
+   */
+  static int capacityFor(int expectedSize) {
+    double needed = Math.ceil(expectedSize / LOAD_FACTOR);
+    int capacity = MIN_CAPACITY;
+    while ((capacity < needed) && (capacity < MAX_CAPACITY)) {
+      capacity <<= 1;
+    } // while
+    return capacity;
+  } // capacityFor(int)
 
   /**
    * Find the index of the entry with a given key. If there is no such entry,
    * return the index of an entry we can use to store that key.
    */
   int find(K key) {
-    return Math.abs(key.hashCode()) % this.buckets.length;
+    return hash(key) & (this.buckets.length - 1);
   } // find(K)
 
+  /**
+   * Compute the seeded, mixed hash of a key.
+   */
+  static int hash(Object key) {
+    int h = (key instanceof JSONString)
+        ? ((JSONString) key).hash(SEED)
+        : key.hashCode() ^ SEED;
+    return mix(h);
+  } // hash(Object)
+
+  /**
+   * Mix the bits of a hash (with the finalizer from MurmurHash3), so that
+   * every bit of h affects the low ones.
+   */
+  static int mix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  } // mix(int)
+
+  /**
+   * Order key (whose hash is hash) against other (whose hash is
+   * otherHash), for sorted chains: by hash first, then by compareTo.
+   */
+  @SuppressWarnings("unchecked")
+  static int compare(Object key, int hash, Object other, int otherHash) {
+    int order = Integer.compare(hash, otherHash);
+    if (order != 0) {
+      return order;
+    } // if
+    return ((Comparable<Object>) key).compareTo(other);
+  } // compare(Object, int, Object, int)
+
+  /**
+   * Determine if the keys in chain can be sorted: they must all be
+   * Comparable and of one class.
+   */
+  static boolean sortable(ArrayList<? extends KVPair<?,?>> chain) {
+    Class<?> keyClass = chain.get(0).key().getClass();
+    if (!Comparable.class.isAssignableFrom(keyClass)) {
+      return false;
+    } // if
+    for (KVPair<?,?> pair : chain) {
+      if (pair.key().getClass() != keyClass) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // sortable(ArrayList)
+
   /**
    * Returns true if other is the same as the KVPair, returns false otherwise.
    * 
@@ -379,5 +801,188 @@ public class ChainedHashTable<K,V> implements HashTable<K,V> {
     return true;
   } // equals
 
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A long chain, kept in order by hash and then by key, so that we can
+   * search it by bisection. We keep the hash of each key alongside, so
+   * that a search hashes only the key it looks for.
+   */
+  static class SortedChain<K,V> extends ArrayList<KVPair<K,V>> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The class of every key in the chain.
+     */
+    final Class<?> keyClass;
+
+    /**
+     * The hashes of the keys, in the same order as the pairs. Only the
+     * first size() are in use.
+     */
+    int[] hashes;
+
+    /**
+     * Sort the pairs of chain into a new sorted chain.
+     */
+    SortedChain(ArrayList<KVPair<K,V>> chain) {
+      super(chain.size());
+      this.keyClass = chain.get(0).key().getClass();
+      int count = chain.size();
+      int[] unsorted = new int[count];
+      Integer[] order = new Integer[count];
+      for (int i = 0; i < count; i++) {
+        unsorted[i] = hash(chain.get(i).key());
+        order[i] = i;
+      } // for
+      Arrays.sort(order, (a, b) -> compare(chain.get(a).key(), unsorted[a],
+          chain.get(b).key(), unsorted[b]));
+      this.hashes = new int[count + (count >> 1)];
+      for (int i = 0; i < count; i++) {
+        super.add(chain.get(order[i]));
+        this.hashes[i] = unsorted[order[i]];
+      } // for
+    } // SortedChain(ArrayList)
+
+    /**
+     * Add pair at the end, keeping its hash alongside.
+     */
+    @Override
+    public boolean add(KVPair<K,V> pair) {
+      add(size(), pair);
+      return true;
+    } // add(KVPair)
+
+    /**
+     * Add pair at index, keeping its hash alongside.
+     */
+    @Override
+    public void add(int index, KVPair<K,V> pair) {
+      int size = size();
+      if (size == this.hashes.length) {
+        this.hashes = Arrays.copyOf(this.hashes, size + (size >> 1) + 1);
+      } // if
+      System.arraycopy(this.hashes, index, this.hashes, index + 1, size - index);
+      this.hashes[index] = hash(pair.key());
+      super.add(index, pair);
+    } // add(int, KVPair)
+
+    /**
+     * Remove the pair at index, and its hash.
+     */
+    @Override
+    public KVPair<K,V> remove(int index) {
+      KVPair<K,V> result = super.remove(index);
+      System.arraycopy(this.hashes, index + 1, this.hashes, index, size() - index);
+      return result;
+    } // remove(int)
+  } // class SortedChain<K,V>
+
+  /**
+   * A spliterator over a range of buckets. Splitting hands the first half
+   * of the range to a new spliterator. Only a spliterator over the whole
+   * table knows its size exactly; the halves estimate theirs.
+   */
+  static class BucketSpliterator<K,V> implements Spliterator<KVPair<K,V>> {
+    /**
+     * The buckets of the table.
+     */
+    final Object[] table;
+
+    /**
+     * The bucket we're in.
+     */
+    int index;
+
+    /**
+     * One past the last bucket we cover.
+     */
+    final int end;
+
+    /**
+     * The next pair to visit in the current bucket.
+     */
+    int subindex;
+
+    /**
+     * The (estimated) number of pairs left.
+     */
+    long remaining;
+
+    /**
+     * Our characteristics beyond DISTINCT and NONNULL: SIZED until we
+     * split, and nothing after.
+     */
+    int extra;
+
+    /**
+     * Build a spliterator over buckets [index, end) of table.
+     */
+    BucketSpliterator(Object[] table, int index, int end, int subindex,
+        long remaining, int extra) {
+      this.table = table;
+      this.index = index;
+      this.end = end;
+      this.subindex = subindex;
+      this.remaining = remaining;
+      this.extra = extra;
+    } // BucketSpliterator(Object[], int, int, int, long, int)
+
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super KVPair<K,V>> action) {
+      while (this.index < this.end) {
+        ArrayList<KVPair<K,V>> chain = (ArrayList<KVPair<K,V>>) this.table[this.index];
+        if ((chain != null) && (this.subindex < chain.size())) {
+          action.accept(chain.get(this.subindex++));
+          if (this.remaining > 0) {
+            --this.remaining;
+          } // if
+          return true;
+        } // if
+        ++this.index;
+        this.subindex = 0;
+      } // while
+      return false;
+    } // tryAdvance(Consumer)
+
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(Consumer<? super KVPair<K,V>> action) {
+      for (; this.index < this.end; this.index++) {
+        ArrayList<KVPair<K,V>> chain = (ArrayList<KVPair<K,V>>) this.table[this.index];
+        if (chain != null) {
+          for (; this.subindex < chain.size(); this.subindex++) {
+            action.accept(chain.get(this.subindex));
+          } // for
+        } // if
+        this.subindex = 0;
+      } // for
+      this.remaining = 0;
+    } // forEachRemaining(Consumer)
+
+    public Spliterator<KVPair<K,V>> trySplit() {
+      int mid = (this.index + this.end) >>> 1;
+      if (mid <= this.index) {
+        return null;
+      } // if
+      this.remaining >>>= 1;
+      BucketSpliterator<K,V> prefix = new BucketSpliterator<K,V>(this.table,
+          this.index, mid, this.subindex, this.remaining, 0);
+      this.index = mid;
+      this.subindex = 0;
+      this.extra = 0;
+      return prefix;
+    } // trySplit()
+
+    public long estimateSize() {
+      return this.remaining;
+    } // estimateSize()
+
+    public int characteristics() {
+      return Spliterator.DISTINCT | Spliterator.NONNULL | this.extra;
+    } // characteristics()
+  } // class BucketSpliterator<K,V>
+
 } // class ChainedHashTable<K,V>
 
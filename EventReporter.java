@@ -0,0 +1,65 @@
+/**
+ * A Reporter that records each message as a JFR event (json.Report; see
+ * JSONEvents) instead of, or as well as, passing it on. Handing one to
+ * code that takes a Reporter, such as a ChainedHashTable, puts its
+ * messages in the recording next to everything else the JVM was doing.
+ * While no recording is taking the events, messages are only passed on.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class EventReporter implements Reporter {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * What to label the messages with (e.g., the name of the table).
+   */
+  final String source;
+
+  /**
+   * The reporter to pass messages on to, or null for none.
+   */
+  final Reporter delegate;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a reporter that only records, labelling messages with source.
+   */
+  public EventReporter(String source) {
+    this(source, null);
+  } // EventReporter(String)
+
+  /**
+   * Build a reporter that records messages, labelled with source, and
+   * passes them on to delegate.
+   */
+  public EventReporter(String source, Reporter delegate) {
+    this.source = source;
+    this.delegate = delegate;
+  } // EventReporter(String, Reporter)
+
+  // +------------------+--------------------------------------------
+  // | Reporter methods |
+  // +------------------+
+
+  /**
+   * Record str, and pass it on.
+   */
+  public void report(String str) {
+    JSONEvents.Report event = new JSONEvents.Report();
+    if (event.shouldCommit()) {
+      event.source = this.source;
+      event.message = str;
+      event.commit();
+    } // if
+    if (this.delegate != null) {
+      this.delegate.report(str);
+    } // if
+  } // report(String)
+
+} // class EventReporter
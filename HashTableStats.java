@@ -0,0 +1,199 @@
+import java.io.PrintWriter;
+
+/**
+ * A snapshot of the internal behavior of a ChainedHashTable, for finding
+ * badly-distributed keys without tracing every call.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class HashTableStats {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of slots in the chain-length histogram. Chains at least
+   * this long share the last slot.
+   */
+  public static final int HISTOGRAM_SLOTS = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of key/value pairs in the table.
+   */
+  final int size;
+
+  /**
+   * The number of buckets in the table.
+   */
+  final int capacity;
+
+  /**
+   * How many times the table has expanded.
+   */
+  final long resizes;
+
+  /**
+   * The total time spent expanding, in nanoseconds.
+   */
+  final long resizeNanos;
+
+  /**
+   * The number of calls to get, if the table counted them (see
+   * ChainedHashTable.countGets).
+   */
+  final long gets;
+
+  /**
+   * The number of pairs examined by those calls to get.
+   */
+  final long probes;
+
+  /**
+   * histogram[i] is the number of buckets holding i pairs.
+   */
+  final int[] histogram;
+
+  /**
+   * The length of the longest chain.
+   */
+  final int maxChainLength;
+
+  /**
+   * The number of chains that were long enough to sort.
+   */
+  final int sortedChains;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a new snapshot.
+   */
+  HashTableStats(int size, int capacity, long resizes, long resizeNanos,
+      long gets, long probes, int[] histogram, int maxChainLength,
+      int sortedChains) {
+    this.size = size;
+    this.capacity = capacity;
+    this.resizes = resizes;
+    this.resizeNanos = resizeNanos;
+    this.gets = gets;
+    this.probes = probes;
+    this.histogram = histogram;
+    this.maxChainLength = maxChainLength;
+    this.sortedChains = sortedChains;
+  } // HashTableStats(...)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing).
+   */
+  public String toString() {
+    return "size=" + size + ", capacity=" + capacity
+        + ", loadFactor=" + loadFactor() + ", resizes=" + resizes
+        + ", resizeNanos=" + resizeNanos + ", gets=" + gets
+        + ", probesPerGet=" + averageProbesPerGet()
+        + ", maxChainLength=" + maxChainLength
+        + ", sortedChains=" + sortedChains;
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of key/value pairs in the table.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  /**
+   * Get the number of buckets in the table.
+   */
+  public int capacity() {
+    return this.capacity;
+  } // capacity()
+
+  /**
+   * Get the ratio of pairs to buckets.
+   */
+  public double loadFactor() {
+    return (double) this.size / this.capacity;
+  } // loadFactor()
+
+  /**
+   * Get the number of times the table has expanded.
+   */
+  public long resizes() {
+    return this.resizes;
+  } // resizes()
+
+  /**
+   * Get the total time spent expanding, in nanoseconds.
+   */
+  public long resizeNanos() {
+    return this.resizeNanos;
+  } // resizeNanos()
+
+  /**
+   * Get the number of calls to get, or 0 if the table didn't count them.
+   */
+  public long gets() {
+    return this.gets;
+  } // gets()
+
+  /**
+   * Get the average number of pairs examined per call to get.
+   */
+  public double averageProbesPerGet() {
+    if (this.gets == 0) {
+      return 0.0;
+    } // if
+    return (double) this.probes / this.gets;
+  } // averageProbesPerGet()
+
+  /**
+   * Get the number of buckets that hold length pairs. The last slot
+   * counts all chains of HISTOGRAM_SLOTS - 1 or more pairs.
+   */
+  public int chainsOfLength(int length) {
+    return this.histogram[Math.min(length, HISTOGRAM_SLOTS - 1)];
+  } // chainsOfLength(int)
+
+  /**
+   * Get the length of the longest chain.
+   */
+  public int maxChainLength() {
+    return this.maxChainLength;
+  } // maxChainLength()
+
+  /**
+   * Get the number of chains that were long enough to sort.
+   */
+  public int sortedChains() {
+    return this.sortedChains;
+  } // sortedChains()
+
+  /**
+   * Dump the snapshot, including the histogram.
+   */
+  public void dump(PrintWriter pen) {
+    pen.println(this.toString());
+    for (int i = 0; i < HISTOGRAM_SLOTS; i++) {
+      if (this.histogram[i] != 0) {
+        pen.println("  " + i + ((i == HISTOGRAM_SLOTS - 1) ? "+" : "") + ": "
+            + this.histogram[i]);
+      } // if
+    } // for
+  } // dump(PrintWriter)
+
+} // class HashTableStats
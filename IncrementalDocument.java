@@ -0,0 +1,418 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+/**
+ * The text of a JSON document together with its parsed value, kept in
+ * step as the text is edited (e.g., in an editor, a keystroke at a
+ * time). We remember where in the text each value lies. An edit
+ * re-parses only the smallest value that holds all of it, and puts the
+ * result in place of the old value in its hash or array. Every hash and
+ * array the edit doesn't touch is the same object after the edit as
+ * before, and an edit costs time in proportion to the value it lands
+ * in, not to the document.
+ *
+ * If the edited value no longer parses on its own (say, a comma or a
+ * bracket was typed), we try the value that holds it, and so on up to
+ * the whole document. If even that fails, edit throws; the edit still
+ * applies to the text, there is no value until a later edit makes the
+ * text parse again, and that edit re-parses the whole document.
+ *
+ * Spans are kept relative to the value that holds them, so an edit
+ * moves the values after it by updating only their siblings on the way
+ * down, not every value in the document.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public final class IncrementalDocument {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The text.
+   */
+  final StringBuilder text;
+
+  /**
+   * The parser we re-parse with.
+   */
+  final JSONParser parser;
+
+  /**
+   * The span of the whole document, or null if the text doesn't parse.
+   */
+  Span root;
+
+  /**
+   * The number of characters the last parse or edit re-parsed.
+   */
+  int reparsed;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Parse text.
+   */
+  public IncrementalDocument(String text) throws ParseException, IOException {
+    this.text = new StringBuilder(text);
+    this.parser = new JSONParser();
+    reparseAll();
+  } // IncrementalDocument(String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the value of the document, or null if the text doesn't parse.
+   */
+  public JSONValue root() {
+    return (this.root != null) ? this.root.value : null;
+  } // root()
+
+  /**
+   * Get the text of the document.
+   */
+  public String text() {
+    return this.text.toString();
+  } // text()
+
+  /**
+   * Get the number of characters the last parse or edit re-parsed.
+   */
+  public int reparsed() {
+    return this.reparsed;
+  } // reparsed()
+
+  /**
+   * Replace the deleted characters at offset with inserted, and bring
+   * the value up to date. Returns the value of the document: the old
+   * one, changed in place, unless the edit re-parsed the whole document.
+   */
+  public JSONValue edit(int offset, int deleted, String inserted)
+      throws ParseException, IOException {
+    if ((offset < 0) || (deleted < 0) || (offset > this.text.length() - deleted)) {
+      throw new IndexOutOfBoundsException("Invalid edit of " + deleted
+          + " characters at " + offset);
+    } // if
+    this.text.replace(offset, offset + deleted, inserted);
+    int delta = inserted.length() - deleted;
+    if ((this.root == null) || !covers(this.root, this.root.start, offset, deleted)) {
+      return reparseAll();
+    } // if
+
+    // Find the values that hold the edit, outermost first.
+    ArrayList<Span> path = new ArrayList<Span>();
+    ArrayList<Integer> starts = new ArrayList<Integer>();
+    ArrayList<Integer> indices = new ArrayList<Integer>();
+    Span span = this.root;
+    int start = this.root.start;
+    int index = -1;
+    while (true) {
+      path.add(span);
+      starts.add(start);
+      indices.add(index);
+      index = childAt(span, start, offset);
+      if (index < 0) {
+        break;
+      } // if
+      Span child = span.children[index];
+      if (!covers(child, start + child.start, offset, deleted)) {
+        break;
+      } // if
+      start += child.start;
+      span = child;
+    } // while
+
+    // Re-parse the innermost value that still parses on its own.
+    for (int level = path.size() - 1; level > 0; level--) {
+      Span old = path.get(level);
+      int oldStart = starts.get(level);
+      String fragment = this.text.substring(oldStart, oldStart + old.length + delta);
+      JSONValue value;
+      try {
+        value = this.parser.parse(new StringReader(fragment));
+      } catch (ParseException e) {
+        continue;
+      } // try/catch
+      Span fresh = spans(this.text, oldStart, oldStart - old.start, value);
+      fresh.key = old.key;
+      replace(path, indices, level, fresh, delta);
+      this.reparsed = fragment.length();
+      return this.root.value;
+    } // for
+    return reparseAll();
+  } // edit(int, int, String)
+
+  /**
+   * Get the innermost value whose text includes the character at
+   * offset, or null if there is none.
+   */
+  public JSONValue valueAt(int offset) {
+    if ((this.root == null) || (offset < this.root.start)
+        || (offset >= this.root.start + this.root.length)) {
+      return null;
+    } // if
+    Span span = this.root;
+    int start = this.root.start;
+    while (true) {
+      int index = childAt(span, start, offset);
+      if (index < 0) {
+        return span.value;
+      } // if
+      Span child = span.children[index];
+      if (offset >= start + child.start + child.length) {
+        return span.value;
+      } // if
+      start += child.start;
+      span = child;
+    } // while
+  } // valueAt(int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Parse the whole text.
+   */
+  JSONValue reparseAll() throws ParseException, IOException {
+    this.root = null;
+    this.reparsed = this.text.length();
+    JSONValue value = this.parser.parse(new StringReader(this.text.toString()));
+    this.root = spans(this.text, 0, 0, value);
+    return value;
+  } // reparseAll()
+
+  /**
+   * Put fresh in place of the span at path[level], in the spans and in
+   * the value that holds it, and move everything after it by delta.
+   */
+  void replace(ArrayList<Span> path, ArrayList<Integer> indices, int level,
+      Span fresh, int delta) {
+    Span parent = path.get(level - 1);
+    int index = indices.get(level);
+    parent.children[index] = fresh;
+    if (parent.value instanceof JSONHash) {
+      ((JSONHash) parent.value).set(fresh.key, fresh.value);
+    } else {
+      ((JSONArray) parent.value).set(index, fresh.value);
+    } // if/else
+    for (int l = level; l > 0; l--) {
+      Span holder = path.get(l - 1);
+      Span[] siblings = holder.children;
+      for (int i = indices.get(l) + 1; i < siblings.length; i++) {
+        siblings[i].start += delta;
+      } // for
+      holder.length += delta;
+    } // for
+  } // replace(ArrayList, ArrayList, int, Span, int)
+
+  /**
+   * Does span, which starts at start, hold an edit of deleted characters
+   * at offset, so that re-parsing its text would take in the whole
+   * edit? A hash or array must keep both its brackets; a scalar may be
+   * edited at either end.
+   */
+  static boolean covers(Span span, int start, int offset, int deleted) {
+    int end = start + span.length;
+    if ((span.value instanceof JSONHash) || (span.value instanceof JSONArray)) {
+      return (start < offset) && (offset + deleted < end);
+    } // if
+    return (start <= offset) && (offset + deleted <= end);
+  } // covers(Span, int, int, int)
+
+  /**
+   * Find the last child of span, which starts at start, that starts at
+   * or before offset. Returns -1 if there is none, or if we don't track
+   * span's children.
+   */
+  static int childAt(Span span, int start, int offset) {
+    Span[] children = span.children;
+    if (children == null) {
+      return -1;
+    } // if
+    int lo = 0;
+    int hi = children.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      if (start + children[mid].start <= offset) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      } // if/else
+    } // while
+    return lo - 1;
+  } // childAt(Span, int, int)
+
+  /**
+   * Find the spans of value, which a parser built from the text at from
+   * (perhaps after whitespace), and of everything in it. The span's
+   * start is relative to base, the start of the value that holds it.
+   */
+  static Span spans(CharSequence text, int from, int base, JSONValue value)
+      throws ParseException, IOException {
+    int start = skipWhitespace(text, from);
+    Span span = new Span(value, start - base);
+    char ch = text.charAt(start);
+    if ((ch == '[') || (ch == '{')) {
+      boolean hash = (ch == '{');
+      // In a hash with repeated keys, the text of an earlier pair needn't
+      // match the value the hash kept. We still scan such text, for its
+      // length, but without a value, and drop its spans below.
+      JSONValue container = value;
+      if (hash ? !(value instanceof JSONHash) : !(value instanceof JSONArray)) {
+        container = null;
+      } // if
+      ArrayList<Span> children = new ArrayList<Span>();
+      int pos = skipWhitespace(text, start + 1);
+      while (text.charAt(pos) != (hash ? '}' : ']')) {
+        JSONString key = null;
+        JSONValue member;
+        if (hash) {
+          int keyEnd = skipString(text, pos);
+          key = key(text, pos, keyEnd);
+          // Skip the colon.
+          pos = skipWhitespace(text, keyEnd) + 1;
+        } // if
+        member = member(container, key, children.size());
+        Span child = spans(text, pos, start, member);
+        child.key = key;
+        children.add(child);
+        pos = skipWhitespace(text, start + child.start + child.length);
+        if (text.charAt(pos) == ',') {
+          pos = skipWhitespace(text, pos + 1);
+        } // if
+      } // while
+      span.length = pos + 1 - start;
+      // With repeated keys, only the last of each is in the hash, so
+      // we drop the spans, and an edit within the hash re-parses it all.
+      if ((container != null) && (children.size() == size(container))) {
+        span.children = children.toArray(new Span[0]);
+      } // if
+    } else if (ch == '"') {
+      span.length = skipString(text, start) - start;
+    } else {
+      int end = start;
+      while ((end < text.length()) && !isDelimiter(text.charAt(end))) {
+        end++;
+      } // while
+      span.length = end - start;
+    } // if/else
+    return span;
+  } // spans(CharSequence, int, int, JSONValue)
+
+  /**
+   * Get the value under key (in a hash) or at index (in an array) of
+   * container, or null if there is none.
+   */
+  static JSONValue member(JSONValue container, JSONString key, int index) {
+    if (container instanceof JSONHash) {
+      try {
+        return ((JSONHash) container).get(key);
+      } catch (IndexOutOfBoundsException e) {
+        return null;
+      } // try/catch
+    } else if ((container instanceof JSONArray) && (index < size(container))) {
+      return ((JSONArray) container).get(index);
+    } // if/else
+    return null;
+  } // member(JSONValue, JSONString, int)
+
+  /**
+   * Get the number of pairs or elements in a hash or array.
+   */
+  static int size(JSONValue container) {
+    return (container instanceof JSONHash) ? ((JSONHash) container).size()
+        : ((JSONArray) container).size();
+  } // size(JSONValue)
+
+  /**
+   * Get the key whose text, quotes and all, is text[start...end).
+   */
+  static JSONString key(CharSequence text, int start, int end)
+      throws ParseException, IOException {
+    for (int i = start + 1; i < end - 1; i++) {
+      if (text.charAt(i) == '\\') {
+        return (JSONString) JSON.parse(text.subSequence(start, end).toString());
+      } // if
+    } // for
+    return new JSONString(text.subSequence(start + 1, end - 1).toString());
+  } // key(CharSequence, int, int)
+
+  /**
+   * Get the position just past the string that starts at start.
+   */
+  static int skipString(CharSequence text, int start) {
+    int pos = start + 1;
+    while (text.charAt(pos) != '"') {
+      pos += (text.charAt(pos) == '\\') ? 2 : 1;
+    } // while
+    return pos + 1;
+  } // skipString(CharSequence, int)
+
+  /**
+   * Get the position of the first non-whitespace character at or after
+   * pos.
+   */
+  static int skipWhitespace(CharSequence text, int pos) {
+    while ((pos < text.length()) && JSON.isWhitespace(text.charAt(pos))) {
+      pos++;
+    } // while
+    return pos;
+  } // skipWhitespace(CharSequence, int)
+
+  /**
+   * Does ch end a number or constant?
+   */
+  static boolean isDelimiter(char ch) {
+    return (ch == ',') || (ch == ']') || (ch == '}') || JSON.isWhitespace(ch);
+  } // isDelimiter(char)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Where a value lies in the text.
+   */
+  static class Span {
+    /**
+     * The value.
+     */
+    final JSONValue value;
+
+    /**
+     * The key of the value, if it's in a hash.
+     */
+    JSONString key;
+
+    /**
+     * Where the value starts, relative to the start of the value that
+     * holds it (or to the start of the text, for the whole document).
+     */
+    int start;
+
+    /**
+     * The number of characters in the value.
+     */
+    int length;
+
+    /**
+     * The spans of the elements or pairs, in the order of the text, or
+     * null for scalars and for hashes with repeated keys.
+     */
+    Span[] children;
+
+    Span(JSONValue value, int start) {
+      this.value = value;
+      this.start = start;
+    } // Span(JSONValue, int)
+  } // class Span
+
+} // class IncrementalDocument
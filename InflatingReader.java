@@ -0,0 +1,258 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read the text of gzip or zlib (deflate) compressed UTF-8, inflating
+ * and decoding it on a thread of its own. That thread fills a small ring
+ * of char buffers that the reader hands out in turn, so the parser
+ * reading from us works on one buffer while the next is being inflated.
+ * Decompressing and parsing then take about as long as the slower of
+ * the two, not the sum.
+ *
+ * The buffers are made once and reused, so the pipeline allocates
+ * nothing per buffer. Concatenated gzip members (as from cat a.gz b.gz)
+ * are read as one stream. Text that isn't valid UTF-8 is an error, not
+ * replaced, as are failures of any kind on the inflater thread.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public final class InflatingReader extends Reader {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of buffers in the ring.
+   */
+  static final int RING_SIZE = 4;
+
+  /**
+   * The number of chars in each buffer.
+   */
+  static final int CHUNK_SIZE = 32 * 1024;
+
+  /**
+   * The size of the buffers for compressed bytes.
+   */
+  static final int BYTE_BUFFER_SIZE = 64 * 1024;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The decompressed, decoded text.
+   */
+  final Reader text;
+
+  /**
+   * Buffers waiting to be filled.
+   */
+  final BlockingQueue<Chunk> empty;
+
+  /**
+   * Buffers waiting to be read, in order.
+   */
+  final BlockingQueue<Chunk> full;
+
+  /**
+   * The thread that fills buffers.
+   */
+  final Thread inflater;
+
+  /**
+   * The buffer we're reading from, or null if we need the next one.
+   */
+  Chunk current;
+
+  /**
+   * What went wrong on the inflater thread, if anything.
+   */
+  volatile IOException failure;
+
+  /**
+   * Has the reader been closed?
+   */
+  volatile boolean closed;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Read the compressed data in source, which may be gzip or zlib; we
+   * tell which from the first two bytes.
+   */
+  public InflatingReader(InputStream source) throws IOException {
+    BufferedInputStream in = new BufferedInputStream(source, BYTE_BUFFER_SIZE);
+    in.mark(2);
+    int b0 = in.read();
+    int b1 = in.read();
+    in.reset();
+    InputStream inflated;
+    if ((b0 == 0x1f) && (b1 == 0x8b)) {
+      inflated = new GZIPInputStream(in, BYTE_BUFFER_SIZE);
+    } else {
+      inflated = new InflaterInputStream(in);
+    } // if/else
+    this.text = new InputStreamReader(inflated, StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT));
+    this.empty = new ArrayBlockingQueue<Chunk>(RING_SIZE);
+    this.full = new ArrayBlockingQueue<Chunk>(RING_SIZE);
+    for (int i = 0; i < RING_SIZE; i++) {
+      this.empty.add(new Chunk());
+    } // for
+    this.current = null;
+    this.closed = false;
+    // Inflating keeps a core busy, so it gets a platform thread.
+    this.inflater = Thread.ofPlatform().daemon(true).name("json-inflater")
+        .start(this::inflate);
+  } // InflatingReader(InputStream)
+
+  // +----------------+----------------------------------------------
+  // | Reader methods |
+  // +----------------+
+
+  /**
+   * Read up to len chars into cbuf[off...].
+   */
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    } // if
+    while ((this.current == null) || (this.current.position == this.current.length)) {
+      if (this.current != null) {
+        if (this.current.last) {
+          if (this.failure != null) {
+            throw this.failure;
+          } // if
+          return -1;
+        } // if
+        this.empty.add(this.current);
+        this.current = null;
+      } // if
+      if (this.closed) {
+        throw new IOException("Reader closed");
+      } // if
+      try {
+        this.current = this.full.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } // try/catch
+    } // while
+    int count = Math.min(len, this.current.length - this.current.position);
+    System.arraycopy(this.current.chars, this.current.position, cbuf, off, count);
+    this.current.position += count;
+    return count;
+  } // read(char[], int, int)
+
+  /**
+   * Stop the inflater thread and close the source.
+   */
+  public void close() throws IOException {
+    this.closed = true;
+    this.inflater.interrupt();
+    this.text.close();
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Fill buffers until the text runs out, the reader is closed, or
+   * something goes wrong. Runs on the inflater thread.
+   */
+  void inflate() {
+    try {
+      boolean done = false;
+      while (!done) {
+        Chunk chunk = this.empty.take();
+        chunk.length = 0;
+        chunk.position = 0;
+        // Fill the whole buffer, so the reader wakes once per buffer.
+        while (chunk.length < CHUNK_SIZE) {
+          int count = this.text.read(chunk.chars, chunk.length, CHUNK_SIZE - chunk.length);
+          if (count < 0) {
+            done = true;
+            break;
+          } // if
+          chunk.length += count;
+        } // while
+        chunk.last = done;
+        this.full.put(chunk);
+      } // while
+    } catch (IOException e) {
+      if (!this.closed) {
+        this.failure = e;
+        finishEarly();
+      } // if
+    } catch (InterruptedException e) {
+      // We've been closed.
+    } catch (RuntimeException | Error e) {
+      // Anything else would kill the thread and leave the reader waiting.
+      if (!this.closed) {
+        this.failure = new IOException("Inflating failed", e);
+        finishEarly();
+      } // if
+    } // try/catch
+  } // inflate()
+
+  /**
+   * Tell the reader there is no more text, after a failure.
+   */
+  void finishEarly() {
+    try {
+      Chunk chunk = this.empty.take();
+      chunk.length = 0;
+      chunk.position = 0;
+      chunk.last = true;
+      this.full.put(chunk);
+    } catch (InterruptedException e) {
+      // We've been closed.
+    } // try/catch
+  } // finishEarly()
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One buffer in the ring.
+   */
+  static class Chunk {
+    /**
+     * The text.
+     */
+    final char[] chars = new char[CHUNK_SIZE];
+
+    /**
+     * The number of chars of text.
+     */
+    int length;
+
+    /**
+     * The number of chars already read.
+     */
+    int position;
+
+    /**
+     * Is this the end of the text?
+     */
+    boolean last;
+  } // class Chunk
+
+} // class InflatingReader
@@ -1,8 +1,25 @@
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utilities for our simple implementation of JSON.
@@ -10,14 +27,25 @@ import java.text.ParseException;
  * @author Alex Maret
  */
 public class JSON {
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The default number of files that parseFiles reads at once.
+   */
+  public static final int DEFAULT_FILE_CONCURRENCY = 256;
+
   // +---------------+-----------------------------------------------
   // | Static fields |
   // +---------------+
 
   /**
-   * The current position in the input.
+   * A validator for each thread, so that validate allocates nothing once
+   * a thread has validated its first document.
    */
-  static int pos;
+  static final ThreadLocal<JSONValidator> VALIDATORS =
+      ThreadLocal.withInitial(JSONValidator::new);
 
   // +----------------+----------------------------------------------
   // | Static methods |
@@ -34,72 +62,229 @@ public class JSON {
    * Parse a file into JSON.
    */
   public static JSONValue parseFile(String filename) throws ParseException, IOException {
-    FileReader reader = new FileReader(filename);
-    JSONValue result = parse(reader);
-    reader.close();
-    return result;
+    return parseFile(Path.of(filename));
   } // parseFile(String)
 
+  /**
+   * Parse a file into JSON.
+   */
+  public static JSONValue parseFile(Path path) throws ParseException, IOException {
+    try (Reader reader = Files.newBufferedReader(path)) {
+      return parse(reader);
+    } // try
+  } // parseFile(Path)
+
+  /**
+   * Parse a gzip or zlib compressed file (e.g., data.json.gz), inflating
+   * it on one thread while we parse on this one.
+   */
+  public static JSONValue parseCompressed(Path path) throws ParseException, IOException {
+    // The stream gets its own resource, so it is closed even if the
+    // InflatingReader can't be built (e.g., for a bad gzip header).
+    try (InputStream in = Files.newInputStream(path);
+        Reader reader = new InflatingReader(in)) {
+      return parse(reader);
+    } // try
+  } // parseCompressed(Path)
+
+  /**
+   * Read the documents in a gzip or zlib compressed file of concatenated
+   * or newline-delimited JSON (e.g., events.ndjson.gz), inflating on one
+   * thread while we parse on this one. The caller should close the
+   * result.
+   */
+  public static JSONDocumentReader readCompressedDocuments(Path path) throws IOException {
+    InputStream in = Files.newInputStream(path);
+    try {
+      return new JSONDocumentReader(new InflatingReader(in));
+    } catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    } // try/catch
+  } // readCompressedDocuments(Path)
+
+  /**
+   * Parse many files at once, each on its own virtual thread, with at most
+   * DEFAULT_FILE_CONCURRENCY files in flight.
+   */
+  public static CompletableFuture<List<JSONValue>> parseFiles(Collection<Path> paths) {
+    return parseFiles(paths, DEFAULT_FILE_CONCURRENCY);
+  } // parseFiles(Collection<Path>)
+
+  /**
+   * Parse many files at once, each on its own virtual thread, with at most
+   * maxConcurrent files being read or parsed at any time. The results are
+   * in the same order as paths. If any file fails, the returned future
+   * completes exceptionally with that failure.
+   */
+  public static CompletableFuture<List<JSONValue>> parseFiles(Collection<Path> paths,
+      int maxConcurrent) {
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("Invalid concurrency: " + maxConcurrent);
+    } // if
+    Semaphore permits = new Semaphore(maxConcurrent);
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    List<CompletableFuture<JSONValue>> futures = new ArrayList<CompletableFuture<JSONValue>>(paths.size());
+    for (Path path : paths) {
+      futures.add(CompletableFuture.supplyAsync(() -> parseWithPermit(path, permits), executor));
+    } // for
+    executor.shutdown();
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+        .thenApply((ignored) -> futures.stream()
+            .map(CompletableFuture::join)
+            .collect(Collectors.toList()));
+  } // parseFiles(Collection<Path>, int)
+
+  /**
+   * Parse every regular file in a directory tree whose name ends with
+   * suffix (e.g., ".json"), with at most maxConcurrent files in flight.
+   */
+  public static CompletableFuture<List<JSONValue>> parseDirectory(Path dir, String suffix,
+      int maxConcurrent) throws IOException {
+    List<Path> paths;
+    try (Stream<Path> walk = Files.walk(dir)) {
+      paths = walk.filter(Files::isRegularFile)
+          .filter((path) -> path.getFileName().toString().endsWith(suffix))
+          .collect(Collectors.toList());
+    } // try
+    return parseFiles(paths, maxConcurrent);
+  } // parseDirectory(Path, String, int)
+
+  /**
+   * Iterate the elements of the array in source one at a time, without
+   * building the whole array. The caller should close the iterator (or
+   * source) if it stops early.
+   */
+  public static JSONElementIterator iterateArray(Reader source) {
+    return new JSONElementIterator(source, false);
+  } // iterateArray(Reader)
+
+  /**
+   * Iterate the elements of the array in a file one at a time. The file
+   * is closed once the array has been read; close the iterator if you
+   * stop early.
+   */
+  public static JSONElementIterator iterateArray(Path path) throws IOException {
+    return new JSONElementIterator(Files.newBufferedReader(path), true);
+  } // iterateArray(Path)
+
+  /**
+   * Stream the elements of the array in source one at a time. Closing
+   * the stream closes source.
+   */
+  public static Stream<JSONValue> streamArray(Reader source) {
+    return stream(iterateArray(source));
+  } // streamArray(Reader)
+
+  /**
+   * Stream the elements of the array in a file one at a time. Closing
+   * the stream closes the file.
+   */
+  public static Stream<JSONValue> streamArray(Path path) throws IOException {
+    return stream(iterateArray(path));
+  } // streamArray(Path)
+
   /**
    * Parse JSON from a reader.
    */
   public static JSONValue parse(Reader source) throws ParseException, IOException {
-    pos = 0;
-    JSONValue result = parseKernel(source);
-    if (-1 != skipWhitespace(source)) {
-      throw new ParseException("Characters remain at end", pos);
-    }
-    return result;
+    return new JSONParser().parse(source);
   } // parse(Reader)
 
+  /**
+   * Parse a string into JSON, telling listener what the parse cost.
+   */
+  public static JSONValue parse(String source, ParseListener listener)
+      throws ParseException, IOException {
+    return parse(new StringReader(source), listener);
+  } // parse(String, ParseListener)
+
+  /**
+   * Parse JSON from a reader, telling listener what the parse cost.
+   */
+  public static JSONValue parse(Reader source, ParseListener listener)
+      throws ParseException, IOException {
+    return new JSONParser(listener).parse(source);
+  } // parse(Reader, ParseListener)
+
+  /**
+   * Check that bytes hold a valid JSON document in UTF-8, without
+   * building it. Throws a ParseException giving the offset of the first
+   * bad byte.
+   */
+  public static void validate(byte[] bytes) throws ParseException {
+    validate(bytes, 0, bytes.length);
+  } // validate(byte[])
+
+  /**
+   * Check that length bytes from bytes[start] hold a valid JSON document
+   * in UTF-8. Error offsets count from start.
+   */
+  public static void validate(byte[] bytes, int start, int length) throws ParseException {
+    VALIDATORS.get().validate(bytes, start, length);
+  } // validate(byte[], int, int)
+
+  /**
+   * Check that the rest of a stream is a valid JSON document in UTF-8.
+   * Does not close the stream.
+   */
+  public static void validate(InputStream in) throws ParseException, IOException {
+    VALIDATORS.get().validate(in);
+  } // validate(InputStream)
+
   // +---------------+-----------------------------------------------
   // | Local helpers |
   // +---------------+
 
   /**
-   * Parse JSON from a reader, keeping track of the current position
+   * Turn an element iterator into a sequential stream that closes it.
    */
-  static JSONValue parseKernel(Reader source) throws ParseException, IOException {
-    int ch;
-    ch = skipWhitespace(source);
-    if (-1 == ch) {
-      throw new ParseException("Unexpected end of file", pos);
-    } // if
-    if (ch == 't') {
-      incrementReader(source, 3);
-      return JSONConstant.TRUE;
-    } // if
-    if (ch == 'f') {
-      incrementReader(source, 4);
-      return JSONConstant.FALSE;
-    } // if
-    if (ch == 'n') {
-      incrementReader(source, 3);
-      return JSONConstant.NULL;
-    } // if 
-    if (ch == '"'){
-      return parseString(source);
-    } // if
-    if (ch == '[') {
-      return parseArray(source);
-    } // if
-    if (ch == '{') {
-      return parseHash(source);
-    } // if
-    return parseNumber(source, ch);
-  } // parseKernel
+  static Stream<JSONValue> stream(JSONElementIterator elements) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements,
+            Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          try {
+            elements.close();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } // try/catch
+        });
+  } // stream(JSONElementIterator)
+
+  /**
+   * Parse one file while holding one of the permits, for parseFiles.
+   */
+  static JSONValue parseWithPermit(Path path, Semaphore permits) {
+    permits.acquireUninterruptibly();
+    try {
+      return parseFile(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(path.toString(), e);
+    } catch (ParseException e) {
+      throw new CompletionException(path + ": " + e.getMessage() + " at " + e.getErrorOffset(), e);
+    } finally {
+      permits.release();
+    } // try/catch
+  } // parseWithPermit(Path, Semaphore)
 
   /**
-   * Get the next character from source, skipping over whitespace.
+   * Write value to pen as its toString would give it, writing arrays,
+   * hashes, and strings straight to pen rather than building a string
+   * for each, and integers without BigInteger.toString.
    */
-  static int skipWhitespace(Reader source) throws IOException {
-    int ch;
-    do {
-      ch = source.read();
-      ++pos;
-    } while (isWhitespace(ch));
-    return ch;
-  } // skipWhitespace(Reader)
+  static void write(PrintWriter pen, JSONValue value) {
+    if (value instanceof JSONArray) {
+      ((JSONArray) value).write(pen);
+    } else if (value instanceof JSONHash) {
+      ((JSONHash) value).write(pen);
+    } else if (value instanceof JSONString) {
+      JSONString.write(pen, ((JSONString) value).getValue());
+    } else if (value instanceof JSONInteger) {
+      ((JSONInteger) value).write(pen);
+    } else {
+      pen.write(value.toString());
+    } // if/else
+  } // write(PrintWriter, JSONValue)
 
   /**
    * Determine if a character is JSON whitespace (newline, carriage return,
@@ -109,144 +294,4 @@ public class JSON {
     return (' ' == ch) || ('\n' == ch) || ('\r' == ch) || ('\t' == ch);
   } // isWhiteSpace(int)
 
-   /**
-   * Parse JSONString from a reader, keeping track of the current position
-   */
-  static JSONString parseString(Reader source) throws ParseException, IOException {
-    int ch;
-    ch = skipWhitespace(source);
-    if (-1 == ch) {
-      throw new ParseException("Unexpected end of file", pos);
-    } // if 
-    String s = "";
-    char c = (char) ch;
-    while(ch != -1 && c != '\"'){
-      s += c;
-      c = nextChar(source);
-      while(ch == '\\'){
-        c = nextChar(source);
-        s += slash(c);
-        c = nextChar(source);
-      } // while
-    } // while
-    return new JSONString(s);
-  } // parseString(source)
-
-   /**
-   * Parse JSONValue from a reader, keeping track of the current position
-   */
-  static JSONValue parseNumber(Reader source, int first) throws ParseException, IOException {
-    int num = 0;
-    char c = (char) first;
-    String s = "";
-    while(num != -1 && num != ']' && num != ',' && num != '}'){
-      s += c;
-      num = skipWhitespace(source);
-      c = (char) num;
-    } // while
-    incrementReader(source, -1);
-    if(s.indexOf('.') == -1 && s.indexOf('e') == -1 && s.indexOf('E') == -1){
-      return new JSONInteger(s);
-    } // if
-    else{
-      return new JSONReal(s);
-    } // else
-  } // parseNumber(source, first)
-
-   /**
-   * Parse JSONArray from a reader, keeping track of the current position
-   */
-  static JSONArray parseArray(Reader source) throws ParseException, IOException {
-    JSONArray arr = new JSONArray();
-    int ch;
-    ch = skipWhitespace(source);
-    incrementReader(source, -1);
-    if(ch == ']'){
-      return arr;
-    } // if 
-    while(ch != -1 && ch != ']') {
-      arr.add(parseKernel(source));
-      ch = skipWhitespace(source);
-    } // while
-    return arr;
-  } // parseArray(source)
-
-   /**
-   * Parse JSONHash from a reader, keeping track of the current position
-   */
-  static JSONHash parseHash(Reader source) throws ParseException, IOException {
-    JSONHash hash = new JSONHash();
-    int ch;
-    ch = skipWhitespace(source);
-    if(ch == '}'){
-      return hash;
-    } // if
-    incrementReader(source, -1);
-    JSONString key;
-    JSONValue value;
-    while(ch != -1 && ch != '}') {
-      key = (JSONString) parseKernel(source);
-      ch = skipWhitespace(source);
-      value = parseKernel(source);
-      ch = skipWhitespace(source);
-      hash.set(key, value);
-    } // while
-    return hash;
-  } // parseHash(source)
-
-  /**
-   * increaments the the reader
-   * @param source
-   * @param i
-   * @throws IOException
-   */
-  static public void incrementReader(Reader source, int i) throws IOException{
-    pos += i;
-    source.reset();
-    source.skip(pos);
-  } // incrementReader(source, i)
-
-  /**
-   * returns the next character
-   */
-  static public char nextChar(Reader source) throws IOException{
-    int ch = source.read();
-    ++pos;
-    return (char) ch;
-  } // nextChar(source)
-
-  /**
-   * Returns a string by checking the char c. 
-   * @param c
-   * @return
-   */
-  static public String slash(char c){
-    String s = "";
-    if(c == '\"'){
-      s += "\\\"";
-    } // if
-    else if(c == '\\'){
-      s += "\\\\";
-    } // else if
-    else if(c == '\b'){
-      s += "\\b";
-    } // else if
-    else if(c == '\f'){
-      s += "\\f";
-    } // else if 
-    else if(c == '\n'){
-      s += "\\n";
-    } // else if 
-    else if(c == '\r'){
-      s += "\\r";
-    } // else if 
-    else if(c == '\t'){
-      s += "\\t";
-    } // else if 
-    else if(c == '\''){
-      s += "\\\'";
-    } // else if
-    return s;
-  } // slash(c)
-
 } // class JSON
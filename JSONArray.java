@@ -1,13 +1,16 @@
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 /**
  * JSON arrays.
  * @uthor Connor Heagy
  * @author Alex Maret
  */
-public class JSONArray implements JSONValue {
+public class JSONArray implements JSONValue, Iterable<JSONValue> {
 
   // +--------+------------------------------------------------------
   // | Fields |
@@ -18,6 +21,16 @@ public class JSONArray implements JSONValue {
    */
   ArrayList<JSONValue> values;
 
+  /**
+   * Our retained size, or -1 if it needs computing.
+   */
+  long retained = -1;
+
+  /**
+   * Our guess at the capacity of values, which ArrayList doesn't tell.
+   */
+  int capacity;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -29,6 +42,15 @@ public class JSONArray implements JSONValue {
     this.values = new ArrayList<JSONValue>();
   } // JSONArray() 
 
+  /**
+   * Build an array with room for expectedSize elements before it needs
+   * to grow.
+   */
+  public JSONArray(int expectedSize) {
+    this.values = new ArrayList<JSONValue>(expectedSize);
+    this.capacity = expectedSize;
+  } // JSONArray(int)
+
   // +-------------------------+-------------------------------------
   // | Standard object methods |
   // +-------------------------+
@@ -37,17 +59,11 @@ public class JSONArray implements JSONValue {
    * Convert to a string (e.g., for printing).
    */
   public String toString() {
-    String result = "[";
-    for (int i = 0; i < this.values.size() - 1; i++) {
-      result += values.get(i).toString() + ", ";
-    } // for
-    if(size() != 0){
-      result += values.get(size() - 1).toString() + "]";
-    } // if
-    else{
-      result += "]";
-    } // else
-    return result;
+    StringWriter out = new StringWriter();
+    PrintWriter pen = new PrintWriter(out);
+    write(pen);
+    pen.flush();
+    return out.toString();
   } // toString()
 
   /**
@@ -76,7 +92,8 @@ public class JSONArray implements JSONValue {
    * Write the value as JSON.
    */
   public void writeJSON(PrintWriter pen) {
-    pen.println(toString());
+    write(pen);
+    pen.println();
   } // writeJSON(PrintWriter)
 
   /**
@@ -86,6 +103,29 @@ public class JSONArray implements JSONValue {
     return this.values;
   } // getValue()
 
+  /**
+   * Estimate the bytes of heap the array holds. Once computed, the
+   * estimate is kept up to date as elements are added and set.
+   */
+  public long retainedSize() {
+    return RetainedSize.of(this);
+  } // retainedSize()
+
+  /**
+   * Write the array, and everything in it, straight to pen, as toString
+   * would give it.
+   */
+  void write(PrintWriter pen) {
+    pen.write('[');
+    for (int i = 0; i < this.values.size(); i++) {
+      if (i > 0) {
+        pen.write(", ");
+      } // if
+      JSON.write(pen, this.values.get(i));
+    } // for
+    pen.write(']');
+  } // write(PrintWriter)
+
   // +---------------+-----------------------------------------------
   // | Array methods |
   // +---------------+
@@ -94,7 +134,17 @@ public class JSONArray implements JSONValue {
    * Add a value to the end of the array.
    */
   public void add(JSONValue value) {
+    int oldCapacity = this.capacity;
+    if (this.values.size() == oldCapacity) {
+      this.capacity = (oldCapacity == 0)
+          ? RetainedSize.LIST_CAPACITY
+          : oldCapacity + Math.max(1, oldCapacity >> 1);
+    } // if
     this.values.add(value);
+    if (this.retained >= 0) {
+      this.retained += value.retainedSize()
+          + elementsSize(this.capacity) - elementsSize(oldCapacity);
+    } // if
   } // add(JSONValue)
 
   /**
@@ -111,11 +161,36 @@ public class JSONArray implements JSONValue {
     return this.values.iterator();
   } // iterator()
 
+  /**
+   * Get a spliterator for the elements. It splits by index ranges.
+   */
+  @Override
+  public Spliterator<JSONValue> spliterator() {
+    return this.values.spliterator();
+  } // spliterator()
+
+  /**
+   * Stream the elements.
+   */
+  public Stream<JSONValue> stream() {
+    return this.values.stream();
+  } // stream()
+
+  /**
+   * Stream the elements in parallel.
+   */
+  public Stream<JSONValue> parallelStream() {
+    return this.values.parallelStream();
+  } // parallelStream()
+
   /**
    * Set the value at a particular index.
    */
   public void set(int index, JSONValue value) throws IndexOutOfBoundsException {
-    this.values.set(index, value);
+    JSONValue old = this.values.set(index, value);
+    if (this.retained >= 0) {
+      this.retained += value.retainedSize() - old.retainedSize();
+    } // if
   } // set(int, JSONValue)
 
   /**
@@ -124,4 +199,47 @@ public class JSONArray implements JSONValue {
   public int size() {
     return this.values.size();
   } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compute our retained size from the sizes of our elements (which
+   * RetainedSize.of has already cached, for hashes and arrays).
+   */
+  long ownSize() {
+    // values, retained, and capacity.
+    long result = RetainedSize.align(RetainedSize.OBJECT_HEADER + RetainedSize.REFERENCE + 8 + 4);
+    result += RetainedSize.ARRAY_LIST + elementsSize(this.capacity);
+    for (JSONValue element : this.values) {
+      result += element.retainedSize();
+    } // for
+    return result;
+  } // ownSize()
+
+  /**
+   * Get the size of the ArrayList's array at a given capacity. An
+   * ArrayList with no capacity shares an empty array.
+   */
+  static long elementsSize(int capacity) {
+    return (capacity == 0) ? 0 : RetainedSize.references(capacity);
+  } // elementsSize(int)
+
+  /**
+   * Make room for expectedSize elements (see JSONPool).
+   */
+  void ensureCapacity(int expectedSize) {
+    this.values.ensureCapacity(expectedSize);
+    this.capacity = Math.max(this.capacity, expectedSize);
+    this.retained = -1;
+  } // ensureCapacity(int)
+
+  /**
+   * Empty the array, keeping its capacity (see JSONPool).
+   */
+  void clear() {
+    this.values.clear();
+    this.retained = -1;
+  } // clear()
 } // class JSONArray
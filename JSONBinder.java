@@ -0,0 +1,621 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Read JSON objects straight into records or plain classes, without
+ * building a JSONHash along the way. The first time we see a type we
+ * work out, once, which member each key goes to and how to set it; after
+ * that, reading is a walk over the input.
+ *
+ * Plain classes need a no-argument constructor; we set their non-static,
+ * non-final, non-transient fields, including inherited ones. Records are
+ * built with their canonical constructor. Keys we don't know are parsed
+ * and dropped; members with no key keep their default value.
+ *
+ * Members may be boolean, int, long, double, float, their boxed forms,
+ * String, BigInteger, BigDecimal, JSONValue (or one of its classes),
+ * enums (read by name), another bindable type, or arrays, Lists, Sets,
+ * and Collections of any of these. Members of other types (e.g., Maps)
+ * don't stop a type from being bound; only reading a key for one fails.
+ * Primitive members of plain classes are parsed and set without boxing.
+ * Records are built through one constructor call, so their primitive
+ * members are boxed on the way in.
+ *
+ * Reading recurses once per nested object or array, so we count them,
+ * together with any containers inside values we parse whole, against
+ * the parser's depth limit. A level of binding takes far more stack than
+ * the parser (which takes none), so we set that limit to MAX_DEPTH.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONBinder<T> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The kinds of member we know how to set.
+   */
+  static final int BOOLEAN = 0;
+  static final int INT = 1;
+  static final int LONG = 2;
+  static final int DOUBLE = 3;
+  static final int FLOAT = 4;
+  static final int STRING = 5;
+  static final int BIG_INTEGER = 6;
+  static final int BIG_DECIMAL = 7;
+  static final int VALUE = 8;
+  static final int OBJECT = 9;
+  static final int ENUM = 10;
+  static final int ARRAY = 11;
+  static final int LIST = 12;
+  static final int SET = 13;
+  static final int UNSUPPORTED = 14;
+
+  /**
+   * How deeply objects and arrays may nest. Each level costs a few
+   * frames; 1000 levels can overflow a default 1 MB stack.
+   */
+  public static final int MAX_DEPTH = 500;
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * One binder per type, built on first use.
+   */
+  static final ClassValue<JSONBinder<?>> BINDERS = new ClassValue<JSONBinder<?>>() {
+    protected JSONBinder<?> computeValue(Class<?> type) {
+      return new JSONBinder<>(type);
+    } // computeValue(Class)
+  }; // new ClassValue
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The type we build.
+   */
+  final Class<T> type;
+
+  /**
+   * Is the type a record?
+   */
+  final boolean record;
+
+  /**
+   * How to set each member, by key.
+   */
+  final HashMap<String, Slot> slots;
+
+  /**
+   * For records, the canonical constructor, taking an Object[] of
+   * arguments. For classes, the no-argument constructor. Either way, the
+   * result is typed as Object.
+   */
+  final MethodHandle constructor;
+
+  /**
+   * For records, the arguments to use for missing members.
+   */
+  final Object[] defaults;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Work out how to bind type.
+   */
+  JSONBinder(Class<T> type) {
+    this.type = type;
+    this.record = type.isRecord();
+    this.slots = new HashMap<String, Slot>();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      if (this.record) {
+        RecordComponent[] components = type.getRecordComponents();
+        Class<?>[] types = new Class<?>[components.length];
+        this.defaults = new Object[components.length];
+        for (int i = 0; i < components.length; i++) {
+          types[i] = components[i].getType();
+          this.defaults[i] = defaultValue(types[i]);
+          this.slots.put(components[i].getName(),
+              slotFor(types[i], components[i].getGenericType(), null, i));
+        } // for
+        Constructor<T> ctor = type.getDeclaredConstructor(types);
+        ctor.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(ctor)
+            .asSpreader(Object[].class, components.length)
+            .asType(MethodType.methodType(Object.class, Object[].class));
+      } else {
+        this.defaults = null;
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+          for (Field field : c.getDeclaredFields()) {
+            int mods = field.getModifiers();
+            if (Modifier.isStatic(mods) || Modifier.isFinal(mods)
+                || Modifier.isTransient(mods) || field.isSynthetic()
+                || this.slots.containsKey(field.getName())) {
+              continue;
+            } // if
+            field.setAccessible(true);
+            Class<?> argType = field.getType().isPrimitive() ? field.getType() : Object.class;
+            MethodHandle setter = lookup.unreflectSetter(field)
+                .asType(MethodType.methodType(void.class, Object.class, argType));
+            this.slots.put(field.getName(),
+                slotFor(field.getType(), field.getGenericType(), setter, -1));
+          } // for each field
+        } // for each class
+        Constructor<T> ctor = type.getDeclaredConstructor();
+        ctor.setAccessible(true);
+        this.constructor = lookup.unreflectConstructor(ctor)
+            .asType(MethodType.methodType(Object.class));
+      } // if/else
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalArgumentException("Cannot bind " + type.getName(), e);
+    } // try/catch
+  } // JSONBinder(Class)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the binder for a type.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> JSONBinder<T> forType(Class<T> type) {
+    return (JSONBinder<T>) BINDERS.get(type);
+  } // forType(Class)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Read one object from a string.
+   */
+  public T read(String source) throws ParseException, IOException {
+    return read(new StringReader(source));
+  } // read(String)
+
+  /**
+   * Read one object from a reader.
+   */
+  public T read(Reader source) throws ParseException, IOException {
+    JSONParser parser = new JSONParser();
+    parser.setMaxDepth(MAX_DEPTH);
+    int ch = parser.skipWhitespace(source);
+    if (ch != '{') {
+      throw new ParseException("Expected an object", parser.pos);
+    } // if
+    T result = readObject(parser, source);
+    if (-1 != parser.skipWhitespace(source)) {
+      throw new ParseException("Characters remain at end", parser.pos);
+    } // if
+    return result;
+  } // read(Reader)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Read the rest of an object whose opening brace we've just read.
+   */
+  T readObject(JSONParser parser, Reader source) throws ParseException, IOException {
+    parser.enter(true);
+    Object target = null;
+    Object[] args = null;
+    if (this.record) {
+      args = this.defaults.clone();
+    } else {
+      target = construct();
+    } // if/else
+
+    int ch = parser.skipWhitespace(source);
+    if (ch != '}') {
+      while (true) {
+        if (ch != '"') {
+          throw new ParseException("Expected a key", parser.pos);
+        } // if
+        String key = parser.parseString(source).getValue();
+        if (parser.skipWhitespace(source) != ':') {
+          throw new ParseException("Expected a colon", parser.pos);
+        } // if
+        ch = parser.skipWhitespace(source);
+        Slot slot = this.slots.get(key);
+        if (slot == null) {
+          parser.incrementReader(source, -1);
+          parser.parseKernel(source);
+        } else if (this.record) {
+          args[slot.index] = readBoxed(slot, parser, source, ch);
+        } else {
+          readInto(target, slot, parser, source, ch);
+        } // if/else
+        ch = parser.skipWhitespace(source);
+        if (ch == '}') {
+          break;
+        } else if (ch != ',') {
+          throw new ParseException("Expected a comma or a close brace", parser.pos);
+        } // if/else
+        ch = parser.skipWhitespace(source);
+      } // while
+    } // if
+
+    if (this.record) {
+      target = invoke(args);
+    } // if
+    --parser.depth;
+    return this.type.cast(target);
+  } // readObject(JSONParser, Reader)
+
+  /**
+   * Read a value whose first character is ch and set it in target,
+   * without boxing primitives.
+   */
+  void readInto(Object target, Slot slot, JSONParser parser, Reader source, int ch)
+      throws ParseException, IOException {
+    if (slot.type.isPrimitive() && (ch == 'n')) {
+      // null leaves a primitive at its default.
+      parser.parseLiteral(source, ch);
+      return;
+    } // if
+    try {
+      if (slot.type == boolean.class) {
+        slot.setter.invokeExact(target, readBoolean(parser, source, ch));
+      } else if (slot.type == int.class) {
+        slot.setter.invokeExact(target, readInt(parser, source, ch));
+      } else if (slot.type == long.class) {
+        slot.setter.invokeExact(target, parser.parseLong(source, ch));
+      } else if (slot.type == double.class) {
+        slot.setter.invokeExact(target, parser.parseDouble(source, ch));
+      } else if (slot.type == float.class) {
+        slot.setter.invokeExact(target, (float) parser.parseDouble(source, ch));
+      } else {
+        slot.setter.invokeExact(target, readBoxed(slot, parser, source, ch));
+      } // if/else
+    } catch (ParseException | IOException | RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    } // try/catch
+  } // readInto(Object, Slot, JSONParser, Reader, int)
+
+  /**
+   * Read a value whose first character is ch, as an object.
+   */
+  static Object readBoxed(Slot slot, JSONParser parser, Reader source, int ch)
+      throws ParseException, IOException {
+    if ((ch == 'n') && !slot.type.isAssignableFrom(JSONConstant.class)) {
+      parser.parseLiteral(source, ch);
+      return slot.type.isPrimitive() ? defaultValue(slot.type) : null;
+    } // if
+    switch (slot.kind) {
+      case BOOLEAN:
+        return readBoolean(parser, source, ch);
+      case INT:
+        return readInt(parser, source, ch);
+      case LONG:
+        return parser.parseLong(source, ch);
+      case DOUBLE:
+        return parser.parseDouble(source, ch);
+      case FLOAT:
+        return (float) parser.parseDouble(source, ch);
+      case STRING:
+        if (ch != '"') {
+          throw new ParseException("Expected a string", parser.pos);
+        } // if
+        return parser.parseString(source).getValue();
+      case OBJECT:
+        if (ch != '{') {
+          throw new ParseException("Expected an object", parser.pos);
+        } // if
+        return forType(slot.type).readObject(parser, source);
+      case ENUM:
+        return readEnum(slot, parser, source, ch);
+      case ARRAY:
+        ArrayList<Object> elements = new ArrayList<Object>();
+        readElements(slot, parser, source, ch, elements);
+        Object array = Array.newInstance(slot.type.getComponentType(), elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+          Array.set(array, i, elements.get(i));
+        } // for
+        return array;
+      case LIST:
+        ArrayList<Object> list = new ArrayList<Object>();
+        readElements(slot, parser, source, ch, list);
+        return list;
+      case SET:
+        LinkedHashSet<Object> set = new LinkedHashSet<Object>();
+        readElements(slot, parser, source, ch, set);
+        return set;
+      case UNSUPPORTED:
+        throw new IllegalArgumentException("Cannot bind members of type "
+            + slot.type.getName());
+      default:
+        parser.incrementReader(source, -1);
+        JSONValue value = parser.parseKernel(source);
+        if (slot.kind == BIG_INTEGER) {
+          value = expect(value, JSONInteger.class, parser);
+          return ((JSONInteger) value).getValue();
+        } else if (slot.kind == BIG_DECIMAL) {
+          if (value instanceof JSONInteger) {
+            return new BigDecimal(((JSONInteger) value).getValue());
+          } // if
+          return ((JSONReal) expect(value, JSONReal.class, parser)).getValue();
+        } // if/else
+        return expect(value, slot.type, parser);
+    } // switch
+  } // readBoxed(Slot, JSONParser, Reader, int)
+
+  /**
+   * Read the elements of an array whose first character is ch into
+   * elements, as slot's elements.
+   */
+  static void readElements(Slot slot, JSONParser parser, Reader source, int ch,
+      Collection<Object> elements) throws ParseException, IOException {
+    if (ch != '[') {
+      throw new ParseException("Expected an array", parser.pos);
+    } // if
+    parser.enter(false);
+    ch = parser.skipWhitespace(source);
+    if (ch == ']') {
+      --parser.depth;
+      return;
+    } // if
+    while (true) {
+      elements.add(readBoxed(slot.element, parser, source, ch));
+      ch = parser.skipWhitespace(source);
+      if (ch == ']') {
+        --parser.depth;
+        return;
+      } else if (ch != ',') {
+        throw new ParseException("Expected a comma or a close bracket", parser.pos);
+      } // if/else
+      ch = parser.skipWhitespace(source);
+    } // while
+  } // readElements(Slot, JSONParser, Reader, int, Collection)
+
+  /**
+   * Read an enum constant, by name, whose first character is ch.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Object readEnum(Slot slot, JSONParser parser, Reader source, int ch)
+      throws ParseException, IOException {
+    if (ch != '"') {
+      throw new ParseException("Expected a string", parser.pos);
+    } // if
+    String name = parser.parseString(source).getValue();
+    try {
+      return Enum.valueOf((Class) slot.type, name);
+    } catch (IllegalArgumentException e) {
+      throw new ParseException("No " + slot.type.getSimpleName() + " named " + name,
+          parser.pos);
+    } // try/catch
+  } // readEnum(Slot, JSONParser, Reader, int)
+
+  /**
+   * Read a boolean whose first character is ch.
+   */
+  static boolean readBoolean(JSONParser parser, Reader source, int ch)
+      throws ParseException, IOException {
+    if ((ch == 't') || (ch == 'f')) {
+      return parser.parseLiteral(source, ch) == JSONConstant.TRUE;
+    } // if
+    throw new ParseException("Expected true or false", parser.pos);
+  } // readBoolean(JSONParser, Reader, int)
+
+  /**
+   * Read an int whose first character is ch.
+   */
+  static int readInt(JSONParser parser, Reader source, int ch)
+      throws ParseException, IOException {
+    long l = parser.parseLong(source, ch);
+    if ((l < Integer.MIN_VALUE) || (l > Integer.MAX_VALUE)) {
+      throw new ParseException("Integer out of range", parser.pos);
+    } // if
+    return (int) l;
+  } // readInt(JSONParser, Reader, int)
+
+  /**
+   * Make sure a parsed value has the type we need.
+   */
+  static JSONValue expect(JSONValue value, Class<?> type, JSONParser parser)
+      throws ParseException {
+    if (!type.isInstance(value)) {
+      throw new ParseException("Expected " + type.getSimpleName() + " but found "
+          + value, parser.pos);
+    } // if
+    return value;
+  } // expect(JSONValue, Class, JSONParser)
+
+  /**
+   * Build an empty instance of a plain class.
+   */
+  Object construct() {
+    try {
+      return (Object) this.constructor.invokeExact();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    } // try/catch
+  } // construct()
+
+  /**
+   * Build a record from its arguments.
+   */
+  Object invoke(Object[] args) {
+    try {
+      return (Object) this.constructor.invokeExact(args);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    } // try/catch
+  } // invoke(Object[])
+
+  /**
+   * Work out how to set a member of type type, whose generic type (which
+   * tells us the elements of Lists and Sets) is generic.
+   */
+  static Slot slotFor(Class<?> type, Type generic, MethodHandle setter, int index) {
+    int kind = kindOf(type);
+    Slot element = null;
+    if (kind == ARRAY) {
+      Type component = (generic instanceof GenericArrayType)
+          ? ((GenericArrayType) generic).getGenericComponentType()
+          : type.getComponentType();
+      element = slotFor(type.getComponentType(), component, null, -1);
+    } else if ((kind == LIST) || (kind == SET)) {
+      Type elementType = Object.class;
+      if (generic instanceof ParameterizedType) {
+        elementType = ((ParameterizedType) generic).getActualTypeArguments()[0];
+        if (elementType instanceof WildcardType) {
+          elementType = ((WildcardType) elementType).getUpperBounds()[0];
+        } // if
+      } // if
+      Class<?> elementClass = Object.class;
+      if (elementType instanceof Class) {
+        elementClass = (Class<?>) elementType;
+      } else if (elementType instanceof ParameterizedType) {
+        elementClass = (Class<?>) ((ParameterizedType) elementType).getRawType();
+      } // if/else
+      element = slotFor(elementClass, elementType, null, -1);
+    } // if/else
+    if ((element != null) && (element.kind == UNSUPPORTED)) {
+      kind = UNSUPPORTED;
+    } // if
+    return new Slot(kind, type, setter, index, element);
+  } // slotFor(Class, Type, MethodHandle, int)
+
+  /**
+   * Figure out what kind of member has type type.
+   */
+  static int kindOf(Class<?> type) {
+    if ((type == boolean.class) || (type == Boolean.class)) {
+      return BOOLEAN;
+    } else if ((type == int.class) || (type == Integer.class)) {
+      return INT;
+    } else if ((type == long.class) || (type == Long.class)) {
+      return LONG;
+    } else if ((type == double.class) || (type == Double.class)) {
+      return DOUBLE;
+    } else if ((type == float.class) || (type == Float.class)) {
+      return FLOAT;
+    } else if (type == String.class) {
+      return STRING;
+    } else if (type == BigInteger.class) {
+      return BIG_INTEGER;
+    } else if (type == BigDecimal.class) {
+      return BIG_DECIMAL;
+    } else if (JSONValue.class.isAssignableFrom(type)) {
+      return VALUE;
+    } else if (type.isEnum()) {
+      return ENUM;
+    } else if (type.isArray()) {
+      return ARRAY;
+    } else if (type == Object.class) {
+      return UNSUPPORTED;
+    } else if (type.isAssignableFrom(ArrayList.class)) {
+      // List, Collection, Iterable, and ArrayList itself.
+      return LIST;
+    } else if (type.isAssignableFrom(LinkedHashSet.class)) {
+      // Set, HashSet, and LinkedHashSet.
+      return SET;
+    } else if (!type.isPrimitive() && !type.isInterface()
+        && !type.getName().startsWith("java.")) {
+      return OBJECT;
+    } // if/else
+    return UNSUPPORTED;
+  } // kindOf(Class)
+
+  /**
+   * Get the default value of a member of type type.
+   */
+  static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return Boolean.FALSE;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == double.class) {
+      return 0.0;
+    } else if (type == float.class) {
+      return 0.0f;
+    } // if/else
+    return null;
+  } // defaultValue(Class)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * How to set one member.
+   */
+  static class Slot {
+    /**
+     * What kind of member this is.
+     */
+    final int kind;
+
+    /**
+     * The declared type of the member.
+     */
+    final Class<?> type;
+
+    /**
+     * For classes, the setter, taking (Object, primitive) for primitive
+     * members and (Object, Object) for the rest.
+     */
+    final MethodHandle setter;
+
+    /**
+     * For records, the position of the member in the constructor.
+     */
+    final int index;
+
+    /**
+     * For arrays, Lists, and Sets, how to read each element.
+     */
+    final Slot element;
+
+    /**
+     * Build a new slot.
+     */
+    Slot(int kind, Class<?> type, MethodHandle setter, int index, Slot element) {
+      this.kind = kind;
+      this.type = type;
+      this.setter = setter;
+      this.index = index;
+      this.element = element;
+    } // Slot(int, Class, MethodHandle, int, Slot)
+  } // class Slot
+
+} // class JSONBinder<T>
@@ -0,0 +1,183 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A cache of parsed documents bounded by the heap they hold rather than
+ * by how many there are. Each document is charged its retainedSize (plus
+ * a little for the entry); when the total would go over the bound, the
+ * least recently used documents are evicted until it fits.
+ *
+ * A document is charged what it held when it was put, measured afresh
+ * (see RetainedSize.measure), so changes made deep inside it before then
+ * are counted. Documents that change while cached are not charged again
+ * until they are put again, so put a document back after changing it
+ * much. All methods are synchronized, so one cache may be shared
+ * between threads.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONCache<K> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * What we charge for each entry, beyond its document: a LinkedHashMap
+   * entry (hash, key, value, next, before, after) and its bucket, and
+   * the cached charge.
+   */
+  static final long ENTRY = RetainedSize.align(RetainedSize.OBJECT_HEADER + 4
+      + 5 * RetainedSize.REFERENCE) + RetainedSize.REFERENCE
+      + RetainedSize.align(RetainedSize.OBJECT_HEADER + 8);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The most bytes the cached documents may hold.
+   */
+  final long maxBytes;
+
+  /**
+   * The documents, least recently used first.
+   */
+  final LinkedHashMap<K,Entry> entries;
+
+  /**
+   * The bytes the cached documents hold.
+   */
+  long bytes;
+
+  /**
+   * The number of documents evicted to make room.
+   */
+  long evictions;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a cache whose documents may hold up to maxBytes.
+   */
+  public JSONCache(long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    } // if
+    this.maxBytes = maxBytes;
+    this.entries = new LinkedHashMap<K,Entry>(16, 0.75f, true);
+    this.bytes = 0;
+    this.evictions = 0;
+  } // JSONCache(long)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the document cached under key, or null if there is none.
+   */
+  public synchronized JSONValue get(K key) {
+    Entry entry = this.entries.get(key);
+    return (entry != null) ? entry.value : null;
+  } // get(K)
+
+  /**
+   * Cache document under key, evicting older documents as need be.
+   * Returns false (and caches nothing) if the document alone holds
+   * more than the cache may; any document cached under key before is
+   * removed either way.
+   */
+  public synchronized boolean put(K key, JSONValue document) {
+    remove(key);
+    long charge = RetainedSize.measure(document) + ENTRY;
+    if (charge > this.maxBytes) {
+      return false;
+    } // if
+    Iterator<Entry> oldest = this.entries.values().iterator();
+    while (this.bytes + charge > this.maxBytes) {
+      this.bytes -= oldest.next().charge;
+      oldest.remove();
+      this.evictions++;
+    } // while
+    this.entries.put(key, new Entry(document, charge));
+    this.bytes += charge;
+    return true;
+  } // put(K, JSONValue)
+
+  /**
+   * Remove the document cached under key. Returns the document, or null
+   * if there was none.
+   */
+  public synchronized JSONValue remove(K key) {
+    Entry entry = this.entries.remove(key);
+    if (entry == null) {
+      return null;
+    } // if
+    this.bytes -= entry.charge;
+    return entry.value;
+  } // remove(K)
+
+  /**
+   * Remove every document.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+    this.bytes = 0;
+  } // clear()
+
+  /**
+   * Get the bytes the cached documents hold, by our estimates.
+   */
+  public synchronized long bytes() {
+    return this.bytes;
+  } // bytes()
+
+  /**
+   * Get the most bytes the cached documents may hold.
+   */
+  public long maxBytes() {
+    return this.maxBytes;
+  } // maxBytes()
+
+  /**
+   * Get the number of cached documents.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  } // size()
+
+  /**
+   * Get the number of documents evicted to make room for others.
+   */
+  public synchronized long evictions() {
+    return this.evictions;
+  } // evictions()
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A cached document and what we charged for it.
+   */
+  static class Entry {
+    /**
+     * The document.
+     */
+    final JSONValue value;
+
+    /**
+     * The bytes we charged.
+     */
+    final long charge;
+
+    Entry(JSONValue value, long charge) {
+      this.value = value;
+      this.charge = charge;
+    } // Entry(JSONValue, long)
+  } // class Entry
+
+} // class JSONCache<K>
@@ -33,7 +33,7 @@ public class JSONConstant implements JSONValue {
   /**
    * The value of the constant.
    */
-  Object value;
+  final Object value;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -46,6 +46,17 @@ public class JSONConstant implements JSONValue {
     this.value = value;
   } // JSONConstant
 
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the shared constant for a boolean.
+   */
+  public static JSONConstant valueOf(boolean b) {
+    return b ? TRUE : FALSE;
+  } // valueOf(boolean)
+
   // +-------------------------+-------------------------------------
   // | Standard object methods |
   // +-------------------------+
@@ -99,4 +110,12 @@ public class JSONConstant implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Estimate the bytes of heap the constant holds: none, since the
+   * constants are shared.
+   */
+  public long retainedSize() {
+    return 0;
+  } // retainedSize()
+
 } // class JSONConstant
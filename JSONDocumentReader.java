@@ -0,0 +1,111 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * Read a series of JSON documents from one long-lived source, such as a
+ * socket or a message stream, where each document follows the last
+ * directly or after some whitespace (e.g., {"a": 1}{"a": 2} or one
+ * document per line).
+ *
+ * One parser, and so one read buffer, serves every document: whatever
+ * we read past the end of one document is kept for the next, and
+ * nothing is copied into a String per document. Byte sources are read
+ * as UTF-8.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONDocumentReader implements Closeable {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where the documents come from.
+   */
+  Reader source;
+
+  /**
+   * The parser that holds our place in source.
+   */
+  JSONParser parser;
+
+  /**
+   * The number of documents read so far.
+   */
+  long count;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Read documents from source.
+   */
+  public JSONDocumentReader(Reader source) {
+    this(source, new JSONParser());
+  } // JSONDocumentReader(Reader)
+
+  /**
+   * Read documents from a stream of UTF-8.
+   */
+  public JSONDocumentReader(InputStream in) {
+    this(new InputStreamReader(in, StandardCharsets.UTF_8));
+  } // JSONDocumentReader(InputStream)
+
+  /**
+   * Read documents from a channel of UTF-8.
+   */
+  public JSONDocumentReader(ReadableByteChannel channel) {
+    this(Channels.newReader(channel, StandardCharsets.UTF_8));
+  } // JSONDocumentReader(ReadableByteChannel)
+
+  /**
+   * Read documents from source with a parser set up by the caller (e.g.,
+   * with limits or a listener). Limits apply to each document; the
+   * listener hears about each document.
+   */
+  public JSONDocumentReader(Reader source, JSONParser parser) {
+    this.source = source;
+    this.parser = parser;
+    this.count = 0;
+  } // JSONDocumentReader(Reader, JSONParser)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Read the next document, or return null if the source has ended.
+   * Error positions count from the start of the failed document.
+   */
+  public JSONValue read() throws ParseException, IOException {
+    JSONValue result = this.parser.parseNext(this.source);
+    if (result != null) {
+      ++this.count;
+    } // if
+    return result;
+  } // read()
+
+  /**
+   * Get the number of documents read so far.
+   */
+  public long getCount() {
+    return this.count;
+  } // getCount()
+
+  /**
+   * Close the source.
+   */
+  public void close() throws IOException {
+    this.source.close();
+  } // close()
+
+} // class JSONDocumentReader
@@ -0,0 +1,186 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterate the elements of a top-level JSON array one at a time, without
+ * building the array. Each element is parsed when the client asks for it
+ * and is not kept afterwards, so the memory we need is bounded by the
+ * largest element rather than by the size of the input.
+ *
+ * Since next and hasNext can't throw checked exceptions, I/O problems
+ * come out as UncheckedIOExceptions and malformed input as
+ * IllegalStateExceptions whose cause is the ParseException.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONElementIterator implements Iterator<JSONValue>, Closeable {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * We have not yet read the opening bracket.
+   */
+  static final int START = 0;
+
+  /**
+   * The next element is waiting to be parsed.
+   */
+  static final int READY = 1;
+
+  /**
+   * We have just parsed an element.
+   */
+  static final int AFTER = 2;
+
+  /**
+   * We have read the closing bracket.
+   */
+  static final int DONE = 3;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The parser that holds our place in the input.
+   */
+  JSONParser parser;
+
+  /**
+   * Where the array comes from.
+   */
+  Reader source;
+
+  /**
+   * Do we close the source when we reach the end of the array?
+   */
+  boolean closeAtEnd;
+
+  /**
+   * Where we are in the array (START, READY, AFTER, or DONE).
+   */
+  int state;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Iterate the array in source. If closeAtEnd is set, we close source
+   * once we have read the whole array.
+   */
+  public JSONElementIterator(Reader source, boolean closeAtEnd) {
+    this.parser = new JSONParser();
+    this.source = source;
+    this.closeAtEnd = closeAtEnd;
+    this.state = START;
+  } // JSONElementIterator(Reader, boolean)
+
+  // +------------------+--------------------------------------------
+  // | Iterator methods |
+  // +------------------+
+
+  /**
+   * Determine if there is another element.
+   */
+  public boolean hasNext() {
+    if (this.state == READY) {
+      return true;
+    } else if (this.state == DONE) {
+      return false;
+    } // if/else
+    try {
+      int ch = this.parser.skipWhitespace(this.source);
+      if (this.state == START) {
+        if (ch != '[') {
+          throw new ParseException("Expected an array", this.parser.pos);
+        } // if
+        ch = this.parser.skipWhitespace(this.source);
+      } else if (ch == ',') {
+        ch = this.parser.skipWhitespace(this.source);
+        if (ch == ']') {
+          throw new ParseException("Expected a value", this.parser.pos);
+        } // if
+      } else if (ch != ']') {
+        throw new ParseException("Expected a comma or a close bracket", this.parser.pos);
+      } // if/else
+      if (ch == ']') {
+        finish();
+        return false;
+      } else if (ch == -1) {
+        throw new ParseException("Unexpected end of file", this.parser.pos);
+      } // if/else
+      this.parser.incrementReader(this.source, -1);
+      this.state = READY;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ParseException e) {
+      throw failure(e);
+    } // try/catch
+  } // hasNext()
+
+  /**
+   * Parse and return the next element.
+   */
+  public JSONValue next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    } // if
+    try {
+      JSONValue result = this.parser.parseKernel(this.source);
+      this.state = AFTER;
+      return result;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ParseException e) {
+      throw failure(e);
+    } // try/catch
+  } // next()
+
+  // +-------------------+-------------------------------------------
+  // | Closeable methods |
+  // +-------------------+
+
+  /**
+   * Close the source.
+   */
+  public void close() throws IOException {
+    this.state = DONE;
+    this.source.close();
+  } // close()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make sure nothing follows the array, and close the source if we
+   * should.
+   */
+  void finish() throws IOException, ParseException {
+    this.state = DONE;
+    int ch = this.parser.skipWhitespace(this.source);
+    if (this.closeAtEnd) {
+      this.source.close();
+    } // if
+    if (ch != -1) {
+      throw new ParseException("Characters remain at end", this.parser.pos);
+    } // if
+  } // finish()
+
+  /**
+   * Wrap a parse failure so that it can escape an Iterator method.
+   */
+  static IllegalStateException failure(ParseException e) {
+    return new IllegalStateException(e.getMessage() + " at " + e.getErrorOffset(), e);
+  } // failure(ParseException)
+
+} // class JSONElementIterator
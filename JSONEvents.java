@@ -0,0 +1,158 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JDK Flight Recorder events we emit, so live services can be
+ * profiled, and their JSON work lined up with GC, locks, and I/O, without
+ * building strings or calling a Reporter. While no recording is running
+ * (or a recording has an event turned off), the events cost next to
+ * nothing: the JIT removes them.
+ *
+ * Record with, e.g., java -XX:StartFlightRecording:filename=run.jfr, and
+ * read with jfr print --categories JSON run.jfr. Parses and serializations
+ * shorter than a millisecond are skipped unless the recording lowers
+ * their thresholds (e.g., json.Parse#threshold=0 ms). See EventReporter
+ * to send what a Reporter would print to the recording.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONEvents {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most probes a ChainedHashTable lookup may take before we record
+   * it as a LongChain.
+   */
+  static final int LONG_CHAIN = ChainedHashTable.TREEIFY_THRESHOLD;
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One document parsed by a JSONParser.
+   */
+  @Name("json.Parse")
+  @Label("JSON Parse")
+  @Category("JSON")
+  @Description("A document parsed by a JSONParser")
+  @Threshold("1 ms")
+  @StackTrace(false)
+  static class Parse extends Event {
+    @Label("Characters")
+    @Description("The characters the document took")
+    long chars;
+
+    @Label("Root")
+    @Description("The kind of value at the top of the document")
+    String root;
+
+    @Label("Pooled")
+    @Description("Were containers taken from a JSONPool?")
+    boolean pooled;
+
+    @Label("Shared Values")
+    @Description("Were small integers and short strings shared?")
+    boolean shared;
+  } // class Parse
+
+  /**
+   * One object written by a JSONSerializer.
+   */
+  @Name("json.Serialize")
+  @Label("JSON Serialize")
+  @Category("JSON")
+  @Description("An object written as JSON by a JSONSerializer")
+  @Threshold("1 ms")
+  @StackTrace(false)
+  static class Serialize extends Event {
+    @Label("Type")
+    @Description("The type the serializer writes")
+    Class<?> type;
+
+    @Label("Members")
+    @Description("The members written for each object of the type")
+    int members;
+
+    @Label("Characters")
+    @Description("The characters written, or -1 if written to a PrintWriter")
+    long chars;
+  } // class Serialize
+
+  /**
+   * One ChainedHashTable moving its pairs to a new set of buckets.
+   */
+  @Name("json.Expand")
+  @Label("Hash Table Expand")
+  @Category("JSON")
+  @Description("A ChainedHashTable rehashing into more buckets")
+  static class Expand extends Event {
+    @Label("Size")
+    @Description("The number of pairs moved")
+    int size;
+
+    @Label("Old Buckets")
+    int oldBuckets;
+
+    @Label("New Buckets")
+    int newBuckets;
+  } // class Expand
+
+  /**
+   * One ChainedHashTable lookup that looked at more than LONG_CHAIN
+   * pairs, a sign of poor or hostile hashing.
+   */
+  @Name("json.LongChain")
+  @Label("Hash Table Long Chain")
+  @Category("JSON")
+  @Description("A ChainedHashTable lookup that probed a long chain")
+  static class LongChain extends Event {
+    @Label("Bucket")
+    int bucket;
+
+    @Label("Chain Length")
+    int chainLength;
+
+    @Label("Probes")
+    @Description("The pairs compared with the key")
+    int probes;
+
+    @Label("Sorted")
+    @Description("Was the chain sorted (searched by halves)?")
+    boolean sorted;
+
+    @Label("Size")
+    @Description("The number of pairs in the table")
+    int size;
+
+    @Label("Buckets")
+    int buckets;
+
+    @Label("Key Type")
+    Class<?> keyType;
+  } // class LongChain
+
+  /**
+   * One message given to an EventReporter.
+   */
+  @Name("json.Report")
+  @Label("Reporter Message")
+  @Category("JSON")
+  @Description("A message a Reporter would have printed")
+  static class Report extends Event {
+    @Label("Source")
+    String source;
+
+    @Label("Message")
+    String message;
+  } // class Report
+
+} // class JSONEvents
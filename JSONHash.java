@@ -1,13 +1,17 @@
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Stream;
 
 /**
  * JSON hashes/objects.
  * @author Connor Heagy
  * @author Alex Maret
  */
-public class JSONHash implements JSONValue {
+public class JSONHash implements JSONValue, Iterable<KVPair<JSONString,JSONValue>> {
 
   // +--------+------------------------------------------------------
   // | Fields |
@@ -15,6 +19,11 @@ public class JSONHash implements JSONValue {
 
   ChainedHashTable<JSONString, JSONValue> hashTable;
 
+  /**
+   * Our retained size, or -1 if it needs computing again.
+   */
+  long retained = -1;
+
   // +--------------+------------------------------------------------
   // | Constructors |
   // +--------------+
@@ -23,6 +32,14 @@ public class JSONHash implements JSONValue {
     this.hashTable = new ChainedHashTable<JSONString, JSONValue>();
   } // ChainedHashTable
 
+  /**
+   * Build a hash with room for expectedSize pairs before it needs to
+   * expand.
+   */
+  public JSONHash(int expectedSize) {
+    this.hashTable = new ChainedHashTable<JSONString, JSONValue>(expectedSize);
+  } // JSONHash(int)
+
   // +-------------------------+-------------------------------------
   // | Standard object methods |
   // +-------------------------+
@@ -31,16 +48,11 @@ public class JSONHash implements JSONValue {
    * Convert to a string (e.g., for printing).
    */
   public String toString() {
-    Iterator<KVPair<JSONString,JSONValue>> next = hashTable.iterator();
-    String result = "{"; 
-    for (int i = 0; i < hashTable.size() - 1; i++) {
-      result += next.next().toString() + ", ";
-    } // for 
-    if (hashTable.size() != 0) {
-      result += next.next().toString();
-    } // if
-    result += "}";
-    return result;
+    StringWriter out = new StringWriter();
+    PrintWriter pen = new PrintWriter(out);
+    write(pen);
+    pen.flush();
+    return out.toString();
   } // toString()
 
   /**
@@ -69,7 +81,8 @@ public class JSONHash implements JSONValue {
    * Write the value as JSON.
    */
   public void writeJSON(PrintWriter pen) {
-    pen.println(toString());
+    write(pen);
+    pen.println();
   } // writeJSON(PrintWriter)
 
   /**
@@ -79,6 +92,44 @@ public class JSONHash implements JSONValue {
     return this.iterator();
   } // getValue()
 
+  /**
+   * Estimate the bytes of heap the hash holds. The estimate is kept
+   * until the hash changes.
+   */
+  public long retainedSize() {
+    return RetainedSize.of(this);
+  } // retainedSize()
+
+  /**
+   * Write the hash, and everything in it, straight to pen, as toString
+   * would give it.
+   */
+  void write(PrintWriter pen) {
+    pen.write('{');
+    boolean first = true;
+    // Walk the buckets ourselves, so that what we allocate doesn't
+    // depend on escape analysis dropping an iterator per hash.
+    for (Object bucket : hashTable.buckets) {
+      if (bucket == null) {
+        continue;
+      } // if
+      @SuppressWarnings("unchecked")
+      ArrayList<KVPair<JSONString,JSONValue>> chain =
+          (ArrayList<KVPair<JSONString,JSONValue>>) bucket;
+      for (int i = 0; i < chain.size(); i++) {
+        KVPair<JSONString,JSONValue> pair = chain.get(i);
+        if (!first) {
+          pen.write(", ");
+        } // if
+        first = false;
+        JSONString.write(pen, pair.key().getValue());
+        pen.write(": ");
+        JSON.write(pen, pair.value());
+      } // for
+    } // for
+    pen.write('}');
+  } // write(PrintWriter)
+
   // +-------------------+-------------------------------------------
   // | Hashtable methods |
   // +-------------------+
@@ -97,13 +148,46 @@ public class JSONHash implements JSONValue {
     return hashTable.iterator();
   } // iterator()
 
+  /**
+   * Get a spliterator for the key/value pairs. It splits by ranges of
+   * buckets in the underlying table.
+   */
+  @Override
+  public Spliterator<KVPair<JSONString,JSONValue>> spliterator() {
+    return hashTable.spliterator();
+  } // spliterator()
+
+  /**
+   * Stream the key/value pairs.
+   */
+  public Stream<KVPair<JSONString,JSONValue>> stream() {
+    return hashTable.stream();
+  } // stream()
+
+  /**
+   * Stream the key/value pairs in parallel.
+   */
+  public Stream<KVPair<JSONString,JSONValue>> parallelStream() {
+    return hashTable.parallelStream();
+  } // parallelStream()
+
   /**
    * Set the value associated with a key.
    */
   public void set(JSONString key, JSONValue value) {
     hashTable.set(key, value);
+    this.retained = -1;
   } // set(JSONString, JSONValue)
 
+  /**
+   * Set many key/value pairs at once, sizing the table once for all of
+   * them.
+   */
+  public void putAll(Collection<KVPair<JSONString,JSONValue>> pairs) {
+    hashTable.putAll(pairs);
+    this.retained = -1;
+  } // putAll(Collection)
+
   /**
    * Find out how many key/value pairs are in the hash table.
    */
@@ -115,4 +199,30 @@ public class JSONHash implements JSONValue {
     return hashTable;
   }
 
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Compute our retained size from the sizes of our keys and values
+   * (which RetainedSize.of has already cached, for hashes and arrays).
+   */
+  long ownSize() {
+    // hashTable and retained.
+    long result = RetainedSize.align(RetainedSize.OBJECT_HEADER + RetainedSize.REFERENCE + 8);
+    result += this.hashTable.overhead();
+    for (KVPair<JSONString,JSONValue> pair : this.hashTable) {
+      result += pair.key().retainedSize() + pair.value().retainedSize();
+    } // for
+    return result;
+  } // ownSize()
+
+  /**
+   * Empty the hash, keeping its buckets (see JSONPool).
+   */
+  void clear() {
+    this.hashTable.clear();
+    this.retained = -1;
+  } // clear()
+
 } // class JSONHash
@@ -8,14 +8,39 @@ import java.math.BigInteger;
  */
 public class JSONInteger implements JSONValue {
 
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The smallest integer that valueOf shares.
+   */
+  static final int CACHE_LOW = -128;
+
+  /**
+   * The largest integer that valueOf shares.
+   */
+  static final int CACHE_HIGH = 1023;
+
+  /**
+   * The shared small integers.
+   */
+  static final JSONInteger[] CACHE = new JSONInteger[CACHE_HIGH - CACHE_LOW + 1];
+
+  static {
+    for (int i = 0; i < CACHE.length; i++) {
+      CACHE[i] = new JSONInteger(CACHE_LOW + i);
+    } // for
+  } // static
+
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The underlying integer.
+   * The underlying integer. Final, since valueOf shares instances.
    */
-  BigInteger value;
+  final BigInteger value;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -42,6 +67,37 @@ public class JSONInteger implements JSONValue {
     this.value = BigInteger.valueOf(l);
   } // JSONInteger(long)
 
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get an integer for l, shared with everyone else who asks if l is
+   * small.
+   */
+  public static JSONInteger valueOf(long l) {
+    if ((l >= CACHE_LOW) && (l <= CACHE_HIGH)) {
+      return CACHE[(int) l - CACHE_LOW];
+    } // if
+    return new JSONInteger(l);
+  } // valueOf(long)
+
+  /**
+   * Get an integer for str, shared with everyone else who asks if it is
+   * small.
+   */
+  public static JSONInteger valueOf(String str) {
+    // Anything this short fits in a long; anything longer isn't small.
+    if (str.length() <= 5) {
+      try {
+        return valueOf(Long.parseLong(str));
+      } catch (NumberFormatException e) {
+        // Fall through and let BigInteger decide.
+      } // try/catch
+    } // if
+    return new JSONInteger(str);
+  } // valueOf(String)
+
   // +-------------------------+-------------------------------------
   // | Standard object methods |
   // +-------------------------+
@@ -79,9 +135,35 @@ public class JSONInteger implements JSONValue {
    * Write the value as JSON.
    */
   public void writeJSON(PrintWriter pen) {
-    pen.print(value);
+    write(pen);
   } // writeJSON(PrintWriter)
 
+  /**
+   * Write the integer to pen, as toString would give it. We write the
+   * digits of integers that fit in a long one at a time, building no
+   * string at all; BigInteger.toString builds a few objects on the way.
+   */
+  void write(PrintWriter pen) {
+    if (this.value.bitLength() >= 64) {
+      pen.write(this.value.toString());
+      return;
+    } // if
+    long l = this.value.longValue();
+    // Work with the negative, which holds Long.MIN_VALUE too.
+    if (l < 0) {
+      pen.write('-');
+    } else {
+      l = -l;
+    } // if/else
+    long power = 1;
+    while (l / power <= -10) {
+      power *= 10;
+    } // while
+    for (; power > 0; power /= 10) {
+      pen.write((int) ('0' - (l / power) % 10));
+    } // for
+  } // write(PrintWriter)
+
   /**
    * Get the underlying value.
    */
@@ -89,4 +171,18 @@ public class JSONInteger implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Estimate the bytes of heap the integer holds. The integers valueOf
+   * shares hold nothing of their own.
+   */
+  public long retainedSize() {
+    if ((this.value.bitLength() < 32)) {
+      int i = this.value.intValue();
+      if ((i >= CACHE_LOW) && (i <= CACHE_HIGH) && (CACHE[i - CACHE_LOW] == this)) {
+        return 0;
+      } // if
+    } // if
+    return RetainedSize.WRAPPER + RetainedSize.bigInteger(this.value);
+  } // retainedSize()
+
 } // class JSONInteger
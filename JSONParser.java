@@ -0,0 +1,928 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.ArrayList;
+
+/**
+ * The state of a single parse. Each parse gets its own parser so that
+ * several threads can parse at once.
+ *
+ * The parser reads its source through a small buffer of its own, which
+ * lets it back up one character without asking the source to reset, so
+ * it works on any reader and uses the same memory however long the
+ * input is.
+ *
+ * Arrays and hashes are parsed without recursion: the containers we are
+ * in are kept on a stack of our own, in plain arrays, so nesting costs
+ * no Java stack and cannot overflow it. Limits on nesting depth,
+ * document size, string length, and members per container guard
+ * against hostile input; exceeding one is a ParseException at the
+ * position where it happened.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONParser {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of characters we read from the source at once.
+   */
+  static final int BUFFER_SIZE = 2048;
+
+  /**
+   * The default limit on how deeply arrays and hashes may nest.
+   */
+  public static final int DEFAULT_MAX_DEPTH = 1000;
+
+  /**
+   * The default limit on the length of a string, in chars.
+   */
+  public static final int DEFAULT_MAX_STRING_LENGTH = 20_000_000;
+
+  /**
+   * The number of containers we make room for at first.
+   */
+  static final int INITIAL_STACK = 16;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The current position in the input.
+   */
+  int pos;
+
+  /**
+   * How deeply nested we are in arrays and hashes.
+   */
+  int depth;
+
+  /**
+   * The listener to tell about each parse, or null if nobody is listening.
+   */
+  ParseListener listener;
+
+  /**
+   * The metrics for the current parse. Null unless we have a listener, so
+   * that an unobserved parse pays only for a few null checks.
+   */
+  ParseMetrics metrics;
+
+  /**
+   * Do we return shared instances for small integers and short strings?
+   */
+  boolean shareValues;
+
+  /**
+   * Where we get hashes, arrays, and pairs, or null to build new ones.
+   */
+  JSONPool pool;
+
+  /**
+   * Characters read from the source. buffer[next-1], if there is one, is
+   * the character we read last, so we can always back up one.
+   */
+  char[] buffer;
+
+  /**
+   * The index of the next unread character in buffer.
+   */
+  int next;
+
+  /**
+   * The number of characters in buffer.
+   */
+  int limit;
+
+  /**
+   * Did our last read hit the end of the source?
+   */
+  boolean atEnd;
+
+  /**
+   * The members of the hashes we're in the middle of parsing, innermost
+   * last. We build each hash once we know how many members it has, so
+   * that its table is sized once rather than grown.
+   */
+  ArrayList<KVPair<JSONString,JSONValue>> members;
+
+  /**
+   * The elements of the arrays we're in the middle of parsing, innermost
+   * last. Like members, so that each array is built at its final size.
+   */
+  ArrayList<JSONValue> elements;
+
+  /**
+   * For each open container, outermost first: is it a hash?
+   */
+  boolean[] hashes;
+
+  /**
+   * For each open container, where its elements or members start.
+   */
+  int[] starts;
+
+  /**
+   * For each open hash, the key whose value we're parsing.
+   */
+  JSONString[] keys;
+
+  /**
+   * The limits; see the setters.
+   */
+  int maxDepth;
+  long maxDocumentSize;
+  int maxStringLength;
+  int maxMembers;
+
+
+  /**
+   * Where we build strings that have escapes or run past the end of the
+   * buffer.
+   */
+  StringBuilder text;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a new parser.
+   */
+  public JSONParser() {
+    this.pos = 0;
+    this.listener = null;
+    this.shareValues = false;
+    this.pool = null;
+    this.buffer = new char[BUFFER_SIZE];
+    this.next = 0;
+    this.limit = 0;
+    this.atEnd = false;
+    this.members = new ArrayList<KVPair<JSONString,JSONValue>>();
+    this.text = new StringBuilder();
+    this.elements = new ArrayList<JSONValue>();
+    this.hashes = new boolean[INITIAL_STACK];
+    this.starts = new int[INITIAL_STACK];
+    this.keys = new JSONString[INITIAL_STACK];
+    this.maxDepth = DEFAULT_MAX_DEPTH;
+    this.maxDocumentSize = Long.MAX_VALUE;
+    this.maxStringLength = DEFAULT_MAX_STRING_LENGTH;
+    this.maxMembers = Integer.MAX_VALUE;
+  } // JSONParser()
+
+  /**
+   * Build a new parser that reports each parse to listener.
+   */
+  public JSONParser(ParseListener listener) {
+    this();
+    this.listener = listener;
+  } // JSONParser(ParseListener)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Parse JSON from a reader.
+   */
+  public JSONValue parse(Reader source) throws ParseException, IOException {
+    pos = 0;
+    next = 0;
+    limit = 0;
+    atEnd = false;
+    return parseDocument(source, true);
+  } // parse(Reader)
+
+  /**
+   * Parse the next of a series of documents in source, starting where
+   * the last call stopped. Documents may follow one another directly or
+   * with whitespace between them; we keep whatever we have read past the
+   * end of one for the next. Returns null once only whitespace remains.
+   * Error positions count from the start of the document.
+   */
+  public JSONValue parseNext(Reader source) throws ParseException, IOException {
+    if (-1 == skipWhitespace(source)) {
+      return null;
+    } // if
+    incrementReader(source, -1);
+    pos = 0;
+    return parseDocument(source, false);
+  } // parseNext(Reader)
+
+  /**
+   * Set the listener to tell about each parse. Use null to stop listening.
+   */
+  public void setListener(ParseListener listener) {
+    this.listener = listener;
+  } // setListener(ParseListener)
+
+  /**
+   * Should we return shared instances for small integers (through
+   * JSONInteger.valueOf) and short strings (through a bounded
+   * JSONStringTable)? Sharing shrinks documents that repeat the same
+   * keys and values, but means the values must not be compared with ==
+   * to tell occurrences apart. The constants are always shared.
+   */
+  public void setShareValues(boolean share) {
+    this.shareValues = share;
+  } // setShareValues(boolean)
+
+  /**
+   * Take hashes, arrays, and pairs from pool (e.g., JSONPool.forThread())
+   * rather than building new ones, so that documents released to the
+   * pool are recycled. Use null to stop.
+   */
+  public void setPool(JSONPool pool) {
+    this.pool = pool;
+  } // setPool(JSONPool)
+
+  /**
+   * Set how deeply arrays and hashes may nest (DEFAULT_MAX_DEPTH unless
+   * set).
+   */
+  public void setMaxDepth(int max) {
+    this.maxDepth = checkLimit(max);
+  } // setMaxDepth(int)
+
+  /**
+   * Set the most characters we will read from a source (no limit unless
+   * set).
+   */
+  public void setMaxDocumentSize(long max) {
+    if (max < 0) {
+      throw new IllegalArgumentException("Invalid limit: " + max);
+    } // if
+    this.maxDocumentSize = max;
+  } // setMaxDocumentSize(long)
+
+  /**
+   * Set the longest string we will build, in chars
+   * (DEFAULT_MAX_STRING_LENGTH unless set).
+   */
+  public void setMaxStringLength(int max) {
+    this.maxStringLength = checkLimit(max);
+  } // setMaxStringLength(int)
+
+  /**
+   * Set the most elements an array, or pairs a hash, may have (no limit
+   * unless set).
+   */
+  public void setMaxMembers(int max) {
+    this.maxMembers = checkLimit(max);
+  } // setMaxMembers(int)
+
+  // +---------------+-----------------------------------------------
+  // | Local helpers |
+  // +---------------+
+
+  /**
+   * Parse a document, recording a JFR event for it if a recording wants
+   * one (see JSONEvents). If whole is set, the document must be all that
+   * is left of source. We keep this small, so it inlines and the JIT can
+   * drop the event when nobody is recording.
+   */
+  JSONValue parseDocument(Reader source, boolean whole) throws ParseException, IOException {
+    JSONEvents.Parse event = new JSONEvents.Parse();
+    event.begin();
+    int startPos = pos;
+    JSONValue result = parseListened(source, whole);
+    event.end();
+    if (event.shouldCommit()) {
+      event.chars = pos - startPos - (whole ? 1 : 0);
+      event.root = result.getClass().getSimpleName();
+      event.pooled = (pool != null);
+      event.shared = shareValues;
+      event.commit();
+    } // if
+    return result;
+  } // parseDocument(Reader, boolean)
+
+  /**
+   * Parse a document, telling the listener about it. If whole is set,
+   * the document must be all that is left of source.
+   */
+  JSONValue parseListened(Reader source, boolean whole) throws ParseException, IOException {
+    depth = 0;
+    int startPos = pos;
+    long startNanos = 0;
+    long startBytes = 0;
+    if (listener != null) {
+      metrics = new ParseMetrics();
+      startBytes = ParseMetrics.threadAllocatedBytes();
+      startNanos = System.nanoTime();
+    } // if
+    JSONValue result;
+    try {
+      result = parseKernel(source);
+    } finally {
+      // A parse that fails leaves its open containers' members staged;
+      // drop them, so they neither pile up nor stay reachable.
+      members.clear();
+      elements.clear();
+      java.util.Arrays.fill(keys, null);
+    } // try/finally
+    int endPos = pos;
+    checkSize();
+    if (whole && (-1 != skipWhitespace(source))) {
+      throw new ParseException("Characters remain at end", pos);
+    } // if
+    if (listener != null) {
+      metrics.nanos = System.nanoTime() - startNanos;
+      if (startBytes != -1) {
+        metrics.allocatedBytes = ParseMetrics.threadAllocatedBytes() - startBytes;
+      } // if
+      metrics.chars = whole ? pos - 1 - startPos : endPos - startPos;
+      ParseMetrics done = metrics;
+      metrics = null;
+      listener.parsed(done);
+    } // if
+    return result;
+  } // parseListened(Reader, boolean)
+
+  /**
+   * Parse one value, with everything in it, from a reader.
+   */
+  JSONValue parseKernel(Reader source) throws ParseException, IOException {
+    // We may be called while other containers are open (e.g., by
+    // JSONBinder), so we're done when we get back to this depth.
+    int base = depth;
+    JSONValue value;
+    int ch = skipWhitespace(source);
+    while (true) {
+      // Start a value whose first character is ch.
+      if ((ch == '[') || (ch == '{')) {
+        boolean hash = (ch == '{');
+        enter(hash);
+        ch = skipWhitespace(source);
+        if (ch != (hash ? '}' : ']')) {
+          if (hash) {
+            keys[depth - 1] = parseKey(source, ch);
+            ch = skipWhitespace(source);
+          } // if
+          continue;
+        } // if
+        --depth;
+        if (pool != null) {
+          value = hash ? pool.hash(0) : pool.array(0);
+        } else {
+          value = hash ? new JSONHash() : new JSONArray();
+        } // if/else
+      } else {
+        value = parseScalar(source, ch);
+      } // if/else
+
+      // Add the value to its container, and any containers that it
+      // completes to theirs.
+      while (true) {
+        counted(value);
+        if (depth == base) {
+          return value;
+        } // if
+        int top = depth - 1;
+        ch = skipWhitespace(source);
+        if (hashes[top]) {
+          members.add((pool != null) ? pool.pair(keys[top], value)
+              : new KVPair<JSONString,JSONValue>(keys[top], value));
+          checkMembers(members.size() - starts[top]);
+          if (ch == ',') {
+            keys[top] = parseKey(source, skipWhitespace(source));
+            ch = skipWhitespace(source);
+            break;
+          } else if (ch != '}') {
+            throw new ParseException("Expected a comma or a close brace", pos);
+          } // if/else
+          value = buildHash(starts[top]);
+        } else {
+          elements.add(value);
+          checkMembers(elements.size() - starts[top]);
+          if (ch == ',') {
+            ch = skipWhitespace(source);
+            break;
+          } else if (ch != ']') {
+            throw new ParseException("Expected a comma or a close bracket", pos);
+          } // if/else
+          value = buildArray(starts[top]);
+        } // if/else
+        --depth;
+      } // while
+    } // while
+  } // parseKernel
+
+  /**
+   * Parse a string, number, or constant whose first character is ch.
+   */
+  JSONValue parseScalar(Reader source, int ch) throws ParseException, IOException {
+    if (ch == '"') {
+      return parseString(source);
+    } else if ((ch == 't') || (ch == 'f') || (ch == 'n')) {
+      return parseLiteral(source, ch);
+    } else if ((ch == '-') || ((ch >= '0') && (ch <= '9'))) {
+      return parseNumber(source, ch);
+    } else if (ch == -1) {
+      throw new ParseException("Unexpected end of file", pos);
+    } // if/else
+    throw new ParseException("Expected a value", pos);
+  } // parseScalar(Reader, int)
+
+  /**
+   * Parse a key whose first character is ch, and the colon after it.
+   */
+  JSONString parseKey(Reader source, int ch) throws ParseException, IOException {
+    if (ch != '"') {
+      throw new ParseException("Expected a key", pos);
+    } // if
+    JSONString key = parseString(source);
+    counted(key);
+    if (skipWhitespace(source) != ':') {
+      throw new ParseException("Expected a colon", pos);
+    } // if
+    return key;
+  } // parseKey(Reader, int)
+
+  /**
+   * Parse true, false, or null, whose first character is first.
+   */
+  JSONConstant parseLiteral(Reader source, int first) throws ParseException, IOException {
+    String rest;
+    JSONConstant result;
+    if (first == 't') {
+      rest = "rue";
+      result = JSONConstant.TRUE;
+    } else if (first == 'f') {
+      rest = "alse";
+      result = JSONConstant.FALSE;
+    } else if (first == 'n') {
+      rest = "ull";
+      result = JSONConstant.NULL;
+    } else {
+      throw new ParseException("Expected a value", pos);
+    } // if/else
+    for (int i = 0; i < rest.length(); i++) {
+      if (read(source) != rest.charAt(i)) {
+        throw new ParseException("Invalid literal", pos);
+      } // if
+      ++pos;
+    } // for
+    return result;
+  } // parseLiteral(Reader, int)
+
+  /**
+   * Build the array whose elements start at elements[start], and drop
+   * them from elements.
+   */
+  JSONArray buildArray(int start) {
+    int size = elements.size() - start;
+    JSONArray array = (pool != null) ? pool.array(size) : new JSONArray(size);
+    for (int i = start; i < elements.size(); i++) {
+      array.add(elements.get(i));
+    } // for
+    for (int i = elements.size() - 1; i >= start; i--) {
+      elements.remove(i);
+    } // for
+    return array;
+  } // buildArray(int)
+
+  /**
+   * Build the hash whose members start at members[start], and drop them
+   * from members.
+   */
+  JSONHash buildHash(int start) {
+    int size = members.size() - start;
+    JSONHash hash = (pool != null) ? pool.hash(size) : new JSONHash(size);
+    for (int i = start; i < members.size(); i++) {
+      hash.hashTable.insert(members.get(i));
+    } // for
+    // Drop our members from the end without building a sublist.
+    for (int i = members.size() - 1; i >= start; i--) {
+      members.remove(i);
+    } // for
+    return hash;
+  } // buildHash(int)
+
+  /**
+   * Count a value in the metrics, if anyone is listening.
+   */
+  JSONValue counted(JSONValue value) {
+    if (metrics != null) {
+      metrics.count(value);
+    } // if
+    return value;
+  } // counted(JSONValue)
+
+  /**
+   * Open an array or hash.
+   */
+  void enter(boolean hash) throws ParseException {
+    if (depth >= maxDepth) {
+      throw new ParseException("Nested more than " + maxDepth + " deep", pos);
+    } // if
+    if (depth == hashes.length) {
+      int size = 2 * depth;
+      hashes = java.util.Arrays.copyOf(hashes, size);
+      starts = java.util.Arrays.copyOf(starts, size);
+      keys = java.util.Arrays.copyOf(keys, size);
+    } // if
+    hashes[depth] = hash;
+    starts[depth] = hash ? members.size() : elements.size();
+    ++depth;
+    if ((metrics != null) && (depth > metrics.maxDepth)) {
+      metrics.maxDepth = depth;
+    } // if
+  } // enter(boolean)
+
+  /**
+   * Make sure a container hasn't grown past maxMembers.
+   */
+  void checkMembers(int count) throws ParseException {
+    if (count > maxMembers) {
+      throw new ParseException("More than " + maxMembers + " members", pos);
+    } // if
+  } // checkMembers(int)
+
+  /**
+   * Make sure the current document hasn't grown past maxDocumentSize.
+   */
+  void checkSize() throws ParseException {
+    if (pos > maxDocumentSize) {
+      throw new ParseException("Document longer than " + maxDocumentSize + " characters", pos);
+    } // if
+  } // checkSize()
+
+  /**
+   * Make sure a limit makes sense, and return it.
+   */
+  static int checkLimit(int max) {
+    if (max < 0) {
+      throw new IllegalArgumentException("Invalid limit: " + max);
+    } // if
+    return max;
+  } // checkLimit(int)
+
+  /**
+   * Get the next character from source, skipping over whitespace.
+   */
+  int skipWhitespace(Reader source) throws ParseException, IOException {
+    int ch;
+    do {
+      ch = read(source);
+      ++pos;
+    } while (JSON.isWhitespace(ch));
+    return ch;
+  } // skipWhitespace(Reader)
+
+  /**
+   * Parse the rest of a string whose opening quote we have read. We look
+   * each character up in JSONString.ESCAPES to find the end of a run of
+   * ordinary characters, then copy the whole run at once; only escapes
+   * are handled a character at a time.
+   */
+  JSONString parseString(Reader source) throws ParseException, IOException {
+    if (shareValues) {
+      // Most strings lie in the buffer with nothing to unescape, so we
+      // can look them up without building a String.
+      int i = next;
+      while ((i < limit) && !JSONString.needsEscape(buffer[i])) {
+        ++i;
+      } // while
+      if ((i < limit) && (buffer[i] == '"') && (i - next <= maxStringLength)) {
+        JSONString result = JSONStringTable.SHARED.intern(buffer, next, i - next);
+        pos += i - next + 1;
+        next = i + 1;
+        return result;
+      } // if
+      return JSONStringTable.SHARED.intern(scanString(source));
+    } // if
+    return new JSONString(scanString(source));
+  } // parseString(source)
+
+  /**
+   * Read the rest of a string. A string without escapes that fits in
+   * the buffer is copied straight out of it; anything else is built in
+   * text.
+   */
+  String scanString(Reader source) throws ParseException, IOException {
+    boolean building = false;
+    while (true) {
+      if ((next == limit) && !fill(source)) {
+        atEnd = true;
+        throw new ParseException("Unterminated string", pos);
+      } // if
+      int start = next;
+      int i = start;
+      char c = 0;
+      while (i < limit) {
+        c = buffer[i];
+        if (JSONString.needsEscape(c)) {
+          break;
+        } // if
+        ++i;
+      } // while
+      pos += i - start;
+      if ((building ? text.length() : 0) + (i - start) > maxStringLength) {
+        throw new ParseException("String longer than " + maxStringLength + " characters", pos);
+      } // if
+      if ((c == '"') && (i < limit) && !building) {
+        next = i + 1;
+        ++pos;
+        return new String(buffer, start, i - start);
+      } // if
+      if (!building) {
+        text.setLength(0);
+        building = true;
+      } // if
+      text.append(buffer, start, i - start);
+      next = i;
+      if (i == limit) {
+        // The run goes on past the buffer.
+        continue;
+      } // if
+      next = i + 1;
+      ++pos;
+      if (c == '"') {
+        return text.toString();
+      } else if (c != '\\') {
+        throw new ParseException("Unescaped control character in string", pos);
+      } // if/else
+      text.append(unescape(source));
+      if (text.length() > maxStringLength) {
+        throw new ParseException("String longer than " + maxStringLength + " characters", pos);
+      } // if
+    } // while
+  } // scanString(source)
+
+  /**
+   * Read the rest of an escape whose backslash we have read, and return
+   * the character it stands for.
+   */
+  char unescape(Reader source) throws ParseException, IOException {
+    int ch = read(source);
+    ++pos;
+    switch (ch) {
+      case '"':
+      case '\\':
+      case '/':
+        return (char) ch;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = hexValue(read(source));
+          ++pos;
+          if (digit < 0) {
+            throw new ParseException("Invalid \\u escape", pos);
+          } // if
+          code = (code << 4) | digit;
+        } // for
+        // Surrogate pairs come out as two chars, just as Java wants them.
+        return (char) code;
+      default:
+        throw new ParseException("Invalid escape", pos);
+    } // switch
+  } // unescape(source)
+
+  /**
+   * Get the value of a hex digit, or -1 if ch isn't one.
+   */
+  static int hexValue(int ch) {
+    if ((ch >= '0') && (ch <= '9')) {
+      return ch - '0';
+    } else if ((ch >= 'a') && (ch <= 'f')) {
+      return ch - 'a' + 10;
+    } else if ((ch >= 'A') && (ch <= 'F')) {
+      return ch - 'A' + 10;
+    } // if/else
+    return -1;
+  } // hexValue(int)
+
+   /**
+   * Parse JSONValue from a reader, keeping track of the current position
+   */
+  JSONValue parseNumber(Reader source, int first) throws ParseException, IOException {
+    if (readNumber(source, first)) {
+      try {
+        return new JSONReal(text.toString());
+      } catch (NumberFormatException e) {
+        // The grammar allows any exponent; BigDecimal's scale is an int.
+        throw new ParseException("Number out of range", pos);
+      } // try/catch
+    } // if
+    boolean negative = (text.charAt(0) == '-');
+    int digits = text.length() - (negative ? 1 : 0);
+    if (shareValues && (digits <= 18)) {
+      // Small integers are shared, so don't build a string to find one.
+      long value = 0;
+      for (int i = text.length() - digits; i < text.length(); i++) {
+        value = 10 * value + (text.charAt(i) - '0');
+      } // for
+      return JSONInteger.valueOf(negative ? -value : value);
+    } // if
+    String s = text.toString();
+    if (shareValues) {
+      return JSONInteger.valueOf(s);
+    } // if
+    return new JSONInteger(s);
+  } // parseNumber(source, first)
+
+  /**
+   * Parse an integer straight into a long, without building a string or
+   * a JSONInteger. Like parseNumber, leaves the reader at the character
+   * that ended the number.
+   */
+  long parseLong(Reader source, int first) throws ParseException, IOException {
+    // Accumulate negatively so that Long.MIN_VALUE fits.
+    boolean negative = (first == '-');
+    int ch = first;
+    if (negative) {
+      ch = read(source);
+      ++pos;
+    } // if
+    long result = 0;
+    int digits = 0;
+    try {
+      while ((ch >= '0') && (ch <= '9')) {
+        if ((digits == 1) && (result == 0)) {
+          // A leading zero must be the whole integer.
+          throw new ParseException("Expected an integer", pos);
+        } // if
+        result = Math.subtractExact(Math.multiplyExact(result, 10), ch - '0');
+        ++digits;
+        ch = read(source);
+        ++pos;
+      } // while
+    } catch (ArithmeticException e) {
+      throw new ParseException("Integer out of range", pos);
+    } // try/catch
+    if ((digits == 0) || continuesNumber(ch)) {
+      throw new ParseException("Expected an integer", pos);
+    } // if
+    incrementReader(source, -1);
+    if (negative) {
+      return result;
+    } else if (result == Long.MIN_VALUE) {
+      throw new ParseException("Integer out of range", pos);
+    } // if
+    return -result;
+  } // parseLong(source, first)
+
+  /**
+   * Parse a number straight into a double, without building a JSONReal.
+   * Like parseNumber, leaves the reader at the character that ended the
+   * number.
+   */
+  double parseDouble(Reader source, int first) throws ParseException, IOException {
+    readNumber(source, first);
+    return Double.parseDouble(text.toString());
+  } // parseDouble(source, first)
+
+  /**
+   * Read a number whose first character is first into text, checking it
+   * against the JSON grammar, -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?,
+   * as JSONValidator does. Returns true if the number has a fraction or
+   * an exponent. Like parseNumber, leaves the reader at the character
+   * that ended the number.
+   */
+  boolean readNumber(Reader source, int first) throws ParseException, IOException {
+    text.setLength(0);
+    int ch = first;
+    boolean real = false;
+    if (ch == '-') {
+      ch = appendNumber(source, ch);
+    } // if
+    if (ch == '0') {
+      ch = appendNumber(source, ch);
+    } else {
+      ch = appendDigits(source, ch);
+    } // if/else
+    if (ch == '.') {
+      real = true;
+      ch = appendDigits(source, appendNumber(source, ch));
+    } // if
+    if ((ch == 'e') || (ch == 'E')) {
+      real = true;
+      ch = appendNumber(source, ch);
+      if ((ch == '+') || (ch == '-')) {
+        ch = appendNumber(source, ch);
+      } // if
+      ch = appendDigits(source, ch);
+    } // if
+    if (continuesNumber(ch)) {
+      throw new ParseException("Invalid number", pos);
+    } // if
+    incrementReader(source, -1);
+    return real;
+  } // readNumber(Reader, int)
+
+  /**
+   * Append ch, which must be a digit, and the digits after it to text.
+   * Returns the character after the digits.
+   */
+  int appendDigits(Reader source, int ch) throws ParseException, IOException {
+    if ((ch < '0') || (ch > '9')) {
+      throw new ParseException("Expected a digit", pos);
+    } // if
+    do {
+      ch = appendNumber(source, ch);
+    } while ((ch >= '0') && (ch <= '9'));
+    return ch;
+  } // appendDigits(Reader, int)
+
+  /**
+   * Append ch to text and read the next character.
+   */
+  int appendNumber(Reader source, int ch) throws ParseException, IOException {
+    text.append((char) ch);
+    ++pos;
+    return read(source);
+  } // appendNumber(Reader, int)
+
+  /**
+   * Determine if ch could only be more of a malformed number (e.g., the
+   * 1 in 01, the x in 0x10, or the f in 1f), rather than what follows it.
+   */
+  static boolean continuesNumber(int ch) {
+    return ((ch >= '0') && (ch <= '9')) || ((ch >= 'a') && (ch <= 'z'))
+        || ((ch >= 'A') && (ch <= 'Z')) || (ch == '.') || (ch == '+') || (ch == '-');
+  } // continuesNumber(int)
+
+  /**
+   * Move forward i characters, or back up one character if i is -1.
+   * @param source
+   * @param i
+   * @throws ParseException
+   * @throws IOException
+   */
+  void incrementReader(Reader source, int i) throws ParseException, IOException {
+    if (i < -1) {
+      throw new IllegalArgumentException("Cannot back up " + (-i) + " characters");
+    } // if
+    pos += i;
+    if (i == -1) {
+      // Backing up over the end of the input leaves us at the end.
+      if (!atEnd) {
+        --next;
+      } // if
+      atEnd = false;
+    } // if
+    for (int j = 0; j < i; j++) {
+      read(source);
+    } // for
+  } // incrementReader(source, i)
+
+  /**
+   * returns the next character
+   */
+  char nextChar(Reader source) throws ParseException, IOException {
+    int ch = read(source);
+    ++pos;
+    return (char) ch;
+  } // nextChar(source)
+
+  /**
+   * Get the next character from the buffer, refilling it from source as
+   * needed. Returns -1 at the end of the input.
+   */
+  int read(Reader source) throws ParseException, IOException {
+    if ((next == limit) && !fill(source)) {
+      atEnd = true;
+      return -1;
+    } // if
+    atEnd = false;
+    return buffer[next++];
+  } // read(Reader)
+
+  /**
+   * Refill the buffer from source, keeping the last character we read.
+   * Returns false at the end of the input.
+   */
+  boolean fill(Reader source) throws ParseException, IOException {
+    if (limit > 0) {
+      buffer[0] = buffer[limit - 1];
+      next = 1;
+      limit = 1;
+    } // if
+    int count = source.read(buffer, limit, buffer.length - limit);
+    if (count <= 0) {
+      return false;
+    } // if
+    limit += count;
+    // We check the size each time we need more input, so we never hold
+    // more than a buffer beyond the limit; parseDocument checks again at
+    // the end of the document.
+    checkSize();
+    return true;
+  } // fill(Reader)
+
+} // class JSONParser
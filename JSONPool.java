@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+
+/**
+ * Hashes, arrays, and pairs to build documents from, for code that
+ * parses a document, uses it briefly, and drops it. A parser given a pool
+ * (see JSONParser.setPool) takes its containers from the pool; releasing
+ * the document empties them, keeping their capacity, and returns them to
+ * the pool for the next document. Once a thread's pool has warmed up,
+ * parsing a document of the usual shape allocates little beyond its
+ * scalars (and with setShareValues, few of those).
+ *
+ * A pool belongs to one thread (see forThread). A released document must
+ * not be used again, by anyone: its hashes and arrays will turn up in
+ * later documents. Never release a document twice, or one built by hand
+ * that shares containers with another.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONPool {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The most hashes, arrays, or pairs we keep.
+   */
+  public static final int MAX_POOLED = 4096;
+
+  /**
+   * The most members a container may have to be kept. Bigger ones go to
+   * the garbage collector, so a rare huge document doesn't pin its
+   * memory in the pool.
+   */
+  public static final int MAX_MEMBERS = 1 << 16;
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * The pool for each thread.
+   */
+  static final ThreadLocal<JSONPool> POOLS = ThreadLocal.withInitial(JSONPool::new);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The free hashes.
+   */
+  final ArrayList<JSONHash> hashes;
+
+  /**
+   * The free arrays.
+   */
+  final ArrayList<JSONArray> arrays;
+
+  /**
+   * The free pairs.
+   */
+  final ArrayList<KVPair<JSONString,JSONValue>> pairs;
+
+  /**
+   * The containers release has yet to visit.
+   */
+  final ArrayList<JSONValue> pending;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build an empty pool.
+   */
+  public JSONPool() {
+    this.hashes = new ArrayList<JSONHash>();
+    this.arrays = new ArrayList<JSONArray>();
+    this.pairs = new ArrayList<KVPair<JSONString,JSONValue>>();
+    this.pending = new ArrayList<JSONValue>();
+  } // JSONPool()
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the pool for the current thread.
+   */
+  public static JSONPool forThread() {
+    return POOLS.get();
+  } // forThread()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get an empty hash with room for expectedSize pairs.
+   */
+  public JSONHash hash(int expectedSize) {
+    if (this.hashes.isEmpty()) {
+      return new JSONHash(expectedSize);
+    } // if
+    JSONHash result = this.hashes.remove(this.hashes.size() - 1);
+    result.hashTable.ensureCapacity(expectedSize);
+    result.retained = -1;
+    return result;
+  } // hash(int)
+
+  /**
+   * Get an empty array with room for expectedSize elements.
+   */
+  public JSONArray array(int expectedSize) {
+    if (this.arrays.isEmpty()) {
+      return new JSONArray(expectedSize);
+    } // if
+    JSONArray result = this.arrays.remove(this.arrays.size() - 1);
+    result.ensureCapacity(expectedSize);
+    return result;
+  } // array(int)
+
+  /**
+   * Get a pair.
+   */
+  public KVPair<JSONString,JSONValue> pair(JSONString key, JSONValue value) {
+    if (this.pairs.isEmpty()) {
+      return new KVPair<JSONString,JSONValue>(key, value);
+    } // if
+    KVPair<JSONString,JSONValue> result = this.pairs.remove(this.pairs.size() - 1);
+    result.reset(key, value);
+    return result;
+  } // pair(JSONString, JSONValue)
+
+  /**
+   * Empty every hash and array in document and keep them (and the
+   * hashes' pairs) for later documents. A document that is just a
+   * scalar has nothing to keep.
+   */
+  public void release(JSONValue document) {
+    visit(document);
+    while (!this.pending.isEmpty()) {
+      JSONValue value = this.pending.remove(this.pending.size() - 1);
+      if (value instanceof JSONHash) {
+        JSONHash hash = (JSONHash) value;
+        // Walk the buckets ourselves, so that, like arrays below, we don't
+        // need escape analysis to drop an iterator per hash.
+        for (Object bucket : hash.hashTable.buckets) {
+          if (bucket == null) {
+            continue;
+          } // if
+          @SuppressWarnings("unchecked")
+          ArrayList<KVPair<JSONString,JSONValue>> chain =
+              (ArrayList<KVPair<JSONString,JSONValue>>) bucket;
+          for (int i = 0; i < chain.size(); i++) {
+            KVPair<JSONString,JSONValue> pair = chain.get(i);
+            visit(pair.value());
+            if (this.pairs.size() < MAX_POOLED) {
+              pair.reset(null, null);
+              this.pairs.add(pair);
+            } // if
+          } // for
+        } // for
+        boolean keep = (hash.size() <= MAX_MEMBERS) && (this.hashes.size() < MAX_POOLED);
+        hash.clear();
+        if (keep) {
+          this.hashes.add(hash);
+        } // if
+      } else {
+        JSONArray array = (JSONArray) value;
+        for (int i = 0; i < array.size(); i++) {
+          visit(array.get(i));
+        } // for
+        boolean keep = (array.size() <= MAX_MEMBERS) && (this.arrays.size() < MAX_POOLED);
+        array.clear();
+        if (keep) {
+          this.arrays.add(array);
+        } // if
+      } // if/else
+    } // while
+  } // release(JSONValue)
+
+  /**
+   * Get the number of hashes, arrays, and pairs waiting to be reused.
+   */
+  public int size() {
+    return this.hashes.size() + this.arrays.size() + this.pairs.size();
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Note a value for release to visit, if it's a container.
+   */
+  void visit(JSONValue value) {
+    if ((value instanceof JSONHash) || (value instanceof JSONArray)) {
+      this.pending.add(value);
+    } // if
+  } // visit(JSONValue)
+
+} // class JSONPool
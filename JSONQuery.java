@@ -0,0 +1,1254 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoublePredicate;
+
+/**
+ * Group, filter, and aggregate newline-delimited JSON (one hash per
+ * line) without building the hashes. For example,
+ *
+ *   new JSONQuery().groupBy("request.method").where("level", new JSONString("error"))
+ *       .count().sum("bytes").max("latency").run(path)
+ *
+ * gives one row (a JSONHash) per method, with "request.method",
+ * "count", "sum(bytes)", and "max(latency)" fields.
+ *
+ * Each line is scanned as bytes: we follow only the fields the query
+ * names (a path such as "request.method" names a field of a nested
+ * hash) and skip everything else by matching brackets and quotes, so
+ * lines are checked only as far as we read them. Group keys and
+ * filter values are compared by their JSON text, so they (and distinct
+ * values) are checked in full as we reach them, and a bad one is
+ * reported with its line. Groups live in an
+ * open-addressing table of bytes, and aggregates in primitive arrays
+ * indexed by group. A file is split into ranges of lines that are
+ * scanned in parallel, each into its own groups, which we then merge.
+ *
+ * sum, min, and max ignore values that aren't numbers; min and max
+ * compare as doubles. distinct counts the distinct JSON texts of a
+ * field.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONQuery {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * Count the rows in each group.
+   */
+  static final int COUNT = 0;
+
+  /**
+   * Add up a field.
+   */
+  static final int SUM = 1;
+
+  /**
+   * Find the smallest value of a field.
+   */
+  static final int MIN = 2;
+
+  /**
+   * Find the largest value of a field.
+   */
+  static final int MAX = 3;
+
+  /**
+   * Count the distinct values of a field.
+   */
+  static final int DISTINCT = 4;
+
+  /**
+   * The names of the aggregates, by kind.
+   */
+  static final String[] NAMES = { "count", "sum", "min", "max", "distinct" };
+
+  /**
+   * The size of the read buffer. It grows for longer lines.
+   */
+  static final int BUFFER_SIZE = 1 << 20;
+
+  /**
+   * The smallest range of a file worth a thread of its own.
+   */
+  static final long MIN_SPLIT = 8L << 20;
+
+  /**
+   * The JSON text of null, for missing fields.
+   */
+  static final byte[] NULL_TEXT = "null".getBytes(StandardCharsets.US_ASCII);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Every path the query reads, indexed by slot.
+   */
+  final ArrayList<String> paths;
+
+  /**
+   * The paths, as a tree of field names.
+   */
+  final Node root;
+
+  /**
+   * The paths we group by.
+   */
+  final ArrayList<String> groups;
+
+  /**
+   * The slots of the paths we group by.
+   */
+  int[] groupSlots;
+
+  /**
+   * The filters, all of which a line must pass.
+   */
+  final ArrayList<Filter> filters;
+
+  /**
+   * The aggregates, in the order they appear in each row.
+   */
+  final ArrayList<Aggregate> aggregates;
+
+  /**
+   * The most threads to scan a file with.
+   */
+  int threads;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Start a query with no groups, filters, or aggregates.
+   */
+  public JSONQuery() {
+    this.paths = new ArrayList<String>();
+    this.root = new Node(null);
+    this.groups = new ArrayList<String>();
+    this.groupSlots = new int[0];
+    this.filters = new ArrayList<Filter>();
+    this.aggregates = new ArrayList<Aggregate>();
+    this.threads = Runtime.getRuntime().availableProcessors();
+  } // JSONQuery()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Group by the values of some fields. Without groupBy, the whole input
+   * is one group.
+   */
+  public JSONQuery groupBy(String... fields) {
+    for (String field : fields) {
+      this.groups.add(field);
+      this.groupSlots = Arrays.copyOf(this.groupSlots, this.groupSlots.length + 1);
+      this.groupSlots[this.groupSlots.length - 1] = slot(field);
+    } // for
+    return this;
+  } // groupBy(String...)
+
+  /**
+   * Keep only lines where field has value (compared as JSON text, so
+   * meant for strings, integers, and constants). A missing field counts
+   * as null.
+   */
+  public JSONQuery where(String field, JSONValue value) {
+    this.filters.add(new Filter(slot(field),
+        value.toString().getBytes(StandardCharsets.UTF_8), null));
+    return this;
+  } // where(String, JSONValue)
+
+  /**
+   * Keep only lines where field is a number that passes test.
+   */
+  public JSONQuery where(String field, DoublePredicate test) {
+    this.filters.add(new Filter(slot(field), null, test));
+    return this;
+  } // where(String, DoublePredicate)
+
+  /**
+   * Count the lines in each group.
+   */
+  public JSONQuery count() {
+    this.aggregates.add(new Aggregate(COUNT, null, -1));
+    return this;
+  } // count()
+
+  /**
+   * Add up field in each group.
+   */
+  public JSONQuery sum(String field) {
+    this.aggregates.add(new Aggregate(SUM, field, slot(field)));
+    return this;
+  } // sum(String)
+
+  /**
+   * Find the smallest value of field in each group.
+   */
+  public JSONQuery min(String field) {
+    this.aggregates.add(new Aggregate(MIN, field, slot(field)));
+    return this;
+  } // min(String)
+
+  /**
+   * Find the largest value of field in each group.
+   */
+  public JSONQuery max(String field) {
+    this.aggregates.add(new Aggregate(MAX, field, slot(field)));
+    return this;
+  } // max(String)
+
+  /**
+   * Count the distinct values of field in each group.
+   */
+  public JSONQuery distinct(String field) {
+    this.aggregates.add(new Aggregate(DISTINCT, field, slot(field)));
+    return this;
+  } // distinct(String)
+
+  /**
+   * Set the most threads to scan a file with.
+   */
+  public JSONQuery setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    } // if
+    this.threads = threads;
+    return this;
+  } // setThreads(int)
+
+  /**
+   * Run the query over a stream of lines, on this thread.
+   */
+  public JSONArray run(InputStream in) throws ParseException, IOException {
+    Partial partial = new Partial(this);
+    scan(Channels.newChannel(in), 0, Long.MAX_VALUE, partial);
+    return partial.rows();
+  } // run(InputStream)
+
+  /**
+   * Run the query over a file of lines, splitting it into ranges of
+   * lines that we scan in parallel.
+   */
+  public JSONArray run(Path path) throws ParseException, IOException {
+    long[] bounds;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      bounds = split(channel, this.threads);
+    } // try
+    int parts = bounds.length - 1;
+    if (parts == 1) {
+      return scanRange(path, bounds[0], bounds[1]).rows();
+    } // if
+    ExecutorService executor = Executors.newFixedThreadPool(parts);
+    try {
+      List<Future<Partial>> futures = new ArrayList<Future<Partial>>(parts);
+      for (int i = 0; i < parts; i++) {
+        long start = bounds[i];
+        long end = bounds[i + 1];
+        futures.add(executor.submit(() -> scanRange(path, start, end)));
+      } // for
+      Partial result = null;
+      for (Future<Partial> future : futures) {
+        Partial partial = future.get();
+        if (result == null) {
+          result = partial;
+        } else {
+          result.merge(partial);
+        } // if/else
+      } // for
+      return result.rows();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof ParseException) {
+        throw (ParseException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } // if/else
+      throw (Error) cause;
+    } finally {
+      executor.shutdownNow();
+    } // try/catch/finally
+  } // run(Path)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the slot for a path, adding it to the tree if it's new.
+   */
+  int slot(String path) {
+    int slot = this.paths.indexOf(path);
+    if (slot >= 0) {
+      return slot;
+    } // if
+    if (path.isEmpty()) {
+      throw new IllegalArgumentException("Empty field path");
+    } // if
+    slot = this.paths.size();
+    this.paths.add(path);
+    Node node = this.root;
+    for (String name : path.split("\\.", -1)) {
+      node = node.child(name);
+    } // for
+    node.slot = slot;
+    return slot;
+  } // slot(String)
+
+  /**
+   * Split a file into at most parts ranges of whole lines, each at least
+   * MIN_SPLIT bytes (except perhaps the last). Returns the boundaries.
+   */
+  static long[] split(FileChannel channel, int parts) throws IOException {
+    long size = channel.size();
+    parts = (int) Math.max(1, Math.min(parts, size / MIN_SPLIT));
+    long[] bounds = new long[parts + 1];
+    ByteBuffer probe = ByteBuffer.allocate(4096);
+    for (int i = 1; i < parts; i++) {
+      // Start each range just after a newline.
+      long position = Math.max(bounds[i - 1], i * (size / parts) - 1);
+      bounds[i] = size;
+      search:
+      while (position < size) {
+        probe.clear();
+        int count = channel.read(probe, position);
+        if (count <= 0) {
+          break;
+        } // if
+        for (int j = 0; j < count; j++) {
+          if (probe.get(j) == '\n') {
+            bounds[i] = position + j + 1;
+            break search;
+          } // if
+        } // for
+        position += count;
+      } // while
+    } // for
+    bounds[parts] = size;
+    return bounds;
+  } // split(FileChannel, int)
+
+  /**
+   * Scan the lines in bytes [start, end) of a file.
+   */
+  Partial scanRange(Path path, long start, long end) throws ParseException, IOException {
+    Partial partial = new Partial(this);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      channel.position(start);
+      scan(channel, start, end - start, partial);
+    } // try
+    return partial;
+  } // scanRange(Path, long, long)
+
+  /**
+   * Scan the lines in the next length bytes of in, which start offset
+   * bytes into the input.
+   */
+  static void scan(ReadableByteChannel in, long offset, long length, Partial partial)
+      throws ParseException, IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int filled = 0;
+    long remaining = length;
+    boolean done = false;
+    while (!done) {
+      if (filled == buffer.length) {
+        // One line fills the buffer.
+        buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+      } // if
+      int want = (int) Math.min(buffer.length - filled, remaining);
+      int count = (want == 0) ? -1 : in.read(ByteBuffer.wrap(buffer, filled, want));
+      if (count < 0) {
+        done = true;
+      } else {
+        filled += count;
+        remaining -= count;
+      } // if/else
+      int start = 0;
+      for (int i = 0; i < filled; i++) {
+        if (buffer[i] == '\n') {
+          partial.line(buffer, start, i, offset + start);
+          start = i + 1;
+        } // if
+      } // for
+      if (done && (start < filled)) {
+        partial.line(buffer, start, filled, offset + start);
+        start = filled;
+      } // if
+      System.arraycopy(buffer, start, buffer, 0, filled - start);
+      filled -= start;
+      offset += start;
+    } // while
+  } // scan(ReadableByteChannel, long, long, Partial)
+
+  /**
+   * Determine if b is JSON whitespace.
+   */
+  static boolean isWhitespace(byte b) {
+    return (b == ' ') || (b == '\t') || (b == '\r') || (b == '\n');
+  } // isWhitespace(byte)
+
+  /**
+   * Skip whitespace in b[i...end).
+   */
+  static int skipWhitespace(byte[] b, int i, int end) {
+    while ((i < end) && isWhitespace(b[i])) {
+      ++i;
+    } // while
+    return i;
+  } // skipWhitespace(byte[], int, int)
+
+  /**
+   * Skip the string that starts at b[i].
+   */
+  static int skipString(byte[] b, int i, int end) throws ParseException {
+    for (++i; i < end; i++) {
+      if (b[i] == '"') {
+        return i + 1;
+      } else if (b[i] == '\\') {
+        ++i;
+      } // if/else
+    } // for
+    throw new ParseException("Unterminated string", i);
+  } // skipString(byte[], int, int)
+
+  /**
+   * Skip the value that starts at b[i].
+   */
+  static int skipValue(byte[] b, int i, int end) throws ParseException {
+    if (i == end) {
+      throw new ParseException("Expected a value", i);
+    } else if (b[i] == '"') {
+      return skipString(b, i, end);
+    } else if ((b[i] == '{') || (b[i] == '[')) {
+      int depth = 0;
+      while (i < end) {
+        byte c = b[i];
+        if (c == '"') {
+          i = skipString(b, i, end);
+          continue;
+        } else if ((c == '{') || (c == '[')) {
+          ++depth;
+        } else if ((c == '}') || (c == ']')) {
+          if (--depth == 0) {
+            return i + 1;
+          } // if
+        } // if/else
+        ++i;
+      } // while
+      throw new ParseException("Unterminated array or hash", i);
+    } // if/else
+    int start = i;
+    while ((i < end) && (b[i] != ',') && (b[i] != '}') && (b[i] != ']')
+        && !isWhitespace(b[i])) {
+      ++i;
+    } // while
+    if (i == start) {
+      throw new ParseException("Expected a value", i);
+    } // if
+    return i;
+  } // skipValue(byte[], int, int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A field name in the tree of paths.
+   */
+  static class Node {
+    /**
+     * The field name.
+     */
+    final String name;
+
+    /**
+     * The field name, as UTF-8.
+     */
+    final byte[] key;
+
+    /**
+     * The slot of the path that ends here, or -1.
+     */
+    int slot;
+
+    /**
+     * The fields below this one.
+     */
+    Node[] children;
+
+    /**
+     * Build a node for a field name.
+     */
+    Node(String name) {
+      this.name = name;
+      this.key = (name == null) ? null : name.getBytes(StandardCharsets.UTF_8);
+      this.slot = -1;
+      this.children = new Node[0];
+    } // Node(String)
+
+    /**
+     * Get the child for name, adding it if need be.
+     */
+    Node child(String name) {
+      for (Node child : this.children) {
+        if (child.name.equals(name)) {
+          return child;
+        } // if
+      } // for
+      Node child = new Node(name);
+      this.children = Arrays.copyOf(this.children, this.children.length + 1);
+      this.children[this.children.length - 1] = child;
+      return child;
+    } // child(String)
+
+    /**
+     * Find the child for the key in b[start...end), which holds escapes
+     * if escaped is set.
+     */
+    Node find(byte[] b, int start, int end, boolean escaped) throws ParseException {
+      String name = null;
+      if (escaped) {
+        try {
+          name = ((JSONString) JSON.parse(new String(b, start - 1, end - start + 2,
+              StandardCharsets.UTF_8))).getValue();
+        } catch (IOException e) {
+          throw new ParseException("Invalid key", start);
+        } // try/catch
+      } // if
+      for (Node child : this.children) {
+        if (escaped ? child.name.equals(name)
+            : Arrays.equals(child.key, 0, child.key.length, b, start, end)) {
+          return child;
+        } // if
+      } // for
+      return null;
+    } // find(byte[], int, int, boolean)
+  } // class Node
+
+  /**
+   * One filter.
+   */
+  static class Filter {
+    /**
+     * The slot of the field.
+     */
+    final int slot;
+
+    /**
+     * The JSON text the field must have, or null.
+     */
+    final byte[] text;
+
+    /**
+     * The test the field must pass, or null.
+     */
+    final DoublePredicate test;
+
+    /**
+     * Build a filter.
+     */
+    Filter(int slot, byte[] text, DoublePredicate test) {
+      this.slot = slot;
+      this.text = text;
+      this.test = test;
+    } // Filter(int, byte[], DoublePredicate)
+  } // class Filter
+
+  /**
+   * One aggregate.
+   */
+  static class Aggregate {
+    /**
+     * What to compute (COUNT, SUM, MIN, MAX, or DISTINCT).
+     */
+    final int kind;
+
+    /**
+     * The field, or null for COUNT.
+     */
+    final String field;
+
+    /**
+     * The slot of the field, or -1 for COUNT.
+     */
+    final int slot;
+
+    /**
+     * Build an aggregate.
+     */
+    Aggregate(int kind, String field, int slot) {
+      this.kind = kind;
+      this.field = field;
+      this.slot = slot;
+    } // Aggregate(int, String, int)
+
+    /**
+     * Get the name of the aggregate's field in each row.
+     */
+    String name() {
+      return (this.field == null) ? NAMES[this.kind] : NAMES[this.kind] + "(" + this.field + ")";
+    } // name()
+  } // class Aggregate
+
+  /**
+   * A set of byte strings, each numbered in the order it was added, in
+   * an open-addressing table. The bytes are hashed with the same
+   * per-run seed as ChainedHashTable keys.
+   */
+  static class KeyTable {
+    /**
+     * The bytes of every key, end to end.
+     */
+    byte[] bytes;
+
+    /**
+     * The number of bytes used.
+     */
+    int used;
+
+    /**
+     * Where each key starts in bytes.
+     */
+    int[] offsets;
+
+    /**
+     * The length of each key.
+     */
+    int[] lengths;
+
+    /**
+     * The hash of each key.
+     */
+    int[] hashes;
+
+    /**
+     * The number of keys.
+     */
+    int size;
+
+    /**
+     * The table: one more than the number of the key in each slot, or 0.
+     */
+    int[] slots;
+
+    /**
+     * Did the last call to add add a key?
+     */
+    boolean added;
+
+    /**
+     * Build an empty set.
+     */
+    KeyTable() {
+      this.bytes = new byte[1024];
+      this.used = 0;
+      this.offsets = new int[16];
+      this.lengths = new int[16];
+      this.hashes = new int[16];
+      this.size = 0;
+      this.slots = new int[32];
+    } // KeyTable()
+
+    /**
+     * Add the key in b[off...off+len) if it's new, and return its number.
+     */
+    int add(byte[] b, int off, int len) {
+      int hash = hash(b, off, len);
+      int mask = this.slots.length - 1;
+      int slot = hash & mask;
+      for (int id = this.slots[slot] - 1; id >= 0; id = this.slots[slot] - 1) {
+        if ((this.hashes[id] == hash) && (this.lengths[id] == len)
+            && Arrays.equals(this.bytes, this.offsets[id], this.offsets[id] + len,
+                b, off, off + len)) {
+          this.added = false;
+          return id;
+        } // if
+        slot = (slot + 1) & mask;
+      } // for
+      this.added = true;
+      if (this.size == this.offsets.length) {
+        this.offsets = Arrays.copyOf(this.offsets, 2 * this.size);
+        this.lengths = Arrays.copyOf(this.lengths, 2 * this.size);
+        this.hashes = Arrays.copyOf(this.hashes, 2 * this.size);
+      } // if
+      if (this.used + len > this.bytes.length) {
+        this.bytes = Arrays.copyOf(this.bytes, Math.max(2 * this.bytes.length, this.used + len));
+      } // if
+      System.arraycopy(b, off, this.bytes, this.used, len);
+      int id = this.size++;
+      this.offsets[id] = this.used;
+      this.lengths[id] = len;
+      this.hashes[id] = hash;
+      this.used += len;
+      this.slots[slot] = id + 1;
+      if (2 * this.size > this.slots.length) {
+        rehash();
+      } // if
+      return id;
+    } // add(byte[], int, int)
+
+    /**
+     * Double the table.
+     */
+    void rehash() {
+      this.slots = new int[2 * this.slots.length];
+      int mask = this.slots.length - 1;
+      for (int id = 0; id < this.size; id++) {
+        int slot = this.hashes[id] & mask;
+        while (this.slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        } // while
+        this.slots[slot] = id + 1;
+      } // for
+    } // rehash()
+
+    /**
+     * Hash b[off...off+len): FNV-1a from the seed, then mixed.
+     */
+    static int hash(byte[] b, int off, int len) {
+      int h = ChainedHashTable.SEED;
+      for (int i = off; i < off + len; i++) {
+        h = (h ^ b[i]) * 0x01000193;
+      } // for
+      return ChainedHashTable.mix(h);
+    } // hash(byte[], int, int)
+  } // class KeyTable
+
+  /**
+   * The groups and aggregates for part of the input, and the scratch
+   * space for scanning it. Each thread has its own.
+   */
+  static class Partial {
+    /**
+     * The sum has a non-integer part (for SUM).
+     */
+    static final byte REAL = 1;
+
+    /**
+     * The extreme is an integer (for MIN and MAX).
+     */
+    static final byte INTEGER = 4;
+
+    /**
+     * We have seen a number.
+     */
+    static final byte SEEN = 2;
+
+    /**
+     * The query.
+     */
+    final JSONQuery query;
+
+    /**
+     * Where each path's value starts in the current line, or -1.
+     */
+    final int[] starts;
+
+    /**
+     * Where each path's value ends in the current line.
+     */
+    final int[] ends;
+
+    /**
+     * The group keys (their JSON text).
+     */
+    final KeyTable groups;
+
+    /**
+     * The number of lines in each group.
+     */
+    long[] counts;
+
+    /**
+     * For each aggregate, the integer part of each group's value.
+     */
+    final long[][] longs;
+
+    /**
+     * For each aggregate, the non-integer part of each group's value.
+     */
+    final double[][] doubles;
+
+    /**
+     * For each aggregate, REAL, INTEGER, and SEEN for each group.
+     */
+    final byte[][] flags;
+
+    /**
+     * For each DISTINCT aggregate, the group numbers and values seen.
+     */
+    final KeyTable[] distinct;
+
+    /**
+     * Room to build keys.
+     */
+    byte[] scratch;
+
+    /**
+     * For each path, do we check its values? We check those we compare
+     * by their text: group keys, filter values, and distinct values.
+     */
+    final boolean[] checked;
+
+    /**
+     * Checks those values.
+     */
+    final JSONValidator validator;
+
+    /**
+     * The last number parsed, if it was an integer.
+     */
+    long integer;
+
+    /**
+     * The last number parsed.
+     */
+    double real;
+
+    /**
+     * Was the last number parsed an integer?
+     */
+    boolean isInteger;
+
+    /**
+     * Start empty.
+     */
+    Partial(JSONQuery query) {
+      int aggregates = query.aggregates.size();
+      this.query = query;
+      this.starts = new int[query.paths.size()];
+      this.ends = new int[query.paths.size()];
+      this.groups = new KeyTable();
+      this.counts = new long[16];
+      this.longs = new long[aggregates][16];
+      this.doubles = new double[aggregates][16];
+      this.flags = new byte[aggregates][16];
+      this.distinct = new KeyTable[aggregates];
+      for (int a = 0; a < aggregates; a++) {
+        if (query.aggregates.get(a).kind == DISTINCT) {
+          this.distinct[a] = new KeyTable();
+        } // if
+      } // for
+      this.scratch = new byte[256];
+      this.checked = new boolean[query.paths.size()];
+      for (int slot : query.groupSlots) {
+        this.checked[slot] = true;
+      } // for
+      for (Filter filter : query.filters) {
+        this.checked[filter.slot] = true;
+      } // for
+      for (Aggregate aggregate : query.aggregates) {
+        if (aggregate.kind == DISTINCT) {
+          this.checked[aggregate.slot] = true;
+        } // if
+      } // for
+      this.validator = new JSONValidator();
+    } // Partial(JSONQuery)
+
+    /**
+     * Process the line in b[start...end), which starts offset bytes into
+     * the input.
+     */
+    void line(byte[] b, int start, int end, long offset) throws ParseException {
+      Arrays.fill(this.starts, -1);
+      try {
+        int i = skipWhitespace(b, start, end);
+        if (i == end) {
+          return;
+        } // if
+        i = skipWhitespace(b, scanHash(b, i, end, this.query.root), end);
+        if (i != end) {
+          throw new ParseException("Unexpected text after the hash", i);
+        } // if
+      } catch (ParseException e) {
+        throw new ParseException(e.getMessage() + " in the line at byte " + offset,
+            e.getErrorOffset() - start);
+      } // try/catch
+      for (Filter filter : this.query.filters) {
+        if (!passes(filter, b)) {
+          return;
+        } // if
+      } // for
+      int group = group(b);
+      ++this.counts[group];
+      for (int a = 0; a < this.flags.length; a++) {
+        Aggregate aggregate = this.query.aggregates.get(a);
+        if ((aggregate.kind == COUNT) || (this.starts[aggregate.slot] < 0)) {
+          continue;
+        } // if
+        int from = this.starts[aggregate.slot];
+        int to = this.ends[aggregate.slot];
+        if (aggregate.kind == DISTINCT) {
+          byte[] key = key(group, b, from, to - from);
+          this.distinct[a].add(key, 0, 4 + to - from);
+          if (this.distinct[a].added) {
+            ++this.longs[a][group];
+          } // if
+        } else if (number(b, from, to)) {
+          add(a, aggregate.kind, group, this.isInteger, this.integer, this.real);
+        } // if/else
+      } // for
+    } // line(byte[], int, int, long)
+
+    /**
+     * Scan the hash that starts at b[i], noting where the values of the
+     * paths below node are. Returns the index just after the hash.
+     */
+    int scanHash(byte[] b, int i, int end, Node node) throws ParseException {
+      if (b[i] != '{') {
+        throw new ParseException("Expected a hash", i);
+      } // if
+      i = skipWhitespace(b, i + 1, end);
+      if ((i < end) && (b[i] == '}')) {
+        return i + 1;
+      } // if
+      while (true) {
+        if ((i == end) || (b[i] != '"')) {
+          throw new ParseException("Expected a string", i);
+        } // if
+        int keyStart = i + 1;
+        boolean escaped = false;
+        for (++i; (i < end) && (b[i] != '"'); i++) {
+          if (b[i] == '\\') {
+            escaped = true;
+            ++i;
+          } // if
+        } // for
+        if (i >= end) {
+          throw new ParseException("Unterminated string", i);
+        } // if
+        int keyEnd = i;
+        i = skipWhitespace(b, i + 1, end);
+        if ((i == end) || (b[i] != ':')) {
+          throw new ParseException("Expected a colon", i);
+        } // if
+        i = skipWhitespace(b, i + 1, end);
+        Node child = node.find(b, keyStart, keyEnd, escaped);
+        int valueStart = i;
+        if ((child != null) && (child.children.length > 0) && (i < end) && (b[i] == '{')) {
+          i = scanHash(b, i, end, child);
+        } else {
+          i = skipValue(b, i, end);
+        } // if/else
+        if ((child != null) && (child.slot >= 0)) {
+          if (this.checked[child.slot]) {
+            check(b, valueStart, i);
+          } // if
+          this.starts[child.slot] = valueStart;
+          this.ends[child.slot] = i;
+        } // if
+        i = skipWhitespace(b, i, end);
+        if (i == end) {
+          throw new ParseException("Unterminated hash", i);
+        } else if (b[i] == '}') {
+          return i + 1;
+        } else if (b[i] != ',') {
+          throw new ParseException("Expected a comma or a close brace", i);
+        } // if/else
+        i = skipWhitespace(b, i + 1, end);
+      } // while
+    } // scanHash(byte[], int, int, Node)
+
+    /**
+     * Check that b[from...to), the value of a path, is valid JSON. A bad
+     * group key would otherwise go unnoticed until rows parses the keys,
+     * and a bad filter value would just not match.
+     */
+    void check(byte[] b, int from, int to) throws ParseException {
+      try {
+        this.validator.validate(b, from, to - from);
+      } catch (ParseException e) {
+        throw new ParseException(e.getMessage(), from + e.getErrorOffset());
+      } // try/catch
+    } // check(byte[], int, int)
+
+    /**
+     * Determine if the current line passes a filter.
+     */
+    boolean passes(Filter filter, byte[] b) {
+      int from = this.starts[filter.slot];
+      if (filter.test != null) {
+        return (from >= 0) && number(b, from, this.ends[filter.slot])
+            && filter.test.test(this.real);
+      } else if (from < 0) {
+        return Arrays.equals(filter.text, NULL_TEXT);
+      } // if/else
+      return Arrays.equals(filter.text, 0, filter.text.length, b, from, this.ends[filter.slot]);
+    } // passes(Filter, byte[])
+
+    /**
+     * Find (or add) the group for the current line.
+     */
+    int group(byte[] b) {
+      int[] slots = this.query.groupSlots;
+      int group;
+      if (slots.length == 1) {
+        int from = this.starts[slots[0]];
+        group = (from < 0) ? this.groups.add(NULL_TEXT, 0, NULL_TEXT.length)
+            : this.groups.add(b, from, this.ends[slots[0]] - from);
+      } else {
+        // The key is a JSON array of the values.
+        int length = 1;
+        for (int i = 0; i < slots.length; i++) {
+          if (i > 0) {
+            append(length++, (byte) ',');
+          } // if
+          int from = this.starts[slots[i]];
+          if (from < 0) {
+            length = append(length, NULL_TEXT, 0, NULL_TEXT.length);
+          } else {
+            length = append(length, b, from, this.ends[slots[i]] - from);
+          } // if/else
+        } // for
+        this.scratch[0] = '[';
+        append(length++, (byte) ']');
+        group = this.groups.add(this.scratch, 0, length);
+      } // if/else
+      if (this.groups.added) {
+        ensureGroups(this.groups.size);
+      } // if
+      return group;
+    } // group(byte[])
+
+    /**
+     * Put bytes b[from...from+len) into scratch at position, returning the
+     * position after them.
+     */
+    int append(int position, byte[] b, int from, int len) {
+      if (position + len > this.scratch.length) {
+        this.scratch = Arrays.copyOf(this.scratch, 2 * (position + len));
+      } // if
+      System.arraycopy(b, from, this.scratch, position, len);
+      return position + len;
+    } // append(int, byte[], int, int)
+
+    /**
+     * Put one byte into scratch at position.
+     */
+    void append(int position, byte b) {
+      if (position >= this.scratch.length) {
+        this.scratch = Arrays.copyOf(this.scratch, 2 * (position + 1));
+      } // if
+      this.scratch[position] = b;
+    } // append(int, byte)
+
+    /**
+     * Build a DISTINCT key in scratch: the group number, then the value.
+     */
+    byte[] key(int group, byte[] b, int from, int len) {
+      append(0, (byte) (group >>> 24));
+      append(1, (byte) (group >>> 16));
+      append(2, (byte) (group >>> 8));
+      append(3, (byte) group);
+      append(4, b, from, len);
+      return this.scratch;
+    } // key(int, byte[], int, int)
+
+    /**
+     * Make room for aggregates for groups groups.
+     */
+    void ensureGroups(int groups) {
+      if (groups <= this.counts.length) {
+        return;
+      } // if
+      int capacity = Math.max(groups, 2 * this.counts.length);
+      this.counts = Arrays.copyOf(this.counts, capacity);
+      for (int a = 0; a < this.flags.length; a++) {
+        this.longs[a] = Arrays.copyOf(this.longs[a], capacity);
+        this.doubles[a] = Arrays.copyOf(this.doubles[a], capacity);
+        this.flags[a] = Arrays.copyOf(this.flags[a], capacity);
+      } // for
+    } // ensureGroups(int)
+
+    /**
+     * Parse the number in b[from...to), if it is one, into integer, real,
+     * and isInteger.
+     */
+    boolean number(byte[] b, int from, int to) {
+      int i = from;
+      boolean negative = (i < to) && (b[i] == '-');
+      if (negative) {
+        ++i;
+      } // if
+      long value = 0;
+      int digits = 0;
+      while ((i < to) && (b[i] >= '0') && (b[i] <= '9') && (digits < 18)) {
+        value = 10 * value + (b[i++] - '0');
+        ++digits;
+      } // while
+      if ((i == to) && (digits > 0)) {
+        this.isInteger = true;
+        this.integer = negative ? -value : value;
+        this.real = this.integer;
+        return true;
+      } // if
+      if ((digits == 0) && ((i == to) || (b[i] < '0') || (b[i] > '9'))) {
+        return false;
+      } // if
+      for (int j = from; j < to; j++) {
+        byte c = b[j];
+        if (((c < '0') || (c > '9')) && (c != '-') && (c != '+') && (c != '.')
+            && (c != 'e') && (c != 'E')) {
+          return false;
+        } // if
+      } // for
+      try {
+        this.real = Double.parseDouble(new String(b, from, to - from, StandardCharsets.US_ASCII));
+        this.isInteger = false;
+        return true;
+      } catch (NumberFormatException e) {
+        return false;
+      } // try/catch
+    } // number(byte[], int, int)
+
+    /**
+     * Fold a number (or another group's value) into aggregate a for group.
+     */
+    void add(int a, int kind, int group, boolean exact, long integer, double real) {
+      byte flags = this.flags[a][group];
+      boolean seen = (flags & SEEN) != 0;
+      if (kind == SUM) {
+        if (exact) {
+          long sum = this.longs[a][group] + integer;
+          if (((this.longs[a][group] ^ sum) & (integer ^ sum)) < 0) {
+            // The integer part overflowed; move it to the other part.
+            this.doubles[a][group] += (double) this.longs[a][group] + integer;
+            this.longs[a][group] = 0;
+            flags |= REAL;
+          } else {
+            this.longs[a][group] = sum;
+          } // if/else
+        } else {
+          this.doubles[a][group] += real;
+          flags |= REAL;
+        } // if/else
+      } else if (!seen || ((kind == MIN) ? (real < this.doubles[a][group])
+          : (real > this.doubles[a][group]))) {
+        this.doubles[a][group] = real;
+        this.longs[a][group] = integer;
+        flags = (byte) (exact ? (flags | INTEGER) : (flags & ~INTEGER));
+      } // if/else
+      this.flags[a][group] = (byte) (flags | SEEN);
+    } // add(int, int, int, boolean, long, double)
+
+    /**
+     * Fold another part's groups into ours.
+     */
+    void merge(Partial other) {
+      int[] map = new int[other.groups.size];
+      for (int g = 0; g < other.groups.size; g++) {
+        map[g] = this.groups.add(other.groups.bytes, other.groups.offsets[g],
+            other.groups.lengths[g]);
+        ensureGroups(this.groups.size);
+        this.counts[map[g]] += other.counts[g];
+        for (int a = 0; a < this.flags.length; a++) {
+          int kind = this.query.aggregates.get(a).kind;
+          byte flags = other.flags[a][g];
+          if ((kind == COUNT) || (kind == DISTINCT) || ((flags & SEEN) == 0)) {
+            continue;
+          } else if (kind == SUM) {
+            add(a, kind, map[g], true, other.longs[a][g], 0);
+            if ((flags & REAL) != 0) {
+              add(a, kind, map[g], false, 0, other.doubles[a][g]);
+            } // if
+          } else {
+            add(a, kind, map[g], (flags & INTEGER) != 0, other.longs[a][g], other.doubles[a][g]);
+          } // if/else
+        } // for
+      } // for
+      for (int a = 0; a < this.flags.length; a++) {
+        KeyTable values = other.distinct[a];
+        if (values == null) {
+          continue;
+        } // if
+        for (int v = 0; v < values.size; v++) {
+          int off = values.offsets[v];
+          int g = ((values.bytes[off] & 0xFF) << 24) | ((values.bytes[off + 1] & 0xFF) << 16)
+              | ((values.bytes[off + 2] & 0xFF) << 8) | (values.bytes[off + 3] & 0xFF);
+          byte[] key = key(map[g], values.bytes, off + 4, values.lengths[v] - 4);
+          this.distinct[a].add(key, 0, values.lengths[v]);
+          if (this.distinct[a].added) {
+            ++this.longs[a][map[g]];
+          } // if
+        } // for
+      } // for
+    } // merge(Partial)
+
+    /**
+     * Build the result: one hash per group, in the order the groups first
+     * appeared.
+     */
+    JSONArray rows() throws ParseException, IOException {
+      JSONQuery query = this.query;
+      JSONArray result = new JSONArray(this.groups.size);
+      for (int g = 0; g < this.groups.size; g++) {
+        JSONHash row = new JSONHash(query.groups.size() + query.aggregates.size());
+        JSONValue key = JSON.parse(new String(this.groups.bytes, this.groups.offsets[g],
+            this.groups.lengths[g], StandardCharsets.UTF_8));
+        if (query.groups.size() == 1) {
+          row.set(new JSONString(query.groups.get(0)), key);
+        } else {
+          for (int i = 0; i < query.groups.size(); i++) {
+            row.set(new JSONString(query.groups.get(i)), ((JSONArray) key).get(i));
+          } // for
+        } // if/else
+        for (int a = 0; a < this.flags.length; a++) {
+          Aggregate aggregate = query.aggregates.get(a);
+          row.set(new JSONString(aggregate.name()), value(a, aggregate.kind, g));
+        } // for
+        result.add(row);
+      } // for
+      return result;
+    } // rows()
+
+    /**
+     * Get the value of aggregate a for group.
+     */
+    JSONValue value(int a, int kind, int group) {
+      byte flags = this.flags[a][group];
+      if (kind == COUNT) {
+        return JSONInteger.valueOf(this.counts[group]);
+      } else if (kind == DISTINCT) {
+        return JSONInteger.valueOf(this.longs[a][group]);
+      } else if ((flags & SEEN) == 0) {
+        return JSONConstant.NULL;
+      } else if (kind == SUM) {
+        if ((flags & REAL) == 0) {
+          return JSONInteger.valueOf(this.longs[a][group]);
+        } // if
+        return new JSONReal(this.doubles[a][group] + this.longs[a][group]);
+      } else if ((flags & INTEGER) != 0) {
+        return JSONInteger.valueOf(this.longs[a][group]);
+      } // if/else
+      return new JSONReal(this.doubles[a][group]);
+    } // value(int, int, int)
+  } // class Partial
+
+} // class JSONQuery
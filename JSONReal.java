@@ -89,4 +89,11 @@ public class JSONReal implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Estimate the bytes of heap the real holds.
+   */
+  public long retainedSize() {
+    return RetainedSize.WRAPPER + RetainedSize.bigDecimal(this.value);
+  } // retainedSize()
+
 } // class JSONReal
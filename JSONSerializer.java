@@ -0,0 +1,422 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Write records and plain classes as JSON without building JSONHashes
+ * and JSONArrays first. The first time we see a type we work out, once,
+ * how to get each member and what its key looks like on output; after
+ * that, writing an object streams straight to the PrintWriter.
+ *
+ * The output is what writeJSON would print for the JSONValue tree with
+ * the same data, except that members come out in declaration order
+ * (a JSONHash prints its pairs in whatever order its table holds them).
+ * Records are written through their accessors; plain classes through
+ * their non-static, non-transient fields, including inherited ones.
+ * Members may be primitives, their boxed forms, String, BigInteger,
+ * BigDecimal, JSONValue, enums (written by name), arrays, Iterables,
+ * Maps (written as hashes; their keys must be strings, numbers, booleans,
+ * or enums), or other writable types. Other JDK types (Optional,
+ * java.time, and so on) are refused rather than written field by field.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONSerializer<T> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The kinds of member we know how to get without boxing. Everything
+   * else is an OBJECT, written according to its run-time class.
+   */
+  static final int BOOLEAN = 0;
+  static final int INT = 1;
+  static final int LONG = 2;
+  static final int DOUBLE = 3;
+  static final int FLOAT = 4;
+  static final int OBJECT = 5;
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * One serializer per type, built on first use.
+   */
+  static final ClassValue<JSONSerializer<?>> SERIALIZERS =
+      new ClassValue<JSONSerializer<?>>() {
+        protected JSONSerializer<?> computeValue(Class<?> type) {
+          return new JSONSerializer<>(type);
+        } // computeValue(Class)
+      }; // new ClassValue
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The type we write.
+   */
+  final Class<T> type;
+
+  /**
+   * How to write each member, in order.
+   */
+  final Member[] members;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Work out how to write type.
+   */
+  JSONSerializer(Class<T> type) {
+    if (type.isEnum() || type.isPrimitive() || isJDK(type)) {
+      throw new IllegalArgumentException("Cannot write " + type.getName()
+          + " as an object");
+    } // if
+    this.type = type;
+    ArrayList<Member> plan = new ArrayList<Member>();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      if (type.isRecord()) {
+        for (RecordComponent component : type.getRecordComponents()) {
+          Method accessor = component.getAccessor();
+          accessor.setAccessible(true);
+          plan.add(new Member(component.getName(), component.getType(),
+              lookup.unreflect(accessor), plan.isEmpty()));
+        } // for
+      } else {
+        ArrayList<Class<?>> classes = new ArrayList<Class<?>>();
+        for (Class<?> c = type; (c != null) && (c != Object.class); c = c.getSuperclass()) {
+          classes.add(c);
+        } // for
+        Collections.reverse(classes);
+        for (Class<?> c : classes) {
+          for (Field field : c.getDeclaredFields()) {
+            int mods = field.getModifiers();
+            if (Modifier.isStatic(mods) || Modifier.isTransient(mods)
+                || field.isSynthetic()) {
+              continue;
+            } // if
+            field.setAccessible(true);
+            plan.add(new Member(field.getName(), field.getType(),
+                lookup.unreflectGetter(field), plan.isEmpty()));
+          } // for each field
+        } // for each class
+      } // if/else
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Cannot write " + type.getName(), e);
+    } // try/catch
+    this.members = plan.toArray(new Member[0]);
+  } // JSONSerializer(Class)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Get the serializer for a type.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> JSONSerializer<T> forType(Class<T> type) {
+    return (JSONSerializer<T>) SERIALIZERS.get(type);
+  } // forType(Class)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write obj as JSON, just as writeJSON would write the corresponding
+   * JSONHash.
+   */
+  public void writeJSON(T obj, PrintWriter pen) {
+    JSONEvents.Serialize event = new JSONEvents.Serialize();
+    event.begin();
+    writeObject(obj, pen, new char[20]);
+    pen.println();
+    event.end();
+    if (event.shouldCommit()) {
+      record(event, -1);
+    } // if
+  } // writeJSON(T, PrintWriter)
+
+  /**
+   * Convert obj to a JSON string, just as toString would convert the
+   * corresponding JSONHash.
+   */
+  public String toString(T obj) {
+    JSONEvents.Serialize event = new JSONEvents.Serialize();
+    event.begin();
+    StringWriter out = new StringWriter();
+    PrintWriter pen = new PrintWriter(out);
+    writeObject(obj, pen, new char[20]);
+    pen.flush();
+    event.end();
+    if (event.shouldCommit()) {
+      record(event, out.getBuffer().length());
+    } // if
+    return out.toString();
+  } // toString(T)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Fill in and commit an event for writing chars (-1 if unknown).
+   */
+  void record(JSONEvents.Serialize event, long chars) {
+    event.type = this.type;
+    event.members = this.members.length;
+    event.chars = chars;
+    event.commit();
+  } // record(JSONEvents.Serialize, long)
+
+  /**
+   * Write the members of obj, using scratch to format numbers.
+   */
+  void writeObject(Object obj, PrintWriter pen, char[] scratch) {
+    pen.write('{');
+    try {
+      for (Member member : this.members) {
+        pen.write(member.prefix);
+        switch (member.kind) {
+          case BOOLEAN:
+            pen.write(((boolean) member.getter.invokeExact(obj)) ? "true" : "false");
+            break;
+          case INT:
+            writeLong(pen, (int) member.getter.invokeExact(obj), scratch);
+            break;
+          case LONG:
+            writeLong(pen, (long) member.getter.invokeExact(obj), scratch);
+            break;
+          case DOUBLE:
+            writeDouble(pen, (double) member.getter.invokeExact(obj));
+            break;
+          case FLOAT:
+            writeFloat(pen, (float) member.getter.invokeExact(obj));
+            break;
+          default:
+            writeValue(pen, (Object) member.getter.invokeExact(obj), scratch);
+        } // switch
+      } // for
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    } // try/catch
+    pen.write('}');
+  } // writeObject(Object, PrintWriter, char[])
+
+  /**
+   * Write a value of any type.
+   */
+  static void writeValue(PrintWriter pen, Object value, char[] scratch) {
+    if (value == null) {
+      pen.write("null");
+    } else if ((value instanceof String) || (value instanceof Character)) {
+      JSONString.write(pen, value.toString());
+    } else if ((value instanceof Integer) || (value instanceof Long)
+        || (value instanceof Short) || (value instanceof Byte)) {
+      writeLong(pen, ((Number) value).longValue(), scratch);
+    } else if (value instanceof Double) {
+      writeDouble(pen, (Double) value);
+    } else if (value instanceof Float) {
+      writeFloat(pen, (Float) value);
+    } else if (value instanceof Boolean) {
+      pen.write(((Boolean) value) ? "true" : "false");
+    } else if ((value instanceof BigInteger) || (value instanceof BigDecimal)) {
+      pen.write(value.toString());
+    } else if (value instanceof JSONValue) {
+      JSON.write(pen, (JSONValue) value);
+    } else if (value instanceof Iterable) {
+      pen.write('[');
+      boolean first = true;
+      for (Object element : (Iterable<?>) value) {
+        if (!first) {
+          pen.write(", ");
+        } // if
+        first = false;
+        writeValue(pen, element, scratch);
+      } // for
+      pen.write(']');
+    } else if (value.getClass().isArray()) {
+      pen.write('[');
+      int length = java.lang.reflect.Array.getLength(value);
+      for (int i = 0; i < length; i++) {
+        if (i > 0) {
+          pen.write(", ");
+        } // if
+        writeValue(pen, java.lang.reflect.Array.get(value, i), scratch);
+      } // for
+      pen.write(']');
+    } else if (value instanceof Enum) {
+      JSONString.write(pen, ((Enum<?>) value).name());
+    } else if (value instanceof Map) {
+      pen.write('{');
+      boolean first = true;
+      for (Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()) {
+        if (!first) {
+          pen.write(", ");
+        } // if
+        first = false;
+        JSONString.write(pen, keyOf(entry.getKey()));
+        pen.write(": ");
+        writeValue(pen, entry.getValue(), scratch);
+      } // for
+      pen.write('}');
+    } else {
+      forType(value.getClass()).writeObject(value, pen, scratch);
+    } // if/else
+  } // writeValue(PrintWriter, Object, char[])
+
+  /**
+   * Get the text of a Map key.
+   */
+  static String keyOf(Object key) {
+    if (key instanceof Enum) {
+      return ((Enum<?>) key).name();
+    } else if ((key instanceof CharSequence) || (key instanceof Number)
+        || (key instanceof Boolean) || (key instanceof Character)) {
+      return key.toString();
+    } // if/else
+    throw new IllegalArgumentException("Cannot write Map keys of type "
+        + ((key == null) ? "null" : key.getClass().getName()));
+  } // keyOf(Object)
+
+  /**
+   * Is type part of the JDK, whose innards we shouldn't (and mostly
+   * can't) read?
+   */
+  static boolean isJDK(Class<?> type) {
+    String name = type.getName();
+    return name.startsWith("java.") || name.startsWith("javax.")
+        || name.startsWith("jdk.") || name.startsWith("sun.");
+  } // isJDK(Class)
+
+  /**
+   * Write a long in decimal, using scratch rather than a new String.
+   */
+  static void writeLong(PrintWriter pen, long l, char[] scratch) {
+    if (l == Long.MIN_VALUE) {
+      pen.write("-9223372036854775808");
+      return;
+    } // if
+    boolean negative = (l < 0);
+    if (negative) {
+      l = -l;
+    } // if
+    int i = scratch.length;
+    do {
+      scratch[--i] = (char) ('0' + (l % 10));
+      l /= 10;
+    } while (l != 0);
+    if (negative) {
+      scratch[--i] = '-';
+    } // if
+    pen.write(scratch, i, scratch.length - i);
+  } // writeLong(PrintWriter, long, char[])
+
+  /**
+   * Write a double the way JSONReal(double) prints it.
+   */
+  static void writeDouble(PrintWriter pen, double d) {
+    if (!Double.isFinite(d)) {
+      throw new IllegalArgumentException("JSON has no representation for " + d);
+    } // if
+    writeDecimal(pen, Double.toString(d));
+  } // writeDouble(PrintWriter, double)
+
+  /**
+   * Write a float with the shortest digits that read back as that float
+   * (widening it to a double would write 0.1f as 0.10000000149011612).
+   */
+  static void writeFloat(PrintWriter pen, float f) {
+    if (!Float.isFinite(f)) {
+      throw new IllegalArgumentException("JSON has no representation for " + f);
+    } // if
+    writeDecimal(pen, Float.toString(f));
+  } // writeFloat(PrintWriter, float)
+
+  /**
+   * Write the text of a double or float the way JSONReal prints it.
+   */
+  static void writeDecimal(PrintWriter pen, String text) {
+    // BigDecimal agrees with Double.toString except on exponents.
+    if (text.indexOf('E') >= 0) {
+      text = new BigDecimal(text).toString();
+    } // if
+    pen.write(text);
+  } // writeDecimal(PrintWriter, String)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * How to write one member.
+   */
+  static class Member {
+    /**
+     * What kind of member this is.
+     */
+    final int kind;
+
+    /**
+     * The text before the value: the separator (if any), the quoted key,
+     * and the colon.
+     */
+    final char[] prefix;
+
+    /**
+     * The getter, typed (Object) to the primitive for BOOLEAN, INT, LONG,
+     * DOUBLE, and FLOAT, and (Object) to Object for the rest.
+     */
+    final MethodHandle getter;
+
+    /**
+     * Build a new member.
+     */
+    Member(String name, Class<?> type, MethodHandle getter, boolean first) {
+      Class<?> result;
+      if (type == boolean.class) {
+        this.kind = BOOLEAN;
+        result = boolean.class;
+      } else if ((type == int.class) || (type == short.class) || (type == byte.class)) {
+        this.kind = INT;
+        result = int.class;
+      } else if (type == long.class) {
+        this.kind = LONG;
+        result = long.class;
+      } else if (type == double.class) {
+        this.kind = DOUBLE;
+        result = double.class;
+      } else if (type == float.class) {
+        this.kind = FLOAT;
+        result = float.class;
+      } else {
+        this.kind = OBJECT;
+        result = Object.class;
+      } // if/else
+      this.getter = getter.asType(MethodType.methodType(result, Object.class));
+      this.prefix = ((first ? "" : ", ") + new JSONString(name).toString() + ": ").toCharArray();
+    } // Member(String, Class, MethodHandle, boolean)
+  } // class Member
+
+} // class JSONSerializer<T>
@@ -5,16 +5,42 @@ import java.io.PrintWriter;
  * @author Connor Heagy
  * @author Alex Maret
  */
-public class JSONString implements JSONValue {
+public class JSONString implements JSONValue, Comparable<JSONString> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * How to write each ASCII character in a JSON string: null for the
+   * characters that go out as they are, and the escape for the quote,
+   * the backslash, and the control characters, which can't. The parser
+   * uses the same table to find the end of a run of plain characters.
+   */
+  static final String[] ESCAPES = new String[128];
+
+  static {
+    for (char c = 0; c < 0x20; c++) {
+      ESCAPES[c] = String.format("\\u%04x", (int) c);
+    } // for
+    ESCAPES['"'] = "\\\"";
+    ESCAPES['\\'] = "\\\\";
+    ESCAPES['\b'] = "\\b";
+    ESCAPES['\f'] = "\\f";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\r'] = "\\r";
+    ESCAPES['\t'] = "\\t";
+  } // static
 
   // +--------+------------------------------------------------------
   // | Fields |
   // +--------+
 
   /**
-   * The underlying string.
+   * The underlying string. Final, since parsers share JSONStrings between
+   * documents and threads (see JSONStringTable).
    */
-  String value;
+  final String value;
 
   // +--------------+------------------------------------------------
   // | Constructors |
@@ -35,7 +61,24 @@ public class JSONString implements JSONValue {
    * Convert to a string (e.g., for printing).
    */
   public String toString() {
-    return "\"" + value + "\"";
+    int first = 0;
+    while ((first < value.length()) && !needsEscape(value.charAt(first))) {
+      ++first;
+    } // while
+    if (first == value.length()) {
+      return "\"" + value + "\"";
+    } // if
+    StringBuilder result = new StringBuilder(value.length() + 8);
+    result.append('"');
+    int start = 0;
+    for (int i = first; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (needsEscape(c)) {
+        result.append(value, start, i).append(ESCAPES[c]);
+        start = i + 1;
+      } // if
+    } // for
+    return result.append(value, start, value.length()).append('"').toString();
   } // toString()
 
   /**
@@ -56,6 +99,13 @@ public class JSONString implements JSONValue {
     return value.hashCode();
   } // hashCode()
 
+  /**
+   * Compare to another JSON string, by the underlying strings.
+   */
+  public int compareTo(JSONString other) {
+    return value.compareTo(other.value);
+  } // compareTo(JSONString)
+
   // +--------------------+------------------------------------------
   // | Additional methods |
   // +--------------------+
@@ -63,8 +113,9 @@ public class JSONString implements JSONValue {
   /**
    * Write the value as JSON.
    */
-  public void writeJSON(PrintWriter pen) {   
-    pen.println("\"" + value + "\"");
+  public void writeJSON(PrintWriter pen) {
+    write(pen, value);
+    pen.println();
   } // writeJSON(PrintWriter)
 
   /**
@@ -74,4 +125,54 @@ public class JSONString implements JSONValue {
     return this.value;
   } // getValue()
 
+  /**
+   * Estimate the bytes of heap the string holds.
+   */
+  public long retainedSize() {
+    return RetainedSize.WRAPPER + RetainedSize.string(this.value);
+  } // retainedSize()
+
+  /**
+   * Hash the characters with a seed (FNV-1a, starting from the seed
+   * rather than the usual offset). Unlike hashCode, which keys collide
+   * depends on the seed, so hash tables use this for their keys.
+   */
+  int hash(int seed) {
+    int h = seed;
+    for (int i = 0; i < value.length(); i++) {
+      h = (h ^ value.charAt(i)) * 0x01000193;
+    } // for
+    return h;
+  } // hash(int)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Write str as a quoted JSON string, copying each run of characters
+   * that need no escape in one call.
+   */
+  static void write(PrintWriter pen, String str) {
+    pen.write('"');
+    int start = 0;
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (needsEscape(c)) {
+        pen.write(str, start, i - start);
+        pen.write(ESCAPES[c]);
+        start = i + 1;
+      } // if
+    } // for
+    pen.write(str, start, str.length() - start);
+    pen.write('"');
+  } // write(PrintWriter, String)
+
+  /**
+   * Determine if c must be escaped in a JSON string.
+   */
+  static boolean needsEscape(char c) {
+    return (c < ESCAPES.length) && (ESCAPES[c] != null);
+  } // needsEscape(char)
+
 } // class JSONString
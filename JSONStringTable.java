@@ -0,0 +1,102 @@
+/**
+ * A bounded table of shared JSONStrings, so that a string that appears
+ * many times in our input (a key, or an enum-like value) is held only
+ * once. Each string has exactly one slot it can live in; a newcomer
+ * replaces whatever was there. That keeps the table small and lookups
+ * cheap, at the cost of sometimes missing a chance to share.
+ *
+ * The table may be used by several threads at once. A thread may fail to
+ * see another's entry and build its own copy, which is harmless since
+ * JSONStrings never change.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONStringTable {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The longest string we try to share. Longer strings rarely repeat.
+   */
+  public static final int MAX_LENGTH = 32;
+
+  /**
+   * The table the parser uses when asked to share values.
+   */
+  static final JSONStringTable SHARED = new JSONStringTable(4096);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The shared strings. The length is a power of two.
+   */
+  final JSONString[] entries;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a table with room for at least capacity strings.
+   */
+  public JSONStringTable(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.entries = new JSONString[size];
+  } // JSONStringTable(int)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the shared JSONString for str, adding it if it isn't there yet.
+   */
+  public JSONString intern(String str) {
+    if (str.length() > MAX_LENGTH) {
+      return new JSONString(str);
+    } // if
+    int h = str.hashCode();
+    int index = (h ^ (h >>> 16)) & (this.entries.length - 1);
+    JSONString entry = this.entries[index];
+    if ((entry != null) && entry.value.equals(str)) {
+      return entry;
+    } // if
+    entry = new JSONString(str);
+    this.entries[index] = entry;
+    return entry;
+  } // intern(String)
+
+  /**
+   * Get the shared JSONString for chars[start...start+length), adding it
+   * if it isn't there yet. We only build a String when we miss.
+   */
+  public JSONString intern(char[] chars, int start, int length) {
+    if (length > MAX_LENGTH) {
+      return new JSONString(new String(chars, start, length));
+    } // if
+    // The same hash as String's, so both kinds of lookup share slots.
+    int h = 0;
+    for (int i = start; i < start + length; i++) {
+      h = 31 * h + chars[i];
+    } // for
+    int index = (h ^ (h >>> 16)) & (this.entries.length - 1);
+    JSONString entry = this.entries[index];
+    if ((entry != null) && (entry.value.length() == length)) {
+      int i = 0;
+      while ((i < length) && (entry.value.charAt(i) == chars[start + i])) {
+        ++i;
+      } // while
+      if (i == length) {
+        return entry;
+      } // if
+    } // if
+    entry = new JSONString(new String(chars, start, length));
+    this.entries[index] = entry;
+    return entry;
+  } // intern(char[], int, int)
+
+} // class JSONStringTable
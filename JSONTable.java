@@ -0,0 +1,921 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
+
+/**
+ * A column-by-column copy of an array of hashes (records), for sums and
+ * filters over a few fields. Each field becomes a column: integers that
+ * fit in a long go in a long[], other numbers in a double[], strings in
+ * an int[] of codes into a dictionary of the distinct strings, and
+ * anything else (or a mix of kinds) in a JSONValue[]. A bitmap in each
+ * column marks the rows where the field is null or missing.
+ *
+ * Filters return selections: bitmaps with one bit per row, which the
+ * aggregates take to restrict themselves to those rows. Combine
+ * selections with and/or, and count them with count.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONTable {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of rows.
+   */
+  final int rows;
+
+  /**
+   * The columns, in the order their fields first appear.
+   */
+  final LinkedHashMap<String, Column> columns;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a table from its columns.
+   */
+  JSONTable(int rows, LinkedHashMap<String, Column> columns) {
+    this.rows = rows;
+    this.columns = columns;
+  } // JSONTable(int, LinkedHashMap)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Build a table from an array of hashes.
+   */
+  public static JSONTable of(JSONArray records) {
+    Builder builder = new Builder(records.size());
+    for (JSONValue record : records) {
+      builder.add(record);
+    } // for
+    return builder.build();
+  } // of(JSONArray)
+
+  /**
+   * Build a table from the array of hashes in source, one record at a
+   * time, so that only the columns are kept, never the whole array.
+   */
+  public static JSONTable read(Reader source) throws ParseException, IOException {
+    Builder builder = new Builder(16);
+    try {
+      JSONElementIterator records = new JSONElementIterator(source, false);
+      while (records.hasNext()) {
+        builder.add(records.next());
+      } // while
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } catch (IllegalStateException e) {
+      if (e.getCause() instanceof ParseException) {
+        throw (ParseException) e.getCause();
+      } // if
+      throw e;
+    } // try/catch
+    return builder.build();
+  } // read(Reader)
+
+  /**
+   * Get the rows selected by both a and b.
+   */
+  public static long[] and(long[] a, long[] b) {
+    long[] result = new long[Math.min(a.length, b.length)];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = a[i] & b[i];
+    } // for
+    return result;
+  } // and(long[], long[])
+
+  /**
+   * Get the rows selected by either a or b.
+   */
+  public static long[] or(long[] a, long[] b) {
+    long[] result = Arrays.copyOf(a, Math.max(a.length, b.length));
+    for (int i = 0; i < b.length; i++) {
+      result[i] |= b[i];
+    } // for
+    return result;
+  } // or(long[], long[])
+
+  /**
+   * Count the rows in a selection.
+   */
+  public static int count(long[] selection) {
+    int result = 0;
+    for (long word : selection) {
+      result += Long.bitCount(word);
+    } // for
+    return result;
+  } // count(long[])
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing).
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    result.append(this.rows).append(" rows");
+    for (Column column : this.columns.values()) {
+      result.append(", ").append(column.name).append(": ")
+          .append(column.getClass().getSimpleName());
+    } // for
+    return result.toString();
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get the number of rows.
+   */
+  public int rows() {
+    return this.rows;
+  } // rows()
+
+  /**
+   * Get the names of the columns, in the order the fields first appear.
+   */
+  public List<String> columnNames() {
+    return new ArrayList<String>(this.columns.keySet());
+  } // columnNames()
+
+  /**
+   * Get the column for a field, or null if no record has that field.
+   */
+  public Column column(String name) {
+    return this.columns.get(name);
+  } // column(String)
+
+  /**
+   * Get the column for a field of integers.
+   */
+  public LongColumn longColumn(String name) {
+    return columnOf(name, LongColumn.class);
+  } // longColumn(String)
+
+  /**
+   * Get the column for a field of (non-integer) numbers.
+   */
+  public DoubleColumn doubleColumn(String name) {
+    return columnOf(name, DoubleColumn.class);
+  } // doubleColumn(String)
+
+  /**
+   * Get the column for a field of strings.
+   */
+  public StringColumn stringColumn(String name) {
+    return columnOf(name, StringColumn.class);
+  } // stringColumn(String)
+
+  /**
+   * Rebuild one record, leaving out its null and missing fields.
+   */
+  public JSONHash row(int row) {
+    if ((row < 0) || (row >= this.rows)) {
+      throw new IndexOutOfBoundsException(row);
+    } // if
+    JSONHash result = new JSONHash(this.columns.size());
+    for (Column column : this.columns.values()) {
+      if (!column.isNull(row)) {
+        result.set(new JSONString(column.name), column.get(row));
+      } // if
+    } // for
+    return result;
+  } // row(int)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the column for a field, which must be of a particular kind.
+   */
+  <T extends Column> T columnOf(String name, Class<T> kind) {
+    Column column = this.columns.get(name);
+    if (column == null) {
+      throw new IllegalArgumentException("No column named " + name);
+    } else if (!kind.isInstance(column)) {
+      throw new IllegalArgumentException("Column " + name + " is a "
+          + column.getClass().getSimpleName() + ", not a " + kind.getSimpleName());
+    } // if/else
+    return kind.cast(column);
+  } // columnOf(String, Class)
+
+  /**
+   * Make an empty selection for the given number of rows.
+   */
+  static long[] selection(int rows) {
+    return new long[(rows + 63) >>> 6];
+  } // selection(int)
+
+  /**
+   * Determine if a bitmap has the bit for row set.
+   */
+  static boolean isSet(long[] bits, int row) {
+    return (bits[row >>> 6] & (1L << row)) != 0;
+  } // isSet(long[], int)
+
+  /**
+   * Set the bit for row in bits.
+   */
+  static void set(long[] bits, int row) {
+    bits[row >>> 6] |= 1L << row;
+  } // set(long[], int)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * One column of the table.
+   */
+  public abstract static class Column {
+    /**
+     * The name of the field.
+     */
+    final String name;
+
+    /**
+     * The number of rows.
+     */
+    final int rows;
+
+    /**
+     * The rows where the field is null or missing.
+     */
+    final long[] nulls;
+
+    /**
+     * Build a column.
+     */
+    Column(String name, int rows, long[] nulls) {
+      this.name = name;
+      this.rows = rows;
+      this.nulls = nulls;
+    } // Column(String, int, long[])
+
+    /**
+     * Get the name of the field.
+     */
+    public String name() {
+      return this.name;
+    } // name()
+
+    /**
+     * Determine if the field is null or missing in a row.
+     */
+    public boolean isNull(int row) {
+      return isSet(this.nulls, row);
+    } // isNull(int)
+
+    /**
+     * Count the rows where the field is null or missing.
+     */
+    public int nullCount() {
+      return count(this.nulls);
+    } // nullCount()
+
+    /**
+     * Select the rows where the field has a value.
+     */
+    public long[] present() {
+      long[] result = selection(this.rows);
+      for (int i = 0; i < result.length; i++) {
+        result[i] = ~this.nulls[i];
+      } // for
+      if ((this.rows & 63) != 0) {
+        result[result.length - 1] &= (1L << this.rows) - 1;
+      } // if
+      return result;
+    } // present()
+
+    /**
+     * Get the value in a row as JSON (JSONConstant.NULL if there is none).
+     */
+    public abstract JSONValue get(int row);
+  } // class Column
+
+  /**
+   * A column of integers. Null rows hold 0, so sums need not skip them.
+   */
+  public static class LongColumn extends Column {
+    /**
+     * The values, one per row.
+     */
+    final long[] values;
+
+    /**
+     * Build a column.
+     */
+    LongColumn(String name, int rows, long[] nulls, long[] values) {
+      super(name, rows, nulls);
+      this.values = values;
+    } // LongColumn(String, int, long[], long[])
+
+    /**
+     * Get the value in a row as JSON.
+     */
+    public JSONValue get(int row) {
+      return isNull(row) ? JSONConstant.NULL : JSONInteger.valueOf(this.values[row]);
+    } // get(int)
+
+    /**
+     * Get the value in a row (0 if there is none).
+     */
+    public long getLong(int row) {
+      return this.values[row];
+    } // getLong(int)
+
+    /**
+     * Add up the column.
+     */
+    public long sum() {
+      long result = 0;
+      for (int i = 0; i < this.rows; i++) {
+        result += this.values[i];
+      } // for
+      return result;
+    } // sum()
+
+    /**
+     * Add up the selected rows.
+     */
+    public long sum(long[] selection) {
+      long result = 0;
+      for (int w = 0; w < selection.length; w++) {
+        for (long bits = selection[w]; bits != 0; bits &= bits - 1) {
+          result += this.values[(w << 6) + Long.numberOfTrailingZeros(bits)];
+        } // for
+      } // for
+      return result;
+    } // sum(long[])
+
+    /**
+     * Get the smallest value, or Long.MAX_VALUE if there are none.
+     */
+    public long min() {
+      long result = Long.MAX_VALUE;
+      for (int i = 0; i < this.rows; i++) {
+        if ((this.values[i] < result) && !isNull(i)) {
+          result = this.values[i];
+        } // if
+      } // for
+      return result;
+    } // min()
+
+    /**
+     * Get the largest value, or Long.MIN_VALUE if there are none.
+     */
+    public long max() {
+      long result = Long.MIN_VALUE;
+      for (int i = 0; i < this.rows; i++) {
+        if ((this.values[i] > result) && !isNull(i)) {
+          result = this.values[i];
+        } // if
+      } // for
+      return result;
+    } // max()
+
+    /**
+     * Select the rows whose value passes test.
+     */
+    public long[] select(LongPredicate test) {
+      long[] result = selection(this.rows);
+      for (int i = 0; i < this.rows; i++) {
+        if (test.test(this.values[i]) && !isNull(i)) {
+          set(result, i);
+        } // if
+      } // for
+      return result;
+    } // select(LongPredicate)
+  } // class LongColumn
+
+  /**
+   * A column of numbers. Null rows hold 0, so sums need not skip them.
+   */
+  public static class DoubleColumn extends Column {
+    /**
+     * The values, one per row.
+     */
+    final double[] values;
+
+    /**
+     * Build a column.
+     */
+    DoubleColumn(String name, int rows, long[] nulls, double[] values) {
+      super(name, rows, nulls);
+      this.values = values;
+    } // DoubleColumn(String, int, long[], double[])
+
+    /**
+     * Get the value in a row as JSON.
+     */
+    public JSONValue get(int row) {
+      return isNull(row) ? JSONConstant.NULL : new JSONReal(this.values[row]);
+    } // get(int)
+
+    /**
+     * Get the value in a row (0 if there is none).
+     */
+    public double getDouble(int row) {
+      return this.values[row];
+    } // getDouble(int)
+
+    /**
+     * Add up the column.
+     */
+    public double sum() {
+      double result = 0;
+      for (int i = 0; i < this.rows; i++) {
+        result += this.values[i];
+      } // for
+      return result;
+    } // sum()
+
+    /**
+     * Add up the selected rows.
+     */
+    public double sum(long[] selection) {
+      double result = 0;
+      for (int w = 0; w < selection.length; w++) {
+        for (long bits = selection[w]; bits != 0; bits &= bits - 1) {
+          result += this.values[(w << 6) + Long.numberOfTrailingZeros(bits)];
+        } // for
+      } // for
+      return result;
+    } // sum(long[])
+
+    /**
+     * Get the smallest value, or positive infinity if there are none.
+     */
+    public double min() {
+      double result = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < this.rows; i++) {
+        if ((this.values[i] < result) && !isNull(i)) {
+          result = this.values[i];
+        } // if
+      } // for
+      return result;
+    } // min()
+
+    /**
+     * Get the largest value, or negative infinity if there are none.
+     */
+    public double max() {
+      double result = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < this.rows; i++) {
+        if ((this.values[i] > result) && !isNull(i)) {
+          result = this.values[i];
+        } // if
+      } // for
+      return result;
+    } // max()
+
+    /**
+     * Select the rows whose value passes test.
+     */
+    public long[] select(DoublePredicate test) {
+      long[] result = selection(this.rows);
+      for (int i = 0; i < this.rows; i++) {
+        if (test.test(this.values[i]) && !isNull(i)) {
+          set(result, i);
+        } // if
+      } // for
+      return result;
+    } // select(DoublePredicate)
+  } // class DoubleColumn
+
+  /**
+   * A column of strings, stored as codes into a dictionary of the
+   * distinct strings (in the order they first appear). Null rows hold
+   * code -1.
+   */
+  public static class StringColumn extends Column {
+    /**
+     * The code for each row.
+     */
+    final int[] codes;
+
+    /**
+     * The distinct strings.
+     */
+    final String[] dictionary;
+
+    /**
+     * The code for each distinct string.
+     */
+    final HashMap<String, Integer> index;
+
+    /**
+     * Build a column.
+     */
+    StringColumn(String name, int rows, long[] nulls, int[] codes,
+        String[] dictionary, HashMap<String, Integer> index) {
+      super(name, rows, nulls);
+      this.codes = codes;
+      this.dictionary = dictionary;
+      this.index = index;
+    } // StringColumn(String, int, long[], int[], String[], HashMap)
+
+    /**
+     * Get the value in a row as JSON.
+     */
+    public JSONValue get(int row) {
+      return isNull(row) ? JSONConstant.NULL : new JSONString(this.dictionary[this.codes[row]]);
+    } // get(int)
+
+    /**
+     * Get the value in a row, or null if there is none.
+     */
+    public String getString(int row) {
+      return isNull(row) ? null : this.dictionary[this.codes[row]];
+    } // getString(int)
+
+    /**
+     * Get the code for the value in a row (-1 if there is none).
+     */
+    public int code(int row) {
+      return this.codes[row];
+    } // code(int)
+
+    /**
+     * Get the code for a string, or -1 if no row holds it.
+     */
+    public int codeOf(String str) {
+      Integer code = this.index.get(str);
+      return (code == null) ? -1 : code;
+    } // codeOf(String)
+
+    /**
+     * Get the distinct strings, indexed by code.
+     */
+    public String[] dictionary() {
+      return this.dictionary.clone();
+    } // dictionary()
+
+    /**
+     * Select the rows that hold str.
+     */
+    public long[] select(String str) {
+      long[] result = selection(this.rows);
+      int code = codeOf(str);
+      if (code >= 0) {
+        for (int i = 0; i < this.rows; i++) {
+          if (this.codes[i] == code) {
+            set(result, i);
+          } // if
+        } // for
+      } // if
+      return result;
+    } // select(String)
+
+    /**
+     * Count the rows that hold each string, indexed by code.
+     */
+    public int[] counts() {
+      int[] result = new int[this.dictionary.length];
+      for (int i = 0; i < this.rows; i++) {
+        if (this.codes[i] >= 0) {
+          result[this.codes[i]]++;
+        } // if
+      } // for
+      return result;
+    } // counts()
+  } // class StringColumn
+
+  /**
+   * A column of anything else: hashes, arrays, booleans, integers too
+   * big for a long, or a mix of kinds.
+   */
+  public static class ValueColumn extends Column {
+    /**
+     * The values, one per row (null where there is none).
+     */
+    final JSONValue[] values;
+
+    /**
+     * Build a column.
+     */
+    ValueColumn(String name, int rows, long[] nulls, JSONValue[] values) {
+      super(name, rows, nulls);
+      this.values = values;
+    } // ValueColumn(String, int, long[], JSONValue[])
+
+    /**
+     * Get the value in a row as JSON.
+     */
+    public JSONValue get(int row) {
+      return isNull(row) ? JSONConstant.NULL : this.values[row];
+    } // get(int)
+  } // class ValueColumn
+
+  /**
+   * Collects records into columns. Each column starts as whatever kind
+   * its first value calls for: integers widen to doubles when a real
+   * comes along, and a column that then sees a value of another kind
+   * falls back to holding JSONValues (rebuilt from what it has so far).
+   */
+  static class Builder {
+    /**
+     * The columns being built.
+     */
+    final LinkedHashMap<String, ColumnBuilder> columns;
+
+    /**
+     * The number of rows so far.
+     */
+    int rows;
+
+    /**
+     * The room in each column.
+     */
+    int capacity;
+
+    /**
+     * Start building a table of about expectedRows rows.
+     */
+    Builder(int expectedRows) {
+      this.columns = new LinkedHashMap<String, ColumnBuilder>();
+      this.rows = 0;
+      this.capacity = Math.max(16, expectedRows);
+    } // Builder(int)
+
+    /**
+     * Add a record.
+     */
+    void add(JSONValue record) {
+      if (!(record instanceof JSONHash)) {
+        throw new IllegalArgumentException("Row " + this.rows + " is not a hash");
+      } // if
+      if (this.rows == this.capacity) {
+        this.capacity *= 2;
+        for (ColumnBuilder column : this.columns.values()) {
+          column.grow(this.capacity);
+        } // for
+      } // if
+      for (KVPair<JSONString, JSONValue> pair : (JSONHash) record) {
+        ColumnBuilder column = this.columns.get(pair.key().getValue());
+        if (column == null) {
+          column = new ColumnBuilder(pair.key().getValue(), this.capacity);
+          this.columns.put(column.name, column);
+        } // if
+        column.add(this.rows, pair.value());
+      } // for
+      ++this.rows;
+    } // add(JSONValue)
+
+    /**
+     * Finish the table.
+     */
+    JSONTable build() {
+      LinkedHashMap<String, Column> result = new LinkedHashMap<String, Column>();
+      for (ColumnBuilder column : this.columns.values()) {
+        result.put(column.name, column.build(this.rows));
+      } // for
+      return new JSONTable(this.rows, result);
+    } // build()
+  } // class Builder
+
+  /**
+   * Collects the values for one column.
+   */
+  static class ColumnBuilder {
+    /**
+     * We have seen only nulls.
+     */
+    static final int NONE = 0;
+
+    /**
+     * We have seen only integers that fit in a long.
+     */
+    static final int LONG = 1;
+
+    /**
+     * We have seen only numbers.
+     */
+    static final int DOUBLE = 2;
+
+    /**
+     * We have seen only strings.
+     */
+    static final int STRING = 3;
+
+    /**
+     * We have seen something else.
+     */
+    static final int VALUE = 4;
+
+    /**
+     * The name of the field.
+     */
+    final String name;
+
+    /**
+     * What we have seen (NONE, LONG, DOUBLE, STRING, or VALUE).
+     */
+    int kind;
+
+    /**
+     * The rows with values.
+     */
+    long[] present;
+
+    /**
+     * The values, for LONG.
+     */
+    long[] longs;
+
+    /**
+     * The values, for DOUBLE.
+     */
+    double[] doubles;
+
+    /**
+     * The codes, for STRING.
+     */
+    int[] codes;
+
+    /**
+     * The distinct strings, for STRING.
+     */
+    ArrayList<String> dictionary;
+
+    /**
+     * The code for each distinct string, for STRING.
+     */
+    HashMap<String, Integer> index;
+
+    /**
+     * The values, for VALUE.
+     */
+    JSONValue[] values;
+
+    /**
+     * Start a column with room for capacity rows.
+     */
+    ColumnBuilder(String name, int capacity) {
+      this.name = name;
+      this.kind = NONE;
+      this.present = selection(capacity);
+    } // ColumnBuilder(String, int)
+
+    /**
+     * Make room for capacity rows.
+     */
+    void grow(int capacity) {
+      this.present = Arrays.copyOf(this.present, (capacity + 63) >>> 6);
+      if (this.kind == LONG) {
+        this.longs = Arrays.copyOf(this.longs, capacity);
+      } else if (this.kind == DOUBLE) {
+        this.doubles = Arrays.copyOf(this.doubles, capacity);
+      } else if (this.kind == STRING) {
+        this.codes = Arrays.copyOf(this.codes, capacity);
+      } else if (this.kind == VALUE) {
+        this.values = Arrays.copyOf(this.values, capacity);
+      } // if/else
+    } // grow(int)
+
+    /**
+     * Store the value for a row.
+     */
+    void add(int row, JSONValue value) {
+      if (value == JSONConstant.NULL) {
+        return;
+      } // if
+      int capacity = this.present.length << 6;
+      if ((value instanceof JSONInteger)
+          && (((JSONInteger) value).getValue().bitLength() < 64)) {
+        long l = ((JSONInteger) value).getValue().longValue();
+        if (this.kind == NONE) {
+          this.kind = LONG;
+          this.longs = new long[capacity];
+        } // if
+        if (this.kind == LONG) {
+          this.longs[row] = l;
+        } else if (this.kind == DOUBLE) {
+          this.doubles[row] = l;
+        } else {
+          addValue(row, value);
+        } // if/else
+      } else if (value instanceof JSONReal) {
+        if (this.kind == NONE) {
+          this.kind = DOUBLE;
+          this.doubles = new double[capacity];
+        } else if (this.kind == LONG) {
+          this.kind = DOUBLE;
+          this.doubles = new double[capacity];
+          for (int j = 0; j < row; j++) {
+            this.doubles[j] = this.longs[j];
+          } // for
+          this.longs = null;
+        } // if/else
+        if (this.kind == DOUBLE) {
+          this.doubles[row] = ((JSONReal) value).getValue().doubleValue();
+        } else {
+          addValue(row, value);
+        } // if/else
+      } else if (value instanceof JSONString) {
+        String str = ((JSONString) value).getValue();
+        if (this.kind == NONE) {
+          this.kind = STRING;
+          this.codes = new int[capacity];
+          this.dictionary = new ArrayList<String>();
+          this.index = new HashMap<String, Integer>();
+        } // if
+        if (this.kind == STRING) {
+          Integer code = this.index.get(str);
+          if (code == null) {
+            code = this.dictionary.size();
+            this.dictionary.add(str);
+            this.index.put(str, code);
+          } // if
+          this.codes[row] = code;
+        } else {
+          addValue(row, value);
+        } // if/else
+      } else {
+        addValue(row, value);
+      } // if/else
+      set(this.present, row);
+    } // add(int, JSONValue)
+
+    /**
+     * Store a value for a row, first switching the column to VALUE if
+     * need be.
+     */
+    void addValue(int row, JSONValue value) {
+      if (this.kind != VALUE) {
+        this.values = new JSONValue[this.present.length << 6];
+        for (int j = 0; j < row; j++) {
+          if (!isSet(this.present, j)) {
+            continue;
+          } else if (this.kind == LONG) {
+            this.values[j] = JSONInteger.valueOf(this.longs[j]);
+          } else if (this.kind == DOUBLE) {
+            this.values[j] = new JSONReal(this.doubles[j]);
+          } else {
+            this.values[j] = new JSONString(this.dictionary.get(this.codes[j]));
+          } // if/else
+        } // for
+        this.kind = VALUE;
+        this.longs = null;
+        this.doubles = null;
+        this.codes = null;
+        this.dictionary = null;
+        this.index = null;
+      } // if
+      this.values[row] = value;
+    } // addValue(int, JSONValue)
+
+    /**
+     * Finish the column, which has the given number of rows.
+     */
+    Column build(int rows) {
+      long[] nulls = selection(rows);
+      for (int i = 0; i < nulls.length; i++) {
+        nulls[i] = ~this.present[i];
+      } // for
+      if ((rows & 63) != 0) {
+        nulls[nulls.length - 1] &= (1L << rows) - 1;
+      } // if
+      switch (this.kind) {
+        case LONG:
+          return new LongColumn(this.name, rows, nulls, Arrays.copyOf(this.longs, rows));
+        case DOUBLE:
+          return new DoubleColumn(this.name, rows, nulls, Arrays.copyOf(this.doubles, rows));
+        case STRING:
+          int[] codes = Arrays.copyOf(this.codes, rows);
+          for (int i = 0; i < rows; i++) {
+            if (isSet(nulls, i)) {
+              codes[i] = -1;
+            } // if
+          } // for
+          return new StringColumn(this.name, rows, nulls, codes,
+              this.dictionary.toArray(new String[0]), this.index);
+        case VALUE:
+          return new ValueColumn(this.name, rows, nulls, Arrays.copyOf(this.values, rows));
+        default:
+          return new ValueColumn(this.name, rows, nulls, new JSONValue[rows]);
+      } // switch
+    } // build(int)
+  } // class ColumnBuilder
+
+} // class JSONTable
@@ -0,0 +1,465 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+
+/**
+ * Check that UTF-8 bytes are valid JSON (RFC 8259) without building any
+ * values. The validator is a state machine driven one byte at a time: the
+ * only memory it needs is its state, a few counters, and a bit per open
+ * container, so a validator that has been used once allocates nothing
+ * more for input of similar nesting.
+ *
+ * Input may arrive in pieces: call feed as often as needed, then finish.
+ * Errors are ParseExceptions whose offset is the index of the offending
+ * byte in the whole input.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public final class JSONValidator {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  // What we expect next.
+  static final int VALUE = 0;            // Any value
+  static final int FIRST_ELEMENT = 1;    // A value or ], just after [
+  static final int FIRST_KEY = 2;        // A key or }, just after {
+  static final int KEY = 3;              // A key, after a comma in a hash
+  static final int COLON = 4;            // The colon after a key
+  static final int AFTER_VALUE = 5;      // A comma or the end of a container
+  static final int STRING = 6;           // The inside of a string
+  static final int ESCAPE = 7;           // The character after a backslash
+  static final int UNICODE = 8;          // The hex digits of a \\u escape
+  static final int UTF8 = 9;             // The rest of a multi-byte character
+  static final int LITERAL = 10;         // The rest of true, false, or null
+  static final int MINUS = 11;           // The first digit after a minus
+  static final int ZERO = 12;            // After a leading zero
+  static final int INTEGER = 13;         // More digits of the integer part
+  static final int POINT = 14;           // The first digit after a point
+  static final int FRACTION = 15;        // More digits after the point
+  static final int EXPONENT_MARK = 16;   // A sign or digit after e or E
+  static final int EXPONENT_SIGN = 17;   // The first digit of an exponent
+  static final int EXPONENT = 18;        // More digits of the exponent
+  static final int DONE = 19;            // Nothing but whitespace
+
+  static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+  static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+  static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+  /**
+   * The bytes that end a run of plain string content: the quote, the
+   * backslash, control characters, and anything outside ASCII.
+   */
+  static final boolean[] STRING_STOPS = new boolean[256];
+
+  static {
+    for (int b = 0; b < 256; b++) {
+      STRING_STOPS[b] = (b < 0x20) || (b == '"') || (b == '\\') || (b >= 0x80);
+    } // for
+  } // static
+
+  /**
+   * The number of bytes validate(InputStream) reads at once.
+   */
+  static final int BUFFER_SIZE = 8192;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * What we expect next.
+   */
+  int state;
+
+  /**
+   * One bit per open container, innermost highest: 1 for a hash, 0 for
+   * an array.
+   */
+  long[] stack;
+
+  /**
+   * The number of open containers.
+   */
+  int depth;
+
+  /**
+   * Is the string we're in a key?
+   */
+  boolean inKey;
+
+  /**
+   * Hex digits left in a \\u escape, continuation bytes left in a
+   * character, or bytes of the literal matched so far.
+   */
+  int count;
+
+  /**
+   * The range allowed for the next continuation byte. The first one is
+   * narrower after some lead bytes, which is how we rule out overlong
+   * forms, surrogates, and code points past U+10FFFF.
+   */
+  int low;
+  int high;
+
+  /**
+   * The literal we're matching.
+   */
+  byte[] literal;
+
+  /**
+   * The number of bytes fed before the current piece.
+   */
+  long offset;
+
+  /**
+   * The buffer for validate(InputStream), made when first needed.
+   */
+  byte[] buffer;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a validator, ready for its first document.
+   */
+  public JSONValidator() {
+    this.stack = new long[1];
+    reset();
+  } // JSONValidator()
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get ready for a new document.
+   */
+  public void reset() {
+    this.state = VALUE;
+    this.depth = 0;
+    this.offset = 0;
+  } // reset()
+
+  /**
+   * Validate a whole document.
+   */
+  public void validate(byte[] bytes, int start, int length) throws ParseException {
+    reset();
+    feed(bytes, start, length);
+    finish();
+  } // validate(byte[], int, int)
+
+  /**
+   * Validate the whole of a stream. Does not close it.
+   */
+  public void validate(InputStream in) throws ParseException, IOException {
+    if (this.buffer == null) {
+      this.buffer = new byte[BUFFER_SIZE];
+    } // if
+    reset();
+    int count;
+    while ((count = in.read(this.buffer)) >= 0) {
+      feed(this.buffer, 0, count);
+    } // while
+    finish();
+  } // validate(InputStream)
+
+  /**
+   * Check the next piece of the document.
+   */
+  @SuppressWarnings("fallthrough")
+  public void feed(byte[] bytes, int start, int length) throws ParseException {
+    int end = start + length;
+    int state = this.state;
+    int i = start;
+    try {
+      while (i < end) {
+        int b = bytes[i] & 0xFF;
+        switch (state) {
+          case STRING:
+            while (!STRING_STOPS[b]) {
+              if (++i == end) {
+                return;
+              } // if
+              b = bytes[i] & 0xFF;
+            } // while
+            if (b == '"') {
+              state = this.inKey ? COLON : endValue();
+            } else if (b == '\\') {
+              state = ESCAPE;
+            } else if (b < 0x20) {
+              throw error("Unescaped control character in string", start, i);
+            } else {
+              state = leadByte(b, start, i);
+            } // if/else
+            break;
+          case UTF8:
+            if ((b < this.low) || (b > this.high)) {
+              throw error("Invalid UTF-8", start, i);
+            } // if
+            this.low = 0x80;
+            this.high = 0xBF;
+            if (--this.count == 0) {
+              state = STRING;
+            } // if
+            break;
+          case ESCAPE:
+            if (b == 'u') {
+              this.count = 4;
+              state = UNICODE;
+            } else if ((b == '"') || (b == '\\') || (b == '/') || (b == 'b')
+                || (b == 'f') || (b == 'n') || (b == 'r') || (b == 't')) {
+              state = STRING;
+            } else {
+              throw error("Invalid escape", start, i);
+            } // if/else
+            break;
+          case UNICODE:
+            if (JSONParser.hexValue(b) < 0) {
+              throw error("Invalid \\u escape", start, i);
+            } // if
+            if (--this.count == 0) {
+              state = STRING;
+            } // if
+            break;
+          case VALUE:
+          case FIRST_ELEMENT:
+            if (JSON.isWhitespace(b)) {
+              break;
+            } else if ((b == ']') && (state == FIRST_ELEMENT)) {
+              --this.depth;
+              state = endValue();
+            } else {
+              state = startValue(b, start, i);
+            } // if/else
+            break;
+          case FIRST_KEY:
+          case KEY:
+            if (JSON.isWhitespace(b)) {
+              break;
+            } else if (b == '"') {
+              this.inKey = true;
+              state = STRING;
+            } else if ((b == '}') && (state == FIRST_KEY)) {
+              --this.depth;
+              state = endValue();
+            } else {
+              throw error("Expected a key", start, i);
+            } // if/else
+            break;
+          case COLON:
+            if (b == ':') {
+              state = VALUE;
+            } else if (!JSON.isWhitespace(b)) {
+              throw error("Expected a colon", start, i);
+            } // if/else
+            break;
+          case AFTER_VALUE:
+            if (JSON.isWhitespace(b)) {
+              break;
+            } else if (b == ',') {
+              state = inHash() ? KEY : VALUE;
+            } else if ((b == (inHash() ? '}' : ']'))) {
+              --this.depth;
+              state = endValue();
+            } else {
+              throw error(inHash() ? "Expected a comma or }" : "Expected a comma or ]",
+                  start, i);
+            } // if/else
+            break;
+          case LITERAL:
+            if (b != this.literal[this.count]) {
+              throw error("Invalid literal", start, i);
+            } // if
+            if (++this.count == this.literal.length) {
+              state = endValue();
+            } // if
+            break;
+          case MINUS:
+            if (b == '0') {
+              state = ZERO;
+            } else if ((b >= '1') && (b <= '9')) {
+              state = INTEGER;
+            } else {
+              throw error("Expected a digit", start, i);
+            } // if/else
+            break;
+          case INTEGER:
+          case FRACTION:
+          case EXPONENT:
+            if ((b >= '0') && (b <= '9')) {
+              break;
+            } // if
+            // Otherwise, fall through to see what comes after the digits.
+          case ZERO:
+            if ((b == '.') && ((state == ZERO) || (state == INTEGER))) {
+              state = POINT;
+            } else if (((b == 'e') || (b == 'E')) && (state != EXPONENT)) {
+              state = EXPONENT_MARK;
+            } else {
+              // The number is over; look at b again in the new state.
+              state = endValue();
+              continue;
+            } // if/else
+            break;
+          case POINT:
+          case EXPONENT_SIGN:
+            if ((b < '0') || (b > '9')) {
+              throw error("Expected a digit", start, i);
+            } // if
+            state = (state == POINT) ? FRACTION : EXPONENT;
+            break;
+          case EXPONENT_MARK:
+            if ((b == '+') || (b == '-')) {
+              state = EXPONENT_SIGN;
+            } else if ((b >= '0') && (b <= '9')) {
+              state = EXPONENT;
+            } else {
+              throw error("Expected a digit", start, i);
+            } // if/else
+            break;
+          default:
+            if (!JSON.isWhitespace(b)) {
+              throw error("Characters remain at end", start, i);
+            } // if
+        } // switch
+        ++i;
+      } // while
+    } finally {
+      this.state = state;
+      this.offset += i - start;
+    } // try/finally
+  } // feed(byte[], int, int)
+
+  /**
+   * Check that the document is complete.
+   */
+  public void finish() throws ParseException {
+    if ((this.depth == 0) && ((this.state == DONE) || (this.state == ZERO)
+        || (this.state == INTEGER) || (this.state == FRACTION)
+        || (this.state == EXPONENT))) {
+      this.state = DONE;
+      return;
+    } // if
+    throw new ParseException("Unexpected end of input", (int) Math.min(this.offset,
+        Integer.MAX_VALUE));
+  } // finish()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Start the value that begins with b, and return the new state.
+   */
+  int startValue(int b, int start, int i) throws ParseException {
+    switch (b) {
+      case '{':
+        push(true);
+        return FIRST_KEY;
+      case '[':
+        push(false);
+        return FIRST_ELEMENT;
+      case '"':
+        this.inKey = false;
+        return STRING;
+      case '-':
+        return MINUS;
+      case '0':
+        return ZERO;
+      case 't':
+        return startLiteral(TRUE);
+      case 'f':
+        return startLiteral(FALSE);
+      case 'n':
+        return startLiteral(NULL);
+      default:
+        if ((b >= '1') && (b <= '9')) {
+          return INTEGER;
+        } // if
+        throw error("Expected a value", start, i);
+    } // switch
+  } // startValue(int, int, int)
+
+  /**
+   * Start matching a literal whose first byte we've seen.
+   */
+  int startLiteral(byte[] literal) {
+    this.literal = literal;
+    this.count = 1;
+    return LITERAL;
+  } // startLiteral(byte[])
+
+  /**
+   * Get the state after a complete value.
+   */
+  int endValue() {
+    return (this.depth == 0) ? DONE : AFTER_VALUE;
+  } // endValue()
+
+  /**
+   * Start a multi-byte character whose lead byte is b, and return the
+   * new state.
+   */
+  int leadByte(int b, int start, int i) throws ParseException {
+    this.low = 0x80;
+    this.high = 0xBF;
+    if ((b >= 0xC2) && (b <= 0xDF)) {
+      this.count = 1;
+    } else if ((b >= 0xE0) && (b <= 0xEF)) {
+      this.count = 2;
+      if (b == 0xE0) {
+        this.low = 0xA0;          // No overlong forms
+      } else if (b == 0xED) {
+        this.high = 0x9F;         // No surrogates
+      } // if/else
+    } else if ((b >= 0xF0) && (b <= 0xF4)) {
+      this.count = 3;
+      if (b == 0xF0) {
+        this.low = 0x90;          // No overlong forms
+      } else if (b == 0xF4) {
+        this.high = 0x8F;         // Nothing past U+10FFFF
+      } // if/else
+    } else {
+      throw error("Invalid UTF-8", start, i);
+    } // if/else
+    return UTF8;
+  } // leadByte(int, int, int)
+
+  /**
+   * Open a container.
+   */
+  void push(boolean hash) {
+    if (this.depth == this.stack.length * 64) {
+      this.stack = java.util.Arrays.copyOf(this.stack, this.stack.length * 2);
+    } // if
+    long bit = 1L << (this.depth & 63);
+    if (hash) {
+      this.stack[this.depth >>> 6] |= bit;
+    } else {
+      this.stack[this.depth >>> 6] &= ~bit;
+    } // if/else
+    ++this.depth;
+  } // push(boolean)
+
+  /**
+   * Determine if the innermost open container is a hash.
+   */
+  boolean inHash() {
+    int top = this.depth - 1;
+    return ((this.stack[top >>> 6] >>> (top & 63)) & 1) != 0;
+  } // inHash()
+
+  /**
+   * Build the exception for a problem at bytes[i] of the piece that
+   * started at bytes[start].
+   */
+  ParseException error(String message, int start, int i) {
+    return new ParseException(message, (int) Math.min(this.offset + (i - start),
+        Integer.MAX_VALUE));
+  } // error(String, int, int)
+
+} // class JSONValidator
@@ -40,4 +40,11 @@ public interface JSONValue {
    */
   public Object getValue();
 
+  /**
+   * Estimate the bytes of heap the value holds, i.e., what dropping it
+   * would free. Hashes and arrays remember their estimate (see
+   * RetainedSize).
+   */
+  public long retainedSize();
+
 } // interface JSONValue
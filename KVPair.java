@@ -75,4 +75,13 @@ public class KVPair<K,V> {
   public V value() {
     return this.value;
   } // value()
+
+  /**
+   * Reuse the pair for another key and value. Only for pools (see
+   * JSONPool), on pairs that nobody else can still see.
+   */
+  void reset(K key, V value) {
+    this.key = key;
+    this.value = value;
+  } // reset(K,V)
 } // KVPair<K,V>
@@ -0,0 +1,180 @@
+import java.io.PrintWriter;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of an array in an OffHeapDocument. Elements are read
+ * from the document each time we ask for them.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class OffHeapArray implements JSONValue, Iterable<JSONValue> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The document that holds the array.
+   */
+  final OffHeapDocument document;
+
+  /**
+   * Where the array's record starts.
+   */
+  final long offset;
+
+  /**
+   * The number of elements.
+   */
+  final int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * View the array whose record starts at offset.
+   */
+  OffHeapArray(OffHeapDocument document, long offset) {
+    this.document = document;
+    this.offset = offset;
+    this.size = document.getInt(offset + 1);
+  } // OffHeapArray(OffHeapDocument, long)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing), just as the JSONArray with
+   * the same elements would.
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("[");
+    for (int i = 0; i < this.size; i++) {
+      if (i > 0) {
+        result.append(", ");
+      } // if
+      result.append(get(i).toString());
+    } // for
+    return result.append(']').toString();
+  } // toString()
+
+  /**
+   * Compare to another object. Views are equal when their elements are.
+   * (Use toHeap to compare with a JSONArray.)
+   */
+  public boolean equals(Object other) {
+    if (other instanceof OffHeapArray) {
+      OffHeapArray a = (OffHeapArray) other;
+      if (a.size != this.size) {
+        return false;
+      } // if
+      for (int i = 0; i < this.size; i++) {
+        if (!get(i).equals(a.get(i))) {
+          return false;
+        } // if
+      } // for
+      return true;
+    } // if
+    return false;
+  } // equals(Object)
+
+  /**
+   * Compute the hash code, as a List of the elements would.
+   */
+  public int hashCode() {
+    int result = 1;
+    for (int i = 0; i < this.size; i++) {
+      result = 31 * result + get(i).hashCode();
+    } // for
+    return result;
+  } // hashCode()
+
+  // +--------------------+------------------------------------------
+  // | Additional methods |
+  // +--------------------+
+
+  /**
+   * Write the value as JSON.
+   */
+  public void writeJSON(PrintWriter pen) {
+    pen.println(toString());
+  } // writeJSON(PrintWriter)
+
+  /**
+   * Get the underlying value, as a read-only list.
+   */
+  public List<JSONValue> getValue() {
+    return new AbstractList<JSONValue>() {
+      public JSONValue get(int index) {
+        return OffHeapArray.this.get(index);
+      } // get(int)
+
+      public int size() {
+        return OffHeapArray.this.size;
+      } // size()
+    }; // new AbstractList
+  } // getValue()
+
+  /**
+   * Estimate the bytes of heap the array holds: just this view, since
+   * its contents are in the document's off-heap chunks.
+   */
+  public long retainedSize() {
+    // document, offset, and size.
+    return RetainedSize.align(RetainedSize.OBJECT_HEADER + RetainedSize.REFERENCE + 8 + 4);
+  } // retainedSize()
+
+  /**
+   * Copy the array, and everything in it, onto the heap.
+   */
+  public JSONArray toHeap() {
+    return (JSONArray) this.document.toHeap(this.offset);
+  } // toHeap()
+
+  // +---------------+-----------------------------------------------
+  // | Array methods |
+  // +---------------+
+
+  /**
+   * Get the element at index.
+   */
+  public JSONValue get(int index) throws IndexOutOfBoundsException {
+    if ((index < 0) || (index >= this.size)) {
+      throw new IndexOutOfBoundsException(index);
+    } // if
+    return this.document.valueAt(this.document.getLong(this.offset + 5 + 8L * index));
+  } // get(int)
+
+  /**
+   * Iterate the elements.
+   */
+  public Iterator<JSONValue> iterator() {
+    return new Iterator<JSONValue>() {
+      int i = 0;
+
+      public boolean hasNext() {
+        return this.i < OffHeapArray.this.size;
+      } // hasNext()
+
+      public JSONValue next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        return get(this.i++);
+      } // next()
+    }; // new Iterator
+  } // iterator()
+
+  /**
+   * Get the number of elements.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+} // class OffHeapArray
@@ -0,0 +1,652 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A parsed JSON document stored outside the Java heap, in direct or
+ * memory-mapped ByteBuffers. The garbage collector sees only a handful of
+ * buffers however big the document is. Direct buffers count against
+ * -XX:MaxDirectMemorySize (by default, the size of the heap); a mapped
+ * document, from map or ofArray, counts against neither, and can be far
+ * larger than the heap.
+ *
+ * root() gives read-only views: OffHeapArray and OffHeapHash for
+ * containers, which read their members on demand, and ordinary
+ * JSONStrings, JSONIntegers, JSONReals, and JSONConstants for scalars,
+ * built when asked for.
+ *
+ * The document is a sequence of records addressed by long offsets, so it
+ * is not limited to 2GB; it is split into chunks of 2^chunkBits bytes,
+ * and the rare value that straddles two chunks is read a byte at a time.
+ * Each record starts with a tag byte:
+ *
+ *   NULL, FALSE, TRUE     nothing more
+ *   LONG                  an 8-byte integer
+ *   BIG_INTEGER, REAL,    a 4-byte length, then that many bytes of UTF-8
+ *     STRING                (the decimal form for numbers)
+ *   ARRAY                 a 4-byte count, then an 8-byte offset per element
+ *   HASH                  a 4-byte count, then 8-byte key and value offsets
+ *                         per pair, sorted by the UTF-8 bytes of the key
+ *
+ * Children come before their parents. A 16-byte header holds the offset
+ * of the root and the chunk size, so a document written with writeTo can
+ * be mapped back with map.
+ *
+ * (We use ByteBuffers rather than java.lang.foreign.MemorySegment, which
+ * is still a preview API in the Java release we build with.)
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class OffHeapDocument {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  static final byte NULL = 0;
+  static final byte FALSE = 1;
+  static final byte TRUE = 2;
+  static final byte LONG = 3;
+  static final byte BIG_INTEGER = 4;
+  static final byte REAL = 5;
+  static final byte STRING = 6;
+  static final byte ARRAY = 7;
+  static final byte HASH = 8;
+
+  /**
+   * The size of the header.
+   */
+  static final int HEADER = 16;
+
+  /**
+   * The default chunk size, as a power of two (1GB).
+   */
+  static final int DEFAULT_CHUNK_BITS = 30;
+
+  /**
+   * The chunk size for documents in direct buffers (16MB). The first
+   * chunk grows by doubling, copying as it goes, so we keep it small;
+   * later chunks are allocated at full size and never copied.
+   */
+  static final int DIRECT_CHUNK_BITS = 24;
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The chunks. All but the last hold exactly 2^chunkBits bytes.
+   */
+  final ByteBuffer[] chunks;
+
+  /**
+   * log2 of the chunk size.
+   */
+  final int chunkBits;
+
+  /**
+   * chunk size - 1.
+   */
+  final long chunkMask;
+
+  /**
+   * The number of bytes in the document.
+   */
+  final long length;
+
+  /**
+   * The offset of the root record.
+   */
+  final long root;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a document from its chunks.
+   */
+  OffHeapDocument(ByteBuffer[] chunks, int chunkBits, long length) {
+    this.chunks = chunks;
+    this.chunkBits = chunkBits;
+    this.chunkMask = (1L << chunkBits) - 1;
+    this.length = length;
+    this.root = getLong(0);
+  } // OffHeapDocument(ByteBuffer[], int, long)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Copy a JSON value into a new off-heap document, in direct buffers.
+   */
+  public static OffHeapDocument of(JSONValue value) {
+    return of(value, DIRECT_CHUNK_BITS);
+  } // of(JSONValue)
+
+  /**
+   * Copy a JSON value into a new off-heap document made of direct
+   * buffers of 2^chunkBits bytes.
+   */
+  static OffHeapDocument of(JSONValue value, int chunkBits) {
+    Encoder encoder = new Encoder(chunkBits, null);
+    return encoder.finish(encoder.write(value));
+  } // of(JSONValue, int)
+
+  /**
+   * Build an off-heap document holding an array of the given elements,
+   * copying each in turn into a temporary file that we map. With
+   * JSON.iterateArray, this loads an array far bigger than the heap (and
+   * than direct memory), keeping just eight bytes per element on the
+   * heap while we build it. The file is deleted once it is mapped; it
+   * needs as much free disk as the document takes.
+   */
+  public static OffHeapDocument ofArray(Iterator<JSONValue> elements) {
+    return ofArray(elements, DEFAULT_CHUNK_BITS);
+  } // ofArray(Iterator)
+
+  /**
+   * Build an off-heap document holding an array of the given elements,
+   * mapped in chunks of 2^chunkBits bytes.
+   */
+  static OffHeapDocument ofArray(Iterator<JSONValue> elements, int chunkBits) {
+    try (FileChannel channel = FileChannel.open(
+        Files.createTempFile("json", ".offheap"), StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+      // The mappings outlive the channel, and with them the file's contents.
+      Encoder encoder = new Encoder(chunkBits, channel);
+      long[] offsets = new long[16];
+      int count = 0;
+      while (elements.hasNext()) {
+        if (count == offsets.length) {
+          offsets = Arrays.copyOf(offsets, count * 2);
+        } // if
+        offsets[count++] = encoder.write(elements.next());
+      } // while
+      return encoder.finish(encoder.writeArray(offsets, count));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } // try/catch
+  } // ofArray(Iterator, int)
+
+  /**
+   * Map a document written by writeTo. The file must not change while the
+   * document is in use.
+   */
+  public static OffHeapDocument map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining() && (channel.read(header) >= 0)) {
+        // Keep reading until we have the whole header.
+      } // while
+      if (header.hasRemaining()) {
+        throw new IOException(path + " is not an off-heap document");
+      } // if
+      int chunkBits = header.getInt(8);
+      long chunkSize = 1L << chunkBits;
+      int count = (int) ((size + chunkSize - 1) >>> chunkBits);
+      ByteBuffer[] chunks = new ByteBuffer[count];
+      for (int i = 0; i < count; i++) {
+        long start = (long) i << chunkBits;
+        chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(chunkSize, size - start)).order(ByteOrder.LITTLE_ENDIAN);
+      } // for
+      return new OffHeapDocument(chunks, chunkBits, size);
+    } // try
+  } // map(Path)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Get a view of the root value.
+   */
+  public JSONValue root() {
+    return valueAt(this.root);
+  } // root()
+
+  /**
+   * Get the number of bytes in the document.
+   */
+  public long byteSize() {
+    return this.length;
+  } // byteSize()
+
+  /**
+   * Write the document to a file, for map.
+   */
+  public void writeTo(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (ByteBuffer chunk : this.chunks) {
+        ByteBuffer out = chunk.duplicate();
+        out.position(0);
+        while (out.hasRemaining()) {
+          channel.write(out);
+        } // while
+      } // for
+    } // try
+  } // writeTo(Path)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the value whose record starts at offset: a view for a container,
+   * a new JSONValue for a scalar.
+   */
+  JSONValue valueAt(long offset) {
+    switch (getByte(offset)) {
+      case NULL:
+        return JSONConstant.NULL;
+      case FALSE:
+        return JSONConstant.FALSE;
+      case TRUE:
+        return JSONConstant.TRUE;
+      case LONG:
+        return JSONInteger.valueOf(getLong(offset + 1));
+      case BIG_INTEGER:
+        return new JSONInteger(getText(offset));
+      case REAL:
+        return new JSONReal(getText(offset));
+      case STRING:
+        return new JSONString(getText(offset));
+      case ARRAY:
+        return new OffHeapArray(this, offset);
+      case HASH:
+        return new OffHeapHash(this, offset);
+      default:
+        throw new IllegalStateException("Corrupt document at " + offset);
+    } // switch
+  } // valueAt(long)
+
+  /**
+   * Copy the value at offset onto the heap.
+   */
+  JSONValue toHeap(long offset) {
+    byte tag = getByte(offset);
+    if (tag == ARRAY) {
+      int count = getInt(offset + 1);
+      JSONArray result = new JSONArray();
+      for (int i = 0; i < count; i++) {
+        result.add(toHeap(getLong(offset + 5 + 8L * i)));
+      } // for
+      return result;
+    } else if (tag == HASH) {
+      int count = getInt(offset + 1);
+      ArrayList<KVPair<JSONString,JSONValue>> pairs =
+          new ArrayList<KVPair<JSONString,JSONValue>>(count);
+      for (int i = 0; i < count; i++) {
+        long pair = offset + 5 + 16L * i;
+        pairs.add(new KVPair<JSONString,JSONValue>(
+            new JSONString(getText(getLong(pair))), toHeap(getLong(pair + 8))));
+      } // for
+      // We know the size, so the table is built once.
+      JSONHash result = new JSONHash(count);
+      result.putAll(pairs);
+      return result;
+    } // if/else
+    return valueAt(offset);
+  } // toHeap(long)
+
+  /**
+   * Get the text of a STRING, REAL, or BIG_INTEGER record.
+   */
+  String getText(long offset) {
+    int len = getInt(offset + 1);
+    byte[] bytes = new byte[len];
+    getBytes(offset + 5, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  } // getText(long)
+
+  /**
+   * Compare the text of the STRING record at offset with key, byte by
+   * unsigned byte.
+   */
+  int compareText(long offset, byte[] key) {
+    int len = getInt(offset + 1);
+    long start = offset + 5;
+    int common = Math.min(len, key.length);
+    for (int i = 0; i < common; i++) {
+      int diff = (getByte(start + i) & 0xFF) - (key[i] & 0xFF);
+      if (diff != 0) {
+        return diff;
+      } // if
+    } // for
+    return len - key.length;
+  } // compareText(long, byte[])
+
+  /**
+   * Get the byte at offset.
+   */
+  byte getByte(long offset) {
+    return this.chunks[(int) (offset >>> this.chunkBits)].get((int) (offset & this.chunkMask));
+  } // getByte(long)
+
+  /**
+   * Get the four-byte integer at offset.
+   */
+  int getInt(long offset) {
+    int within = (int) (offset & this.chunkMask);
+    ByteBuffer chunk = this.chunks[(int) (offset >>> this.chunkBits)];
+    if (within + 4 <= chunk.limit()) {
+      return chunk.getInt(within);
+    } // if
+    int result = 0;
+    for (int i = 3; i >= 0; i--) {
+      result = (result << 8) | (getByte(offset + i) & 0xFF);
+    } // for
+    return result;
+  } // getInt(long)
+
+  /**
+   * Get the eight-byte integer at offset.
+   */
+  long getLong(long offset) {
+    int within = (int) (offset & this.chunkMask);
+    ByteBuffer chunk = this.chunks[(int) (offset >>> this.chunkBits)];
+    if (within + 8 <= chunk.limit()) {
+      return chunk.getLong(within);
+    } // if
+    long result = 0;
+    for (int i = 7; i >= 0; i--) {
+      result = (result << 8) | (getByte(offset + i) & 0xFF);
+    } // for
+    return result;
+  } // getLong(long)
+
+  /**
+   * Fill bytes from offset on.
+   */
+  void getBytes(long offset, byte[] bytes) {
+    int done = 0;
+    while (done < bytes.length) {
+      long at = offset + done;
+      ByteBuffer chunk = this.chunks[(int) (at >>> this.chunkBits)];
+      int within = (int) (at & this.chunkMask);
+      int count = Math.min(bytes.length - done, chunk.limit() - within);
+      chunk.get(within, bytes, done, count);
+      done += count;
+    } // while
+  } // getBytes(long, byte[])
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * Builds a document in direct buffers, growing the first chunk by
+   * doubling until it reaches full size, or in full-size chunks mapped
+   * from a file, which are never copied.
+   */
+  static class Encoder {
+    /**
+     * The full chunks.
+     */
+    ArrayList<ByteBuffer> full = new ArrayList<ByteBuffer>();
+
+    /**
+     * The chunk we're writing.
+     */
+    ByteBuffer current;
+
+    /**
+     * log2 of the chunk size.
+     */
+    final int chunkBits;
+
+    /**
+     * The file we map chunks from, or null to use direct buffers.
+     */
+    final FileChannel file;
+
+    /**
+     * The number of bytes written.
+     */
+    long length;
+
+    /**
+     * Start a document, leaving room for the header. If file is not null,
+     * the chunks are mapped from it.
+     */
+    Encoder(int chunkBits, FileChannel file) {
+      this.chunkBits = chunkBits;
+      this.file = file;
+      this.current = (file != null) ? mapChunk(0)
+          : ByteBuffer.allocateDirect((int) Math.min(1L << chunkBits, 4096))
+              .order(ByteOrder.LITTLE_ENDIAN);
+      this.length = 0;
+      putLong(0);
+      putLong(chunkBits);
+    } // Encoder(int, FileChannel)
+
+    /**
+     * Write a value and everything in it. Returns its offset.
+     */
+    long write(JSONValue value) {
+      if (value instanceof JSONArray) {
+        JSONArray array = (JSONArray) value;
+        long[] offsets = new long[array.size()];
+        for (int i = 0; i < offsets.length; i++) {
+          offsets[i] = write(array.get(i));
+        } // for
+        return writeArray(offsets, offsets.length);
+      } else if (value instanceof JSONHash) {
+        return writeHash((JSONHash) value);
+      } else if (value instanceof JSONString) {
+        return writeText(STRING, ((JSONString) value).getValue());
+      } else if (value instanceof JSONInteger) {
+        BigInteger i = ((JSONInteger) value).getValue();
+        if (i.bitLength() < 64) {
+          long offset = this.length;
+          putByte(LONG);
+          putLong(i.longValue());
+          return offset;
+        } // if
+        return writeText(BIG_INTEGER, i.toString());
+      } else if (value instanceof JSONReal) {
+        return writeText(REAL, ((BigDecimal) value.getValue()).toString());
+      } else if (value instanceof OffHeapArray) {
+        return write(((OffHeapArray) value).toHeap());
+      } else if (value instanceof OffHeapHash) {
+        return write(((OffHeapHash) value).toHeap());
+      } // if/else
+      long offset = this.length;
+      if (JSONConstant.TRUE.equals(value)) {
+        putByte(TRUE);
+      } else if (JSONConstant.FALSE.equals(value)) {
+        putByte(FALSE);
+      } else if (JSONConstant.NULL.equals(value)) {
+        putByte(NULL);
+      } else {
+        throw new IllegalArgumentException("Cannot store " + value);
+      } // if/else
+      return offset;
+    } // write(JSONValue)
+
+    /**
+     * Write an array record for elements we've already written.
+     */
+    long writeArray(long[] offsets, int count) {
+      long offset = this.length;
+      putByte(ARRAY);
+      putInt(count);
+      for (int i = 0; i < count; i++) {
+        putLong(offsets[i]);
+      } // for
+      return offset;
+    } // writeArray(long[], int)
+
+    /**
+     * Write a hash and its members, with the keys in byte order.
+     */
+    long writeHash(JSONHash hash) {
+      int count = hash.size();
+      byte[][] keys = new byte[count][];
+      JSONValue[] values = new JSONValue[count];
+      Integer[] order = new Integer[count];
+      int i = 0;
+      for (KVPair<JSONString,JSONValue> pair : hash) {
+        keys[i] = pair.key().getValue().getBytes(StandardCharsets.UTF_8);
+        values[i] = pair.value();
+        order[i] = i;
+        ++i;
+      } // for
+      Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+      long[] offsets = new long[2 * count];
+      for (int j = 0; j < count; j++) {
+        offsets[2 * j] = writeBytes(STRING, keys[order[j]]);
+        offsets[2 * j + 1] = write(values[order[j]]);
+      } // for
+      long offset = this.length;
+      putByte(HASH);
+      putInt(count);
+      for (long child : offsets) {
+        putLong(child);
+      } // for
+      return offset;
+    } // writeHash(JSONHash)
+
+    /**
+     * Write a record of text.
+     */
+    long writeText(byte tag, String text) {
+      return writeBytes(tag, text.getBytes(StandardCharsets.UTF_8));
+    } // writeText(byte, String)
+
+    /**
+     * Write a record of bytes.
+     */
+    long writeBytes(byte tag, byte[] bytes) {
+      long offset = this.length;
+      putByte(tag);
+      putInt(bytes.length);
+      int done = 0;
+      while (done < bytes.length) {
+        if (!this.current.hasRemaining()) {
+          grow();
+        } // if
+        int count = Math.min(bytes.length - done, this.current.remaining());
+        this.current.put(bytes, done, count);
+        done += count;
+        this.length += count;
+      } // while
+      return offset;
+    } // writeBytes(byte, byte[])
+
+    /**
+     * Write the header and hand over the chunks.
+     */
+    OffHeapDocument finish(long root) {
+      ByteBuffer first = this.full.isEmpty() ? this.current : this.full.get(0);
+      first.putLong(0, root);
+      // A mapped chunk is full size; we only want what we wrote.
+      this.current.flip();
+      this.full.add(this.current);
+      this.current = null;
+      return new OffHeapDocument(this.full.toArray(new ByteBuffer[0]),
+          this.chunkBits, this.length);
+    } // finish(long)
+
+    /**
+     * Write one byte.
+     */
+    void putByte(byte b) {
+      if (!this.current.hasRemaining()) {
+        grow();
+      } // if
+      this.current.put(b);
+      ++this.length;
+    } // putByte(byte)
+
+    /**
+     * Write four bytes.
+     */
+    void putInt(int i) {
+      makeRoom(4);
+      if (this.current.remaining() >= 4) {
+        this.current.putInt(i);
+        this.length += 4;
+        return;
+      } // if
+      for (int j = 0; j < 4; j++) {
+        putByte((byte) (i >>> (8 * j)));
+      } // for
+    } // putInt(int)
+
+    /**
+     * Write eight bytes.
+     */
+    void putLong(long l) {
+      makeRoom(8);
+      if (this.current.remaining() >= 8) {
+        this.current.putLong(l);
+        this.length += 8;
+        return;
+      } // if
+      for (int j = 0; j < 8; j++) {
+        putByte((byte) (l >>> (8 * j)));
+      } // for
+    } // putLong(long)
+
+    /**
+     * Grow the current chunk until it has room for count more bytes, or
+     * reaches full size. Only a value that straddles two full chunks is
+     * written a byte at a time.
+     */
+    void makeRoom(int count) {
+      while ((this.current.remaining() < count)
+          && (this.current.capacity() < (1L << this.chunkBits))) {
+        grow();
+      } // while
+    } // makeRoom(int)
+
+    /**
+     * Make room for more: double the current chunk, or start a new one
+     * if it is full size.
+     */
+    void grow() {
+      int capacity = this.current.capacity();
+      if (capacity == (1L << this.chunkBits)) {
+        this.current.flip();
+        this.full.add(this.current);
+        this.current = (this.file != null) ? mapChunk(this.length)
+            : ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+      } else {
+        ByteBuffer bigger = ByteBuffer.allocateDirect(
+            (int) Math.min(2L * capacity, 1L << this.chunkBits)).order(ByteOrder.LITTLE_ENDIAN);
+        this.current.flip();
+        bigger.put(this.current);
+        this.current = bigger;
+      } // if/else
+    } // grow()
+
+    /**
+     * Map the full-size chunk that starts at offset, extending the file.
+     */
+    ByteBuffer mapChunk(long offset) {
+      try {
+        return this.file.map(FileChannel.MapMode.READ_WRITE, offset, 1L << this.chunkBits)
+            .order(ByteOrder.LITTLE_ENDIAN);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } // try/catch
+    } // mapChunk(long)
+  } // class Encoder
+
+} // class OffHeapDocument
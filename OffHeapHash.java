@@ -0,0 +1,210 @@
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of a hash in an OffHeapDocument. The pairs are stored
+ * in order of the UTF-8 bytes of their keys, so get is a binary search
+ * over the document rather than a table on the heap.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class OffHeapHash implements JSONValue, Iterable<KVPair<JSONString,JSONValue>> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The document that holds the hash.
+   */
+  final OffHeapDocument document;
+
+  /**
+   * Where the hash's record starts.
+   */
+  final long offset;
+
+  /**
+   * The number of pairs.
+   */
+  final int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * View the hash whose record starts at offset.
+   */
+  OffHeapHash(OffHeapDocument document, long offset) {
+    this.document = document;
+    this.offset = offset;
+    this.size = document.getInt(offset + 1);
+  } // OffHeapHash(OffHeapDocument, long)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing). Pairs come out in key
+   * order.
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("{");
+    for (int i = 0; i < this.size; i++) {
+      if (i > 0) {
+        result.append(", ");
+      } // if
+      result.append(keyAt(i).toString()).append(": ").append(valueAt(i).toString());
+    } // for
+    return result.append('}').toString();
+  } // toString()
+
+  /**
+   * Compare to another object. Views are equal when they hold the same
+   * pairs. (Use toHeap to compare with a JSONHash.)
+   */
+  public boolean equals(Object other) {
+    if (other instanceof OffHeapHash) {
+      OffHeapHash h = (OffHeapHash) other;
+      if (h.size != this.size) {
+        return false;
+      } // if
+      // Both are in key order, so we can compare pair by pair.
+      for (int i = 0; i < this.size; i++) {
+        if (!keyAt(i).equals(h.keyAt(i)) || !valueAt(i).equals(h.valueAt(i))) {
+          return false;
+        } // if
+      } // for
+      return true;
+    } // if
+    return false;
+  } // equals(Object)
+
+  /**
+   * Compute the hash code.
+   */
+  public int hashCode() {
+    int result = 0;
+    for (int i = 0; i < this.size; i++) {
+      result += keyAt(i).hashCode() ^ valueAt(i).hashCode();
+    } // for
+    return result;
+  } // hashCode()
+
+  // +--------------------+------------------------------------------
+  // | Additional methods |
+  // +--------------------+
+
+  /**
+   * Write the value as JSON.
+   */
+  public void writeJSON(PrintWriter pen) {
+    pen.println(toString());
+  } // writeJSON(PrintWriter)
+
+  /**
+   * Get the underlying value.
+   */
+  public Iterator<KVPair<JSONString,JSONValue>> getValue() {
+    return this.iterator();
+  } // getValue()
+
+  /**
+   * Estimate the bytes of heap the hash holds: just this view, since
+   * its contents are in the document's off-heap chunks.
+   */
+  public long retainedSize() {
+    // document, offset, and size.
+    return RetainedSize.align(RetainedSize.OBJECT_HEADER + RetainedSize.REFERENCE + 8 + 4);
+  } // retainedSize()
+
+  /**
+   * Copy the hash, and everything in it, onto the heap.
+   */
+  public JSONHash toHeap() {
+    return (JSONHash) this.document.toHeap(this.offset);
+  } // toHeap()
+
+  // +-------------------+-------------------------------------------
+  // | Hashtable methods |
+  // +-------------------+
+
+  /**
+   * Get the value associated with a key.
+   */
+  public JSONValue get(JSONString key) {
+    byte[] target = key.getValue().getBytes(StandardCharsets.UTF_8);
+    int lo = 0;
+    int hi = this.size - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = this.document.compareText(this.document.getLong(pairAt(mid)), target);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return valueAt(mid);
+      } // if/else
+    } // while
+    throw new IndexOutOfBoundsException("Invalid key: " + key);
+  } // get(JSONString)
+
+  /**
+   * Iterate the pairs, in key order.
+   */
+  public Iterator<KVPair<JSONString,JSONValue>> iterator() {
+    return new Iterator<KVPair<JSONString,JSONValue>>() {
+      int i = 0;
+
+      public boolean hasNext() {
+        return this.i < OffHeapHash.this.size;
+      } // hasNext()
+
+      public KVPair<JSONString,JSONValue> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        int at = this.i++;
+        return new KVPair<JSONString,JSONValue>(keyAt(at), valueAt(at));
+      } // next()
+    }; // new Iterator
+  } // iterator()
+
+  /**
+   * Get the number of pairs.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Find the offsets of the i'th pair.
+   */
+  long pairAt(int i) {
+    return this.offset + 5 + 16L * i;
+  } // pairAt(int)
+
+  /**
+   * Get the i'th key.
+   */
+  JSONString keyAt(int i) {
+    return new JSONString(this.document.getText(this.document.getLong(pairAt(i))));
+  } // keyAt(int)
+
+  /**
+   * Get the i'th value.
+   */
+  JSONValue valueAt(int i) {
+    return this.document.valueAt(this.document.getLong(pairAt(i) + 8));
+  } // valueAt(int)
+
+} // class OffHeapHash
@@ -0,0 +1,13 @@
+/**
+ * Something that wants to hear about each parse, e.g., to feed a
+ * dashboard. Parsers only gather metrics when they have a listener.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public interface ParseListener {
+  /**
+   * Receive the metrics for a parse that just finished successfully.
+   * The metrics belong to the listener once passed.
+   */
+  public void parsed(ParseMetrics metrics);
+} // interface ParseListener
@@ -0,0 +1,210 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * What we learned about one parse: how much input it read, what it built,
+ * how deep it went, and what it cost.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class ParseMetrics {
+
+  // +---------------+-----------------------------------------------
+  // | Static fields |
+  // +---------------+
+
+  /**
+   * The bean we use to count allocated bytes, or null if this JVM can't.
+   */
+  static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of characters read.
+   */
+  long chars;
+
+  /**
+   * The number of strings built, including keys.
+   */
+  long strings;
+
+  /**
+   * The number of integers built.
+   */
+  long integers;
+
+  /**
+   * The number of reals built.
+   */
+  long reals;
+
+  /**
+   * The number of constants (true, false, null) seen.
+   */
+  long constants;
+
+  /**
+   * The number of arrays built.
+   */
+  long arrays;
+
+  /**
+   * The number of hashes built.
+   */
+  long hashes;
+
+  /**
+   * The deepest nesting of arrays and hashes.
+   */
+  int maxDepth;
+
+  /**
+   * The time the parse took, in nanoseconds.
+   */
+  long nanos;
+
+  /**
+   * The bytes allocated by the parsing thread, or -1 if unknown.
+   */
+  long allocatedBytes = -1;
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing).
+   */
+  public String toString() {
+    return "chars=" + chars + ", strings=" + strings + ", integers=" + integers
+        + ", reals=" + reals + ", constants=" + constants + ", arrays=" + arrays
+        + ", hashes=" + hashes + ", maxDepth=" + maxDepth + ", nanos=" + nanos
+        + ", allocatedBytes=" + allocatedBytes;
+  } // toString()
+
+  // +---------+-----------------------------------------------------
+  // | Getters |
+  // +---------+
+
+  /**
+   * Get the number of characters read.
+   */
+  public long chars() {
+    return this.chars;
+  } // chars()
+
+  /**
+   * Get the number of strings built, including keys.
+   */
+  public long strings() {
+    return this.strings;
+  } // strings()
+
+  /**
+   * Get the number of integers built.
+   */
+  public long integers() {
+    return this.integers;
+  } // integers()
+
+  /**
+   * Get the number of reals built.
+   */
+  public long reals() {
+    return this.reals;
+  } // reals()
+
+  /**
+   * Get the number of constants seen.
+   */
+  public long constants() {
+    return this.constants;
+  } // constants()
+
+  /**
+   * Get the number of arrays built.
+   */
+  public long arrays() {
+    return this.arrays;
+  } // arrays()
+
+  /**
+   * Get the number of hashes built.
+   */
+  public long hashes() {
+    return this.hashes;
+  } // hashes()
+
+  /**
+   * Get the deepest nesting of arrays and hashes.
+   */
+  public int maxDepth() {
+    return this.maxDepth;
+  } // maxDepth()
+
+  /**
+   * Get the time the parse took, in nanoseconds.
+   */
+  public long nanos() {
+    return this.nanos;
+  } // nanos()
+
+  /**
+   * Get the bytes allocated by the parsing thread, or -1 if the JVM
+   * can't tell us.
+   */
+  public long allocatedBytes() {
+    return this.allocatedBytes;
+  } // allocatedBytes()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Count a value that the parser just built.
+   */
+  void count(JSONValue value) {
+    if (value instanceof JSONString) {
+      ++strings;
+    } else if (value instanceof JSONInteger) {
+      ++integers;
+    } else if (value instanceof JSONReal) {
+      ++reals;
+    } else if (value instanceof JSONConstant) {
+      ++constants;
+    } else if (value instanceof JSONArray) {
+      ++arrays;
+    } else if (value instanceof JSONHash) {
+      ++hashes;
+    } // if/else
+  } // count(JSONValue)
+
+  /**
+   * Get the bytes allocated so far by the current thread, or -1.
+   */
+  static long threadAllocatedBytes() {
+    if (THREADS == null) {
+      return -1;
+    } // if
+    return THREADS.getCurrentThreadAllocatedBytes();
+  } // threadAllocatedBytes()
+
+  /**
+   * Find a ThreadMXBean that counts allocation, if there is one.
+   */
+  static com.sun.management.ThreadMXBean allocationBean() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if ((bean instanceof com.sun.management.ThreadMXBean)
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+      threads.setThreadAllocatedMemoryEnabled(true);
+      return threads;
+    } // if
+    return null;
+  } // allocationBean()
+
+} // class ParseMetrics
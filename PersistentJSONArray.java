@@ -0,0 +1,366 @@
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable JSON arrays. with and plus return a new version that shares
+ * everything but the path to the changed element, in O(log n) time, so
+ * readers on other threads never need a lock or a copy.
+ *
+ * The elements live in a bit-partitioned trie: leaves hold 32 elements,
+ * and each level above uses five more bits of the index. The last (up
+ * to) 32 elements sit in a separate tail so that plus usually copies
+ * only the tail.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class PersistentJSONArray implements JSONValue, Iterable<JSONValue> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of index bits each level uses.
+   */
+  static final int BITS = 5;
+
+  /**
+   * The number of slots in a node.
+   */
+  static final int WIDTH = 1 << BITS;
+
+  /**
+   * The empty array.
+   */
+  public static final PersistentJSONArray EMPTY =
+      new PersistentJSONArray(0, BITS, new Object[WIDTH], new Object[0]);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The number of elements.
+   */
+  final int size;
+
+  /**
+   * The shift for the index bits at the root.
+   */
+  final int shift;
+
+  /**
+   * The top of the trie.
+   */
+  final Object[] root;
+
+  /**
+   * The elements after the trie.
+   */
+  final Object[] tail;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build an array from its parts.
+   */
+  PersistentJSONArray(int size, int shift, Object[] root, Object[] tail) {
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  } // PersistentJSONArray(int, int, Object[], Object[])
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Make a persistent copy of an array, making every hash and array in it
+   * persistent too.
+   */
+  public static PersistentJSONArray of(JSONArray array) {
+    PersistentJSONArray result = EMPTY;
+    for (JSONValue value : array) {
+      result = result.plus(PersistentJSONHash.persistent(value));
+    } // for
+    return result;
+  } // of(JSONArray)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing).
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("[");
+    for (int i = 0; i < this.size; i++) {
+      if (i > 0) {
+        result.append(", ");
+      } // if
+      result.append(get(i).toString());
+    } // for
+    return result.append(']').toString();
+  } // toString()
+
+  /**
+   * Compare to another object. Persistent arrays are equal when their
+   * elements are.
+   */
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    } else if (!(other instanceof PersistentJSONArray)) {
+      return false;
+    } // if/else
+    PersistentJSONArray a = (PersistentJSONArray) other;
+    if (a.size != this.size) {
+      return false;
+    } // if
+    for (int i = 0; i < this.size; i++) {
+      if (!get(i).equals(a.get(i))) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // equals(Object)
+
+  /**
+   * Compute the hash code, as a List of the elements would.
+   */
+  public int hashCode() {
+    int result = 1;
+    for (JSONValue value : this) {
+      result = 31 * result + value.hashCode();
+    } // for
+    return result;
+  } // hashCode()
+
+  // +--------------------+------------------------------------------
+  // | Additional methods |
+  // +--------------------+
+
+  /**
+   * Write the value as JSON.
+   */
+  public void writeJSON(PrintWriter pen) {
+    pen.println(toString());
+  } // writeJSON(PrintWriter)
+
+  /**
+   * Get the underlying value.
+   */
+  public Iterator<JSONValue> getValue() {
+    return this.iterator();
+  } // getValue()
+
+  /**
+   * Estimate the bytes of heap the array holds. Versions of an array
+   * share most of their tries, so this counts the shared parts in each
+   * version; it isn't cached, since nothing changes it.
+   */
+  public long retainedSize() {
+    if (this == EMPTY) {
+      return 0;
+    } // if
+    // size, shift, root, and tail.
+    long result = RetainedSize.align(RetainedSize.OBJECT_HEADER + 4 + 4
+        + 2 * RetainedSize.REFERENCE);
+    if (this.root != EMPTY.root) {
+      result += nodeSize(this.shift, this.root);
+    } // if
+    result += RetainedSize.references(this.tail.length);
+    for (JSONValue value : this) {
+      result += value.retainedSize();
+    } // for
+    return result;
+  } // retainedSize()
+
+  /**
+   * Make a mutable copy, with mutable copies of every hash and array in
+   * it.
+   */
+  public JSONArray toHeap() {
+    JSONArray result = new JSONArray();
+    for (JSONValue value : this) {
+      result.add(PersistentJSONHash.mutable(value));
+    } // for
+    return result;
+  } // toHeap()
+
+  // +---------------+-----------------------------------------------
+  // | Array methods |
+  // +---------------+
+
+  /**
+   * Get the element at index.
+   */
+  public JSONValue get(int index) throws IndexOutOfBoundsException {
+    return (JSONValue) leafFor(index)[index & (WIDTH - 1)];
+  } // get(int)
+
+  /**
+   * Get a version of this array with value at index.
+   */
+  public PersistentJSONArray with(int index, JSONValue value)
+      throws IndexOutOfBoundsException {
+    if ((index < 0) || (index >= this.size)) {
+      throw new IndexOutOfBoundsException(index);
+    } // if
+    if (index >= tailOffset()) {
+      Object[] newTail = this.tail.clone();
+      newTail[index & (WIDTH - 1)] = value;
+      return new PersistentJSONArray(this.size, this.shift, this.root, newTail);
+    } // if
+    return new PersistentJSONArray(this.size, this.shift,
+        with(this.shift, this.root, index, value), this.tail);
+  } // with(int, JSONValue)
+
+  /**
+   * Get a version of this array with value added at the end.
+   */
+  public PersistentJSONArray plus(JSONValue value) {
+    if (this.size - tailOffset() < WIDTH) {
+      Object[] newTail = java.util.Arrays.copyOf(this.tail, this.tail.length + 1);
+      newTail[this.tail.length] = value;
+      return new PersistentJSONArray(this.size + 1, this.shift, this.root, newTail);
+    } // if
+    // The tail is full, so it moves into the trie.
+    Object[] newRoot;
+    int newShift = this.shift;
+    if ((this.size >>> BITS) > (1 << this.shift)) {
+      // So is the trie, so it gets a new level.
+      newRoot = new Object[WIDTH];
+      newRoot[0] = this.root;
+      newRoot[1] = path(this.shift, this.tail);
+      newShift += BITS;
+    } else {
+      newRoot = pushTail(this.shift, this.root, this.tail);
+    } // if/else
+    return new PersistentJSONArray(this.size + 1, newShift, newRoot, new Object[] { value });
+  } // plus(JSONValue)
+
+  /**
+   * Iterate the elements.
+   */
+  public Iterator<JSONValue> iterator() {
+    return new Iterator<JSONValue>() {
+      int i = 0;
+      Object[] leaf = null;
+
+      public boolean hasNext() {
+        return this.i < PersistentJSONArray.this.size;
+      } // hasNext()
+
+      public JSONValue next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        } // if
+        // Find each leaf once, not once per element.
+        if ((this.i & (WIDTH - 1)) == 0) {
+          this.leaf = leafFor(this.i);
+        } // if
+        return (JSONValue) this.leaf[this.i++ & (WIDTH - 1)];
+      } // next()
+    }; // new Iterator
+  } // iterator()
+
+  /**
+   * Get the number of elements.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the index of the first element in the tail.
+   */
+  int tailOffset() {
+    return (this.size < WIDTH) ? 0 : ((this.size - 1) >>> BITS) << BITS;
+  } // tailOffset()
+
+  /**
+   * Get the leaf that holds index.
+   */
+  Object[] leafFor(int index) throws IndexOutOfBoundsException {
+    if ((index < 0) || (index >= this.size)) {
+      throw new IndexOutOfBoundsException(index);
+    } // if
+    if (index >= tailOffset()) {
+      return this.tail;
+    } // if
+    Object[] node = this.root;
+    for (int level = this.shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(index >>> level) & (WIDTH - 1)];
+    } // for
+    return node;
+  } // leafFor(int)
+
+  /**
+   * Copy the path to index below node, with value at index.
+   */
+  static Object[] with(int level, Object[] node, int index, JSONValue value) {
+    Object[] result = node.clone();
+    if (level == 0) {
+      result[index & (WIDTH - 1)] = value;
+    } else {
+      int slot = (index >>> level) & (WIDTH - 1);
+      result[slot] = with(level - BITS, (Object[]) node[slot], index, value);
+    } // if/else
+    return result;
+  } // with(int, Object[], int, JSONValue)
+
+  /**
+   * Copy the path to the end of the trie below parent, adding leaf.
+   */
+  Object[] pushTail(int level, Object[] parent, Object[] leaf) {
+    Object[] result = parent.clone();
+    int slot = ((this.size - 1) >>> level) & (WIDTH - 1);
+    if (level == BITS) {
+      result[slot] = leaf;
+    } else {
+      Object[] child = (Object[]) parent[slot];
+      result[slot] = (child != null) ? pushTail(level - BITS, child, leaf)
+          : path(level - BITS, leaf);
+    } // if/else
+    return result;
+  } // pushTail(int, Object[], Object[])
+
+  /**
+   * Build a chain of new nodes down to leaf.
+   */
+  static Object[] path(int level, Object[] leaf) {
+    if (level == 0) {
+      return leaf;
+    } // if
+    Object[] result = new Object[WIDTH];
+    result[0] = path(level - BITS, leaf);
+    return result;
+  } // path(int, Object[])
+
+  /**
+   * Get the size of node and the nodes below it, but not of the
+   * elements in its leaves.
+   */
+  static long nodeSize(int level, Object[] node) {
+    long result = RetainedSize.references(node.length);
+    if (level > 0) {
+      for (Object child : node) {
+        if (child != null) {
+          result += nodeSize(level - BITS, (Object[]) child);
+        } // if
+      } // for
+    } // if
+    return result;
+  } // nodeSize(int, Object[])
+
+} // class PersistentJSONArray
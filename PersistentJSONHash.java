@@ -0,0 +1,595 @@
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable JSON hashes/objects. Instead of changing the hash, with and
+ * without return a new version that shares everything but the path to
+ * the changed pair, in O(log n) time. Since no version ever changes, any
+ * number of threads can read one without locks while another builds the
+ * next.
+ *
+ * The pairs live in a hash array mapped trie: each node covers five bits
+ * of the key's hash and keeps only the slots it uses, packed in order
+ * and found with a bitmap. A slot holds either a pair or a node for the
+ * next five bits. Keys whose hashes are identical share a Collision.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class PersistentJSONHash implements JSONValue, Iterable<KVPair<JSONString,JSONValue>> {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The number of hash bits each level uses.
+   */
+  static final int BITS = 5;
+
+  /**
+   * The largest shift at which a node still has hash bits to use.
+   */
+  static final int MAX_SHIFT = 30;
+
+  /**
+   * The empty hash.
+   */
+  public static final PersistentJSONHash EMPTY =
+      new PersistentJSONHash(new Node(0, new Object[0]), 0);
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The top of the trie.
+   */
+  final Node root;
+
+  /**
+   * The number of pairs.
+   */
+  final int size;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a hash from its trie.
+   */
+  PersistentJSONHash(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  } // PersistentJSONHash(Node, int)
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Make a persistent copy of a hash, making every hash and array in it
+   * persistent too.
+   */
+  public static PersistentJSONHash of(JSONHash hash) {
+    PersistentJSONHash result = EMPTY;
+    for (KVPair<JSONString,JSONValue> pair : hash) {
+      result = result.with(pair.key(), persistent(pair.value()));
+    } // for
+    return result;
+  } // of(JSONHash)
+
+  /**
+   * Get a persistent form of value: itself for scalars and values that
+   * are already persistent, a copy for JSONHashes and JSONArrays.
+   */
+  static JSONValue persistent(JSONValue value) {
+    if (value instanceof JSONHash) {
+      return of((JSONHash) value);
+    } else if (value instanceof JSONArray) {
+      return PersistentJSONArray.of((JSONArray) value);
+    } // if/else
+    return value;
+  } // persistent(JSONValue)
+
+  /**
+   * Get a mutable form of value, undoing persistent.
+   */
+  static JSONValue mutable(JSONValue value) {
+    if (value instanceof PersistentJSONHash) {
+      return ((PersistentJSONHash) value).toHeap();
+    } else if (value instanceof PersistentJSONArray) {
+      return ((PersistentJSONArray) value).toHeap();
+    } // if/else
+    return value;
+  } // mutable(JSONValue)
+
+  // +-------------------------+-------------------------------------
+  // | Standard object methods |
+  // +-------------------------+
+
+  /**
+   * Convert to a string (e.g., for printing).
+   */
+  public String toString() {
+    StringBuilder result = new StringBuilder("{");
+    for (KVPair<JSONString,JSONValue> pair : this) {
+      if (result.length() > 1) {
+        result.append(", ");
+      } // if
+      result.append(pair.key().toString()).append(": ").append(pair.value().toString());
+    } // for
+    return result.append('}').toString();
+  } // toString()
+
+  /**
+   * Compare to another object. Persistent hashes are equal when they hold
+   * the same pairs.
+   */
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    } else if (!(other instanceof PersistentJSONHash)) {
+      return false;
+    } // if/else
+    PersistentJSONHash h = (PersistentJSONHash) other;
+    if (h.size != this.size) {
+      return false;
+    } // if
+    for (KVPair<JSONString,JSONValue> pair : this) {
+      Object value = find(h.root, hash(pair.key()), 0, pair.key());
+      if ((value == null) || !value.equals(pair.value())) {
+        return false;
+      } // if
+    } // for
+    return true;
+  } // equals(Object)
+
+  /**
+   * Compute the hash code.
+   */
+  public int hashCode() {
+    int result = 0;
+    for (KVPair<JSONString,JSONValue> pair : this) {
+      result += pair.key().hashCode() ^ pair.value().hashCode();
+    } // for
+    return result;
+  } // hashCode()
+
+  // +--------------------+------------------------------------------
+  // | Additional methods |
+  // +--------------------+
+
+  /**
+   * Write the value as JSON.
+   */
+  public void writeJSON(PrintWriter pen) {
+    pen.println(toString());
+  } // writeJSON(PrintWriter)
+
+  /**
+   * Get the underlying value.
+   */
+  public Iterator<KVPair<JSONString,JSONValue>> getValue() {
+    return this.iterator();
+  } // getValue()
+
+  /**
+   * Estimate the bytes of heap the hash holds. Versions of a hash share
+   * most of their tries, so this counts the shared parts in each
+   * version; it isn't cached, since nothing changes it.
+   */
+  public long retainedSize() {
+    if (this == EMPTY) {
+      return 0;
+    } // if
+    // root and size.
+    long result = RetainedSize.align(RetainedSize.OBJECT_HEADER + RetainedSize.REFERENCE + 4);
+    return result + nodeSize(this.root);
+  } // retainedSize()
+
+  /**
+   * Make a mutable copy, with mutable copies of every hash and array in
+   * it.
+   */
+  public JSONHash toHeap() {
+    JSONHash result = new JSONHash(this.size);
+    for (KVPair<JSONString,JSONValue> pair : this) {
+      result.set(pair.key(), mutable(pair.value()));
+    } // for
+    return result;
+  } // toHeap()
+
+  // +-------------------+-------------------------------------------
+  // | Hashtable methods |
+  // +-------------------+
+
+  /**
+   * Get the value associated with a key.
+   */
+  public JSONValue get(JSONString key) {
+    JSONValue value = find(this.root, hash(key), 0, key);
+    if (value == null) {
+      throw new IndexOutOfBoundsException("Invalid key: " + key);
+    } // if
+    return value;
+  } // get(JSONString)
+
+  /**
+   * Determine if the hash has a value for key.
+   */
+  public boolean containsKey(JSONString key) {
+    return find(this.root, hash(key), 0, key) != null;
+  } // containsKey(JSONString)
+
+  /**
+   * Get a version of this hash in which key maps to value.
+   */
+  public PersistentJSONHash with(JSONString key, JSONValue value) {
+    boolean[] added = new boolean[1];
+    Node newRoot = (Node) with(this.root, hash(key), 0,
+        new KVPair<JSONString,JSONValue>(key, value), added);
+    if (newRoot == this.root) {
+      return this;
+    } // if
+    return new PersistentJSONHash(newRoot, added[0] ? this.size + 1 : this.size);
+  } // with(JSONString, JSONValue)
+
+  /**
+   * Get a version of this hash without key.
+   */
+  public PersistentJSONHash without(JSONString key) {
+    Object newRoot = without(this.root, hash(key), 0, key);
+    if (newRoot == this.root) {
+      return this;
+    } else if (this.size == 1) {
+      return EMPTY;
+    } else if (newRoot instanceof KVPair) {
+      // The root lost all but one pair.
+      KVPair<?,?> pair = (KVPair<?,?>) newRoot;
+      return EMPTY.with((JSONString) pair.key(), (JSONValue) pair.value());
+    } // if/else
+    return new PersistentJSONHash((Node) newRoot, this.size - 1);
+  } // without(JSONString)
+
+  /**
+   * Iterate the pairs.
+   */
+  public Iterator<KVPair<JSONString,JSONValue>> iterator() {
+    return new TrieIterator(this.root);
+  } // iterator()
+
+  /**
+   * Get the number of pairs.
+   */
+  public int size() {
+    return this.size;
+  } // size()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the hash of a key: seeded and mixed as in ChainedHashTable, so
+   * that which keys collide can't be known ahead of time, and every bit
+   * affects the low ones the trie looks at first.
+   */
+  static int hash(JSONString key) {
+    return ChainedHashTable.mix(key.hash(ChainedHashTable.SEED));
+  } // hash(JSONString)
+
+  /**
+   * Find the value for key below node, or null if there isn't one.
+   */
+  @SuppressWarnings("unchecked")
+  static JSONValue find(Object node, int hash, int shift, JSONString key) {
+    while (true) {
+      if (node instanceof Collision) {
+        for (KVPair<JSONString,JSONValue> pair : ((Collision) node).pairs) {
+          if (pair.key().equals(key)) {
+            return pair.value();
+          } // if
+        } // for
+        return null;
+      } // if
+      Node n = (Node) node;
+      int bit = 1 << ((hash >>> shift) & 31);
+      if ((n.bitmap & bit) == 0) {
+        return null;
+      } // if
+      Object slot = n.slots[Integer.bitCount(n.bitmap & (bit - 1))];
+      if (slot instanceof KVPair) {
+        KVPair<JSONString,JSONValue> pair = (KVPair<JSONString,JSONValue>) slot;
+        return pair.key().equals(key) ? pair.value() : null;
+      } // if
+      node = slot;
+      shift += BITS;
+    } // while
+  } // find(Object, int, int, JSONString)
+
+  /**
+   * Get node with pair added, copying only what changes. Sets added[0]
+   * if the key is new.
+   */
+  @SuppressWarnings("unchecked")
+  static Object with(Object node, int hash, int shift, KVPair<JSONString,JSONValue> pair,
+      boolean[] added) {
+    if (node instanceof Collision) {
+      KVPair<JSONString,JSONValue>[] pairs = ((Collision) node).pairs;
+      for (int i = 0; i < pairs.length; i++) {
+        if (pairs[i].key().equals(pair.key())) {
+          if (pairs[i].value() == pair.value()) {
+            return node;
+          } // if
+          KVPair<JSONString,JSONValue>[] copy = pairs.clone();
+          copy[i] = pair;
+          return new Collision(hash, copy);
+        } // if
+      } // for
+      KVPair<JSONString,JSONValue>[] copy = java.util.Arrays.copyOf(pairs, pairs.length + 1);
+      copy[pairs.length] = pair;
+      added[0] = true;
+      return new Collision(hash, copy);
+    } // if
+
+    Node n = (Node) node;
+    int bit = 1 << ((hash >>> shift) & 31);
+    int index = Integer.bitCount(n.bitmap & (bit - 1));
+    if ((n.bitmap & bit) == 0) {
+      Object[] slots = new Object[n.slots.length + 1];
+      System.arraycopy(n.slots, 0, slots, 0, index);
+      slots[index] = pair;
+      System.arraycopy(n.slots, index, slots, index + 1, n.slots.length - index);
+      added[0] = true;
+      return new Node(n.bitmap | bit, slots);
+    } // if
+
+    Object slot = n.slots[index];
+    Object replacement;
+    if (slot instanceof KVPair) {
+      KVPair<JSONString,JSONValue> old = (KVPair<JSONString,JSONValue>) slot;
+      if (old.key().equals(pair.key())) {
+        if (old.value() == pair.value()) {
+          return node;
+        } // if
+        replacement = pair;
+      } else {
+        replacement = pairOf(shift + BITS, old, hash(old.key()), pair, hash);
+        added[0] = true;
+      } // if/else
+    } else {
+      replacement = with(slot, hash, shift + BITS, pair, added);
+      if (replacement == slot) {
+        return node;
+      } // if
+    } // if/else
+    Object[] slots = n.slots.clone();
+    slots[index] = replacement;
+    return new Node(n.bitmap, slots);
+  } // with(Object, int, int, KVPair, boolean[])
+
+  /**
+   * Build the smallest subtrie holding two pairs with different keys.
+   */
+  @SuppressWarnings("unchecked")
+  static Object pairOf(int shift, KVPair<JSONString,JSONValue> p1, int h1,
+      KVPair<JSONString,JSONValue> p2, int h2) {
+    if (shift > MAX_SHIFT) {
+      return new Collision(h1,
+          (KVPair<JSONString,JSONValue>[]) new KVPair<?,?>[] { p1, p2 });
+    } // if
+    int b1 = (h1 >>> shift) & 31;
+    int b2 = (h2 >>> shift) & 31;
+    if (b1 == b2) {
+      return new Node(1 << b1, new Object[] { pairOf(shift + BITS, p1, h1, p2, h2) });
+    } // if
+    return new Node((1 << b1) | (1 << b2), (b1 < b2) ? new Object[] { p1, p2 }
+        : new Object[] { p2, p1 });
+  } // pairOf(int, KVPair, int, KVPair, int)
+
+  /**
+   * Get node without key: node itself if key isn't there, null if nothing
+   * is left, or a lone pair if that is all that is left.
+   */
+  @SuppressWarnings("unchecked")
+  static Object without(Object node, int hash, int shift, JSONString key) {
+    if (node instanceof Collision) {
+      Collision c = (Collision) node;
+      for (int i = 0; i < c.pairs.length; i++) {
+        if (c.pairs[i].key().equals(key)) {
+          if (c.pairs.length == 2) {
+            return c.pairs[1 - i];
+          } // if
+          KVPair<JSONString,JSONValue>[] copy =
+              (KVPair<JSONString,JSONValue>[]) new KVPair<?,?>[c.pairs.length - 1];
+          System.arraycopy(c.pairs, 0, copy, 0, i);
+          System.arraycopy(c.pairs, i + 1, copy, i, copy.length - i);
+          return new Collision(c.hash, copy);
+        } // if
+      } // for
+      return node;
+    } // if
+
+    Node n = (Node) node;
+    int bit = 1 << ((hash >>> shift) & 31);
+    if ((n.bitmap & bit) == 0) {
+      return node;
+    } // if
+    int index = Integer.bitCount(n.bitmap & (bit - 1));
+    Object slot = n.slots[index];
+    Object replacement;
+    if (slot instanceof KVPair) {
+      if (!((KVPair<JSONString,JSONValue>) slot).key().equals(key)) {
+        return node;
+      } // if
+      replacement = null;
+    } else {
+      replacement = without(slot, hash, shift + BITS, key);
+      if (replacement == slot) {
+        return node;
+      } // if
+    } // if/else
+
+    if (replacement != null) {
+      Object[] slots = n.slots.clone();
+      slots[index] = replacement;
+      return new Node(n.bitmap, slots);
+    } else if (n.slots.length == 1) {
+      return null;
+    } else if ((n.slots.length == 2) && (n.slots[1 - index] instanceof KVPair)) {
+      // Let our parent hold the remaining pair itself.
+      return n.slots[1 - index];
+    } // if/else
+    Object[] slots = new Object[n.slots.length - 1];
+    System.arraycopy(n.slots, 0, slots, 0, index);
+    System.arraycopy(n.slots, index + 1, slots, index, slots.length - index);
+    return new Node(n.bitmap & ~bit, slots);
+  } // without(Object, int, int, JSONString)
+
+  /**
+   * Get the size of node, the nodes below it, and their pairs.
+   */
+  @SuppressWarnings("unchecked")
+  static long nodeSize(Node node) {
+    // bitmap and slots.
+    long result = RetainedSize.align(RetainedSize.OBJECT_HEADER + 4 + RetainedSize.REFERENCE);
+    result += RetainedSize.references(node.slots.length);
+    for (Object slot : node.slots) {
+      if (slot instanceof Node) {
+        result += nodeSize((Node) slot);
+      } else if (slot instanceof Collision) {
+        Collision collision = (Collision) slot;
+        result += RetainedSize.align(RetainedSize.OBJECT_HEADER + 4 + RetainedSize.REFERENCE);
+        result += RetainedSize.references(collision.pairs.length);
+        for (KVPair<JSONString,JSONValue> pair : collision.pairs) {
+          result += pairSize(pair);
+        } // for
+      } else {
+        result += pairSize((KVPair<JSONString,JSONValue>) slot);
+      } // if/else
+    } // for
+    return result;
+  } // nodeSize(Node)
+
+  /**
+   * Get the size of a pair, its key, and its value.
+   */
+  static long pairSize(KVPair<JSONString,JSONValue> pair) {
+    return RetainedSize.PAIR + pair.key().retainedSize() + pair.value().retainedSize();
+  } // pairSize(KVPair)
+
+  // +---------------+-----------------------------------------------
+  // | Inner classes |
+  // +---------------+
+
+  /**
+   * A level of the trie.
+   */
+  static class Node {
+    /**
+     * Which of the 32 possible slots are in use.
+     */
+    final int bitmap;
+
+    /**
+     * The slots in use, in order: KVPairs, Nodes, or Collisions.
+     */
+    final Object[] slots;
+
+    Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    } // Node(int, Object[])
+  } // class Node
+
+  /**
+   * Pairs whose keys have the same hash.
+   */
+  static class Collision {
+    /**
+     * The shared hash.
+     */
+    final int hash;
+
+    /**
+     * The pairs.
+     */
+    final KVPair<JSONString,JSONValue>[] pairs;
+
+    Collision(int hash, KVPair<JSONString,JSONValue>[] pairs) {
+      this.hash = hash;
+      this.pairs = pairs;
+    } // Collision(int, KVPair[])
+  } // class Collision
+
+  /**
+   * Walks the trie depth first, keeping the path in a pair of arrays.
+   */
+  static class TrieIterator implements Iterator<KVPair<JSONString,JSONValue>> {
+    /**
+     * The slots on the path down; a level is a Node's slots or a
+     * Collision's pairs.
+     */
+    Object[][] levels = new Object[MAX_SHIFT / BITS + 2][];
+
+    /**
+     * The next slot to look at on each level.
+     */
+    int[] positions = new int[MAX_SHIFT / BITS + 2];
+
+    /**
+     * The current level.
+     */
+    int depth = 0;
+
+    /**
+     * The next pair, or null at the end.
+     */
+    KVPair<JSONString,JSONValue> next;
+
+    TrieIterator(Node root) {
+      this.levels[0] = root.slots;
+      advance();
+    } // TrieIterator(Node)
+
+    public boolean hasNext() {
+      return this.next != null;
+    } // hasNext()
+
+    public KVPair<JSONString,JSONValue> next() {
+      if (this.next == null) {
+        throw new NoSuchElementException();
+      } // if
+      KVPair<JSONString,JSONValue> result = this.next;
+      advance();
+      return result;
+    } // next()
+
+    /**
+     * Find the next pair.
+     */
+    @SuppressWarnings("unchecked")
+    void advance() {
+      while (this.depth >= 0) {
+        Object[] level = this.levels[this.depth];
+        if (this.positions[this.depth] == level.length) {
+          --this.depth;
+          continue;
+        } // if
+        Object slot = level[this.positions[this.depth]++];
+        if (slot instanceof KVPair) {
+          this.next = (KVPair<JSONString,JSONValue>) slot;
+          return;
+        } // if
+        ++this.depth;
+        this.levels[this.depth] = (slot instanceof Node) ? ((Node) slot).slots
+            : ((Collision) slot).pairs;
+        this.positions[this.depth] = 0;
+      } // while
+      this.next = null;
+    } // advance()
+  } // class TrieIterator
+
+} // class PersistentJSONHash
@@ -0,0 +1,259 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+/**
+ * Estimates of the heap that JSON values hold, for
+ * JSONValue.retainedSize. We assume a 64-bit JVM with compressed
+ * references (the default for heaps under 32 GB): 12-byte object
+ * headers, 16-byte array headers, 4-byte references, and every object
+ * rounded up to a multiple of 8 bytes.
+ *
+ * The estimates count what a value would free if it were dropped, so
+ * the shared constants and the integers JSONInteger.valueOf caches count
+ * as nothing. Strings shared through a JSONStringTable are counted in
+ * every document that uses them, so documents parsed with shared values
+ * are overestimated a little.
+ *
+ * A hash or array keeps its estimate once computed. Arrays adjust it as
+ * elements are added and set, and hashes drop it when set; but a
+ * container doesn't know what holds it, so changing one inside a
+ * document that has already been sized leaves the document's estimate
+ * stale. measure recomputes a document's estimate from scratch.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class RetainedSize {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The size of an object header.
+   */
+  static final int OBJECT_HEADER = 12;
+
+  /**
+   * The size of an array header (an object header and a length).
+   */
+  static final int ARRAY_HEADER = 16;
+
+  /**
+   * The size of a reference.
+   */
+  static final int REFERENCE = 4;
+
+  /**
+   * The size of a KVPair: a key and a value.
+   */
+  static final long PAIR = align(OBJECT_HEADER + 2 * REFERENCE);
+
+  /**
+   * The size of an ArrayList, without its array: modCount, size, and
+   * elementData.
+   */
+  static final long ARRAY_LIST = align(OBJECT_HEADER + 4 + 4 + REFERENCE);
+
+  /**
+   * The capacity an ArrayList takes on its first add.
+   */
+  static final int LIST_CAPACITY = 10;
+
+  /**
+   * The size of a wrapper around one reference (JSONString, JSONInteger,
+   * JSONReal).
+   */
+  static final long WRAPPER = align(OBJECT_HEADER + REFERENCE);
+
+  /**
+   * The size of a String, without its bytes: value, hash, coder, and
+   * hashIsZero.
+   */
+  static final long STRING = align(OBJECT_HEADER + REFERENCE + 4 + 1 + 1);
+
+  /**
+   * The size of a BigInteger, without its magnitude: signum, mag, and
+   * four cached ints.
+   */
+  static final long BIG_INTEGER = align(OBJECT_HEADER + 4 + REFERENCE + 4 * 4);
+
+  /**
+   * The size of a BigDecimal, without a BigInteger for its unscaled
+   * value: intVal, scale, precision, stringCache, and intCompact.
+   */
+  static final long BIG_DECIMAL = align(OBJECT_HEADER + REFERENCE + 4 + 4 + REFERENCE + 8);
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Round size up to a multiple of 8.
+   */
+  static long align(long size) {
+    return (size + 7) & ~7L;
+  } // align(long)
+
+  /**
+   * Get the size of an array of length references.
+   */
+  static long references(int length) {
+    return align(ARRAY_HEADER + (long) REFERENCE * length);
+  } // references(int)
+
+  /**
+   * Get the size of a String, including its bytes (one per char if
+   * every char fits in a byte, two otherwise).
+   */
+  static long string(String str) {
+    long bytes = str.length();
+    for (int i = 0; i < str.length(); i++) {
+      if (str.charAt(i) > 0xFF) {
+        bytes *= 2;
+        break;
+      } // if
+    } // for
+    return STRING + align(ARRAY_HEADER + bytes);
+  } // string(String)
+
+  /**
+   * Get the size of a BigInteger, including its magnitude.
+   */
+  static long bigInteger(BigInteger i) {
+    return BIG_INTEGER + align(ARRAY_HEADER + 4L * ((i.bitLength() + 31) / 32));
+  } // bigInteger(BigInteger)
+
+  /**
+   * Get the size of a BigDecimal. Unscaled values that fit in a long are
+   * kept in the BigDecimal itself; bigger ones need a BigInteger.
+   */
+  static long bigDecimal(BigDecimal d) {
+    BigInteger unscaled = d.unscaledValue();
+    if (unscaled.bitLength() < 64) {
+      return BIG_DECIMAL;
+    } // if
+    return BIG_DECIMAL + bigInteger(unscaled);
+  } // bigDecimal(BigDecimal)
+
+  /**
+   * Estimate the capacity of an ArrayList that has grown to size
+   * elements one add at a time (as ArrayList grows, by half again).
+   */
+  static int listCapacity(int size) {
+    int capacity = LIST_CAPACITY;
+    while (capacity < size) {
+      capacity += capacity >> 1;
+    } // while
+    return capacity;
+  } // listCapacity(int)
+
+  /**
+   * Get the retained size of a hash or array, computing (and caching)
+   * it for every hash and array below it that doesn't know its size
+   * yet. We walk the tree with an explicit stack, so deep documents
+   * don't overflow ours.
+   */
+  static long of(JSONValue root) {
+    if (cached(root) >= 0) {
+      return cached(root);
+    } // if
+    ArrayList<JSONValue> stack = new ArrayList<JSONValue>();
+    stack.add(root);
+    while (!stack.isEmpty()) {
+      JSONValue top = stack.get(stack.size() - 1);
+      if (cached(top) >= 0) {
+        stack.remove(stack.size() - 1);
+        continue;
+      } // if
+      // Size the children first.
+      boolean ready = true;
+      if (top instanceof JSONHash) {
+        for (KVPair<JSONString,JSONValue> pair : (JSONHash) top) {
+          ready &= push(stack, pair.value());
+        } // for
+      } else {
+        for (JSONValue element : (JSONArray) top) {
+          ready &= push(stack, element);
+        } // for
+      } // if/else
+      if (ready) {
+        stack.remove(stack.size() - 1);
+        if (top instanceof JSONHash) {
+          ((JSONHash) top).retained = ((JSONHash) top).ownSize();
+        } else {
+          ((JSONArray) top).retained = ((JSONArray) top).ownSize();
+        } // if/else
+      } // if
+    } // while
+    return cached(root);
+  } // of(JSONValue)
+
+  /**
+   * Get the retained size of value, recomputing the estimate of every
+   * hash and array in it rather than trusting what they have kept,
+   * which a change below them may have left stale. Costs a walk of the
+   * whole document. We clear every estimate below value, whatever it
+   * is: a container that has dropped its own may still hold stale ones
+   * below it.
+   */
+  static long measure(JSONValue value) {
+    if (!container(value)) {
+      return value.retainedSize();
+    } // if
+    ArrayList<JSONValue> stack = new ArrayList<JSONValue>();
+    stack.add(value);
+    while (!stack.isEmpty()) {
+      JSONValue top = stack.remove(stack.size() - 1);
+      if (top instanceof JSONHash) {
+        ((JSONHash) top).retained = -1;
+        for (KVPair<JSONString,JSONValue> pair : (JSONHash) top) {
+          if (container(pair.value())) {
+            stack.add(pair.value());
+          } // if
+        } // for
+      } else {
+        ((JSONArray) top).retained = -1;
+        for (JSONValue element : (JSONArray) top) {
+          if (container(element)) {
+            stack.add(element);
+          } // if
+        } // for
+      } // if/else
+    } // while
+    return of(value);
+  } // measure(JSONValue)
+
+  /**
+   * Determine if value is a hash or an array.
+   */
+  static boolean container(JSONValue value) {
+    return (value instanceof JSONHash) || (value instanceof JSONArray);
+  } // container(JSONValue)
+
+  /**
+   * Get the cached size of a hash or array, or -1 if it has none (or
+   * value isn't a hash or an array).
+   */
+  static long cached(JSONValue value) {
+    if (value instanceof JSONHash) {
+      return ((JSONHash) value).retained;
+    } else if (value instanceof JSONArray) {
+      return ((JSONArray) value).retained;
+    } // if/else
+    return -1;
+  } // cached(JSONValue)
+
+  /**
+   * Push value onto stack if it's a hash or array whose size we need.
+   * Returns true if it didn't need pushing.
+   */
+  static boolean push(ArrayList<JSONValue> stack, JSONValue value) {
+    if (container(value) && (cached(value) < 0)) {
+      stack.add(value);
+      return false;
+    } // if
+    return true;
+  } // push(ArrayList, JSONValue)
+
+} // class RetainedSize
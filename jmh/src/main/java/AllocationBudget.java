@@ -0,0 +1,120 @@
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Check that parsing and writing each corpus document stays within its
+ * allocation budget, in bytes per operation. The budgets live in
+ * allocation-budgets.properties, one line per operation and corpus
+ * (e.g., parse.twitter = 2900000). Exits with status 1 if any operation
+ * goes over, so it can run as part of the build:
+ *
+ *   mvn -f jmh/pom.xml verify -Pallocation-budget
+ *
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class AllocationBudget {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The operations we check.
+   */
+  static final String[] OPERATIONS = { "parse", "pooledParse", "writeJSON", "toString" };
+
+  /**
+   * The number of warmup operations, so that we measure compiled code.
+   */
+  static final int WARMUP = 200;
+
+  /**
+   * The number of measured operations.
+   */
+  static final int ITERATIONS = 50;
+
+  // +------+--------------------------------------------------------
+  // | Main |
+  // +------+
+
+  /**
+   * Measure everything and compare it to the budgets.
+   */
+  public static void main(String[] args) throws Exception {
+    PrintWriter pen = new PrintWriter(System.out, true);
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    threads.setThreadAllocatedMemoryEnabled(true);
+    Properties budgets = new Properties();
+    try (InputStream in =
+        AllocationBudget.class.getResourceAsStream("/allocation-budgets.properties")) {
+      budgets.load(in);
+    } // try
+
+    int failures = 0;
+    for (String op : OPERATIONS) {
+      for (String corpus : Corpus.NAMES) {
+        String name = op + "." + corpus;
+        String budget = budgets.getProperty(name);
+        if (budget == null) {
+          pen.println("MISSING " + name + ": no budget");
+          ++failures;
+          continue;
+        } // if
+        long limit = Long.parseLong(budget.trim());
+        long used = measure(threads, workload(op, corpus));
+        boolean ok = used <= limit;
+        pen.printf("%-4s %-20s %,12d B/op (budget %,d)%n",
+            ok ? "ok" : "OVER", name, used, limit);
+        if (!ok) {
+          ++failures;
+        } // if
+      } // for corpus
+    } // for op
+
+    if (failures > 0) {
+      pen.println(failures + " allocation budget(s) exceeded");
+      System.exit(1);
+    } // if
+  } // main(String[])
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Build the workload for an operation on a corpus.
+   */
+  static Supplier<Object> workload(String op, String corpus) throws Exception {
+    if (op.equals("parse")) {
+      return new ParseWorkload(corpus);
+    } else if (op.equals("pooledParse")) {
+      return new ParseWorkload(corpus, true);
+    } // if/else
+    return new SerializeWorkload(op, corpus);
+  } // workload(String, String)
+
+  /**
+   * Find the bytes allocated per call to work.get().
+   */
+  static long measure(com.sun.management.ThreadMXBean threads, Supplier<Object> work) {
+    Object sink = null;
+    for (int i = 0; i < WARMUP; i++) {
+      sink = work.get();
+    } // for
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < ITERATIONS; i++) {
+      sink = work.get();
+    } // for
+    long after = threads.getCurrentThreadAllocatedBytes();
+    if (sink == null) {
+      throw new IllegalStateException("Workload produced nothing");
+    } // if
+    return (after - before) / ITERATIONS;
+  } // measure(ThreadMXBean, Supplier)
+
+} // class AllocationBudget
@@ -0,0 +1,194 @@
+import java.util.Random;
+
+/**
+ * Deterministic JSON documents for benchmarks. The same name always gives
+ * the same text, so results can be compared from run to run.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class Corpus {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The names of the documents we know how to build.
+   */
+  public static final String[] NAMES =
+      { "twitter", "numbers", "nested", "wide", "escapes" };
+
+  /**
+   * The seed for every document.
+   */
+  static final long SEED = 207;
+
+  /**
+   * Words for building text.
+   */
+  static final String[] WORDS =
+      { "json", "parse", "hash", "table", "value", "array", "string",
+        "number", "grinnell", "bucket", "chain", "reader", "writer", "lorem",
+        "ipsum", "dolor", "sit", "amet" };
+
+  // +----------------+----------------------------------------------
+  // | Static methods |
+  // +----------------+
+
+  /**
+   * Build the document with the given name.
+   */
+  public static String generate(String name) {
+    Random rand = new Random(SEED);
+    StringBuilder out = new StringBuilder();
+    switch (name) {
+      case "twitter":
+        twitter(out, rand, 200);
+        break;
+      case "numbers":
+        numbers(out, rand, 5000);
+        break;
+      case "nested":
+        nested(out, rand, 200);
+        break;
+      case "wide":
+        wide(out, rand, 2000);
+        break;
+      case "escapes":
+        escapes(out, rand, 500);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown corpus: " + name);
+    } // switch
+    return out.toString();
+  } // generate(String)
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * An array of statuses that look like a social-media timeline: ids,
+   * short text, a nested user, and a few flags.
+   */
+  static void twitter(StringBuilder out, Random rand, int count) {
+    out.append('[');
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        out.append(", ");
+      } // if
+      out.append("{\"id\": ").append(1000000000L + rand.nextInt(1000000000));
+      out.append(", \"text\": \"").append(sentence(rand, 12)).append('"');
+      out.append(", \"user\": {\"id\": ").append(rand.nextInt(100000));
+      out.append(", \"name\": \"").append(word(rand)).append('"');
+      out.append(", \"followers\": ").append(rand.nextInt(50000));
+      out.append(", \"verified\": ").append(rand.nextBoolean());
+      out.append("}, \"retweets\": ").append(rand.nextInt(100));
+      out.append(", \"favorited\": ").append(rand.nextBoolean());
+      out.append(", \"place\": null");
+      out.append(", \"tags\": [\"").append(word(rand)).append("\", \"")
+          .append(word(rand)).append("\"]}");
+    } // for
+    out.append(']');
+  } // twitter(StringBuilder, Random, int)
+
+  /**
+   * An array of integers and reals of varying sizes.
+   */
+  static void numbers(StringBuilder out, Random rand, int count) {
+    out.append('[');
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        out.append(", ");
+      } // if
+      switch (i % 4) {
+        case 0:
+          out.append(rand.nextInt(10));
+          break;
+        case 1:
+          out.append(rand.nextLong());
+          break;
+        case 2:
+          out.append(rand.nextInt(100000)).append('.').append(rand.nextInt(1000));
+          break;
+        default:
+          out.append(rand.nextInt(10)).append('.').append(rand.nextInt(100))
+              .append('e').append(rand.nextInt(20) - 10);
+      } // switch
+    } // for
+    out.append(']');
+  } // numbers(StringBuilder, Random, int)
+
+  /**
+   * Arrays and hashes nested depth levels deep.
+   */
+  static void nested(StringBuilder out, Random rand, int depth) {
+    for (int i = 0; i < depth; i++) {
+      if (i % 2 == 0) {
+        out.append("{\"").append(word(rand)).append("\": ");
+      } else {
+        out.append('[').append(rand.nextInt(100)).append(", ");
+      } // if/else
+    } // for
+    out.append("\"bottom\"");
+    for (int i = depth - 1; i >= 0; i--) {
+      out.append((i % 2 == 0) ? '}' : ']');
+    } // for
+  } // nested(StringBuilder, Random, int)
+
+  /**
+   * One hash with many keys.
+   */
+  static void wide(StringBuilder out, Random rand, int count) {
+    out.append('{');
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        out.append(", ");
+      } // if
+      out.append("\"").append(word(rand)).append('_').append(i).append("\": ");
+      out.append(rand.nextInt(1000));
+    } // for
+    out.append('}');
+  } // wide(StringBuilder, Random, int)
+
+  /**
+   * An array of strings full of escapes.
+   */
+  static void escapes(StringBuilder out, Random rand, int count) {
+    String[] escapes = { "\\n", "\\t", "\\\\", "\\/", "\\r", "\\u00e9", "\\b", "\\\"" };
+    out.append('[');
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        out.append(", ");
+      } // if
+      out.append('"');
+      for (int j = 0; j < 8; j++) {
+        out.append(word(rand)).append(escapes[rand.nextInt(escapes.length)]);
+      } // for
+      out.append('"');
+    } // for
+    out.append(']');
+  } // escapes(StringBuilder, Random, int)
+
+  /**
+   * Pick a word.
+   */
+  static String word(Random rand) {
+    return WORDS[rand.nextInt(WORDS.length)];
+  } // word(Random)
+
+  /**
+   * Build a sentence of count words.
+   */
+  static String sentence(Random rand, int count) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        result.append(' ');
+      } // if
+      result.append(word(rand));
+    } // for
+    return result.toString();
+  } // sentence(Random, int)
+
+} // class Corpus
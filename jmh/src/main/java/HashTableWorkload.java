@@ -0,0 +1,138 @@
+import java.util.function.Supplier;
+
+/**
+ * One of the basic ChainedHashTable operations, on a table of a given
+ * size, keyed the way JSONHash keys it. See benchmarks.HashTableBenchmark.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class HashTableWorkload implements Supplier<Object> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The operation ("set", "get", "iterator", or "expand"), chosen once
+   * so that timing get() doesn't time choosing it.
+   */
+  Supplier<Object> op;
+
+  /**
+   * The keys, in insertion order.
+   */
+  JSONString[] keys;
+
+  /**
+   * The values, in insertion order.
+   */
+  JSONValue[] values;
+
+  /**
+   * A table holding every key.
+   */
+  ChainedHashTable<JSONString, JSONValue> full;
+
+  /**
+   * The next key for get.
+   */
+  int next = 0;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a workload for op on tables of size entries.
+   */
+  public HashTableWorkload(String op, String size) {
+    int n = Integer.parseInt(size);
+    this.keys = new JSONString[n];
+    this.values = new JSONValue[n];
+    this.full = new ChainedHashTable<JSONString, JSONValue>();
+    for (int i = 0; i < n; i++) {
+      this.keys[i] = new JSONString(Corpus.WORDS[i % Corpus.WORDS.length] + "_" + i);
+      this.values[i] = new JSONInteger(i);
+      this.full.set(this.keys[i], this.values[i]);
+    } // for
+    switch (op) {
+      case "set":
+        this.op = this::fill;
+        break;
+      case "get":
+        this.op = this::lookup;
+        break;
+      case "iterator":
+        this.op = this::iterate;
+        break;
+      case "expand":
+        this.op = this::expand;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown operation: " + op);
+    } // switch
+  } // HashTableWorkload(String, String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Do the operation once. For set, that means filling a new table; for
+   * get, one lookup; for iterator, one pass over the table; and for
+   * expand, one expansion of a copy of the full table.
+   */
+  public Object get() {
+    return this.op.get();
+  } // get()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Fill a new table with every key.
+   */
+  Object fill() {
+    ChainedHashTable<JSONString, JSONValue> table =
+        new ChainedHashTable<JSONString, JSONValue>();
+    for (int i = 0; i < this.keys.length; i++) {
+      table.set(this.keys[i], this.values[i]);
+    } // for
+    return table;
+  } // fill()
+
+  /**
+   * Look up the next key.
+   */
+  Object lookup() {
+    if (++this.next == this.keys.length) {
+      this.next = 0;
+    } // if
+    return this.full.get(this.keys[this.next]);
+  } // lookup()
+
+  /**
+   * Visit every pair of the full table.
+   */
+  Object iterate() {
+    int total = 0;
+    for (KVPair<JSONString, JSONValue> pair : this.full) {
+      total += pair.key().hashCode();
+    } // for
+    return total;
+  } // iterate()
+
+  /**
+   * Expand a copy of the full table.
+   */
+  Object expand() {
+    ChainedHashTable<JSONString, JSONValue> copy =
+        new ChainedHashTable<JSONString, JSONValue>();
+    copy.buckets = this.full.buckets.clone();
+    copy.size = this.full.size;
+    copy.expand();
+    return copy;
+  } // expand()
+
+} // class HashTableWorkload
@@ -0,0 +1,77 @@
+import java.io.StringReader;
+import java.util.function.Supplier;
+
+/**
+ * Parse one corpus document. See benchmarks.ParseBenchmark. A pooled
+ * workload parses with a JSONPool and shared values, releasing each
+ * document before parsing the next, as a request handler would.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class ParseWorkload implements Supplier<Object> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The text to parse.
+   */
+  String text;
+
+  /**
+   * The parser for a pooled workload, or null.
+   */
+  JSONParser parser;
+
+  /**
+   * The last document a pooled workload parsed.
+   */
+  JSONValue last;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a workload for the named corpus.
+   */
+  public ParseWorkload(String corpus) {
+    this(corpus, false);
+  } // ParseWorkload(String)
+
+  /**
+   * Build a workload for the named corpus, pooled or not.
+   */
+  public ParseWorkload(String corpus, boolean pooled) {
+    this.text = Corpus.generate(corpus);
+    if (pooled) {
+      this.parser = new JSONParser();
+      this.parser.setShareValues(true);
+      this.parser.setPool(JSONPool.forThread());
+    } // if
+  } // ParseWorkload(String, boolean)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Parse the text once.
+   */
+  public Object get() {
+    try {
+      if (this.parser != null) {
+        if (this.last != null) {
+          JSONPool.forThread().release(this.last);
+        } // if
+        this.last = this.parser.parse(new StringReader(this.text));
+        return this.last;
+      } // if
+      return JSON.parse(this.text);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    } // try/catch
+  } // get()
+
+} // class ParseWorkload
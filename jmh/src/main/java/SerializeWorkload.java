@@ -0,0 +1,72 @@
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.function.Supplier;
+
+/**
+ * Write one parsed corpus document, either with writeJSON or with
+ * toString. See benchmarks.SerializeBenchmark.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class SerializeWorkload implements Supplier<Object> {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * The value to write.
+   */
+  JSONValue value;
+
+  /**
+   * Do we use writeJSON (rather than toString)?
+   */
+  boolean writeJSON;
+
+  /**
+   * The length of what writeJSON writes. We size its buffer to fit, so
+   * that we measure the writing and not the buffer growing, which
+   * depends on the order of the keys and so on the hash seed.
+   */
+  int length;
+
+  // +--------------+------------------------------------------------
+  // | Constructors |
+  // +--------------+
+
+  /**
+   * Build a workload that writes the named corpus, where mode is
+   * "writeJSON" or "toString".
+   */
+  public SerializeWorkload(String mode, String corpus) throws Exception {
+    this.value = JSON.parse(Corpus.generate(corpus));
+    if (mode.equals("writeJSON")) {
+      this.writeJSON = true;
+      this.length = this.value.toString().length() + System.lineSeparator().length();
+    } else if (mode.equals("toString")) {
+      this.writeJSON = false;
+    } else {
+      throw new IllegalArgumentException("Unknown mode: " + mode);
+    } // if/else
+  } // SerializeWorkload(String, String)
+
+  // +---------+-----------------------------------------------------
+  // | Methods |
+  // +---------+
+
+  /**
+   * Write the value once.
+   */
+  public Object get() {
+    if (!this.writeJSON) {
+      return this.value.toString();
+    } // if
+    StringWriter out = new StringWriter(this.length);
+    PrintWriter pen = new PrintWriter(out);
+    this.value.writeJSON(pen);
+    pen.flush();
+    return out;
+  } // get()
+
+} // class SerializeWorkload
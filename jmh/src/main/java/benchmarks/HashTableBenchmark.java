@@ -0,0 +1,99 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the basic ChainedHashTable operations.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashTableBenchmark {
+
+  /**
+   * The number of entries in the table.
+   */
+  @Param({ "16", "1024", "65536" })
+  public String size;
+
+  /**
+   * Fill a new table.
+   */
+  Supplier<Object> set;
+
+  /**
+   * Look up one key.
+   */
+  Supplier<Object> get;
+
+  /**
+   * Visit every pair.
+   */
+  Supplier<Object> iterator;
+
+  /**
+   * Expand a full table once.
+   */
+  Supplier<Object> expand;
+
+  /**
+   * Build the tables.
+   */
+  @Setup
+  public void setup() {
+    this.set = Workloads.load("HashTableWorkload", "set", this.size);
+    this.get = Workloads.load("HashTableWorkload", "get", this.size);
+    this.iterator = Workloads.load("HashTableWorkload", "iterator", this.size);
+    this.expand = Workloads.load("HashTableWorkload", "expand", this.size);
+  } // setup()
+
+  /**
+   * Fill a new table with size entries.
+   */
+  @Benchmark
+  public Object set() {
+    return this.set.get();
+  } // set()
+
+  /**
+   * Look up one key.
+   */
+  @Benchmark
+  public Object get() {
+    return this.get.get();
+  } // get()
+
+  /**
+   * Visit every pair.
+   */
+  @Benchmark
+  public Object iterator() {
+    return this.iterator.get();
+  } // iterator()
+
+  /**
+   * Expand a copy of the full table.
+   */
+  @Benchmark
+  public Object expand() {
+    return this.expand.get();
+  } // expand()
+
+} // class HashTableBenchmark
@@ -0,0 +1,57 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of JSON.parse on each corpus.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+  /**
+   * The corpus to parse.
+   */
+  @Param({ "twitter", "numbers", "nested", "wide", "escapes" })
+  public String corpus;
+
+  /**
+   * The workload.
+   */
+  Supplier<Object> parse;
+
+  /**
+   * Generate the document.
+   */
+  @Setup
+  public void setup() {
+    this.parse = Workloads.load("ParseWorkload", this.corpus);
+  } // setup()
+
+  /**
+   * Parse the document.
+   */
+  @Benchmark
+  public Object parse() {
+    return this.parse.get();
+  } // parse()
+
+} // class ParseBenchmark
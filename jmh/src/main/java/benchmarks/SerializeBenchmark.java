@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of writeJSON and toString on each parsed corpus.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeBenchmark {
+
+  /**
+   * The corpus to write.
+   */
+  @Param({ "twitter", "numbers", "nested", "wide", "escapes" })
+  public String corpus;
+
+  /**
+   * The writeJSON workload.
+   */
+  Supplier<Object> writeJSON;
+
+  /**
+   * The toString workload.
+   */
+  Supplier<Object> toString;
+
+  /**
+   * Parse the document.
+   */
+  @Setup
+  public void setup() {
+    this.writeJSON = Workloads.load("SerializeWorkload", "writeJSON", this.corpus);
+    this.toString = Workloads.load("SerializeWorkload", "toString", this.corpus);
+  } // setup()
+
+  /**
+   * Write the document with writeJSON.
+   */
+  @Benchmark
+  public Object writeJSON() {
+    return this.writeJSON.get();
+  } // writeJSON()
+
+  /**
+   * Write the document with toString.
+   */
+  @Benchmark
+  public Object toStringJSON() {
+    return this.toString.get();
+  } // toStringJSON()
+
+} // class SerializeBenchmark
@@ -0,0 +1,38 @@
+package benchmarks;
+
+import java.util.function.Supplier;
+
+/**
+ * Load the workloads that do the real work. JMH won't generate code for
+ * benchmarks in the default package, and a named package can't refer to
+ * the default-package classes, so each benchmark loads its workload by
+ * name once and then makes a single monomorphic interface call per
+ * operation, which the JIT inlines.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+final class Workloads {
+
+  /**
+   * No instances.
+   */
+  private Workloads() {
+  } // Workloads()
+
+  /**
+   * Build the named default-package workload from its string arguments.
+   */
+  @SuppressWarnings("unchecked")
+  static Supplier<Object> load(String className, String... args) {
+    Class<?>[] types = new Class<?>[args.length];
+    java.util.Arrays.fill(types, String.class);
+    try {
+      return (Supplier<Object>) Class.forName(className)
+          .getConstructor(types)
+          .newInstance((Object[]) args);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot load workload " + className, e);
+    } // try/catch
+  } // load(String, String...)
+
+} // class Workloads
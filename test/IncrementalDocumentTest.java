@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.text.ParseException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check that editing an IncrementalDocument gives the value a full
+ * re-parse of the edited text gives.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class IncrementalDocumentTest {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * What we insert: whole values, pieces of values, and punctuation.
+   */
+  static final String[] INSERTS = { "1", "-", "0", ".5", "e3", "\"", "\"x\"", "a", "\\n",
+      ",", ", 2", ":", "[", "]", "{", "}", "[]", "{}", "true", "nul", " ", "\"k\": 4, " };
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Random edits agree with re-parsing the whole text, whether or not
+   * the text still parses.
+   */
+  @Test
+  public void editsMatchFullParse() throws Exception {
+    Random random = new Random(50);
+    for (int round = 0; round < 200; round++) {
+      String text = JSONParserTest.document(random, 4);
+      IncrementalDocument doc = new IncrementalDocument(text);
+      for (int step = 0; step < 30; step++) {
+        int offset = random.nextInt(text.length() + 1);
+        int deleted = random.nextInt(Math.min(4, text.length() - offset) + 1);
+        String inserted = random.nextBoolean() ? ""
+            : INSERTS[random.nextInt(INSERTS.length)];
+        String edited = text.substring(0, offset) + inserted
+            + text.substring(offset + deleted);
+        JSONValue expected;
+        try {
+          expected = JSON.parse(edited);
+        } catch (ParseException e) {
+          expected = null;
+        } // try/catch
+        if (expected == null) {
+          final int o = offset;
+          final int d = deleted;
+          assertThrows(ParseException.class, () -> doc.edit(o, d, inserted), edited);
+          assertNull(doc.root(), edited);
+        } else {
+          assertEquals(expected, doc.edit(offset, deleted, inserted), text + " -> " + edited);
+          assertEquals(expected, doc.root(), edited);
+        } // if/else
+        assertEquals(edited, doc.text());
+        text = edited;
+      } // for
+    } // for
+  } // editsMatchFullParse()
+
+  /**
+   * An edit inside one value leaves the containers beside it alone.
+   */
+  @Test
+  public void editsAreLocal() throws Exception {
+    IncrementalDocument doc =
+        new IncrementalDocument("{\"a\": [1, 2, 3], \"b\": {\"c\": \"x\"}}");
+    JSONHash root = (JSONHash) doc.root();
+    JSONValue b = root.get(new JSONString("b"));
+    // Change the 2 to 25.
+    doc.edit(10, 1, "25");
+    assertSame(root, doc.root());
+    assertSame(b, root.get(new JSONString("b")));
+    assertEquals(JSON.parse("[1, 25, 3]"), root.get(new JSONString("a")));
+    assertEquals(2, doc.reparsed());
+  } // editsAreLocal()
+
+} // class IncrementalDocumentTest
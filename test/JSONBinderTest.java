@@ -0,0 +1,103 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.text.ParseException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check that the binder limits nesting, as the parser does, before it
+ * runs out of stack.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONBinderTest {
+
+  // +---------+-----------------------------------------------------
+  // | Classes |
+  // +---------+
+
+  /**
+   * A linked list, nested one object per node.
+   */
+  public static class Node {
+    public Node next;
+  } // class Node
+
+  /**
+   * A tree, nested an object and an array per level.
+   */
+  public static class Tree {
+    public List<Tree> children;
+  } // class Tree
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Objects nested up to the limit are read; one more is rejected.
+   */
+  @Test
+  public void objectsAtTheLimit() throws Exception {
+    int max = JSONBinder.MAX_DEPTH;
+    Node node = JSONBinder.forType(Node.class).read(nodes(max));
+    int length = 0;
+    for (; node != null; node = node.next) {
+      ++length;
+    } // for
+    assertEquals(max, length);
+    ParseException e = assertThrows(ParseException.class,
+        () -> JSONBinder.forType(Node.class).read(nodes(max + 1)));
+    assertEquals("Nested more than " + max + " deep", e.getMessage());
+  } // objectsAtTheLimit()
+
+  /**
+   * Very deep input is rejected rather than overflowing the stack.
+   */
+  @Test
+  public void deepObjects() {
+    ParseException e = assertThrows(ParseException.class,
+        () -> JSONBinder.forType(Node.class).read(nodes(200000)));
+    assertEquals("Nested more than " + JSONBinder.MAX_DEPTH + " deep",
+        e.getMessage());
+  } // deepObjects()
+
+  /**
+   * Arrays count toward the depth, as do containers in values we skip.
+   */
+  @Test
+  public void arraysAndSkippedValues() throws Exception {
+    int max = JSONBinder.MAX_DEPTH;
+    // Each level is an object and an array.
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < max / 2; i++) {
+      text.append("{\"children\": [");
+    } // for
+    String open = text.toString();
+    String close = "]}".repeat(max / 2);
+    JSONBinder.forType(Tree.class).read(open + close);
+    assertThrows(ParseException.class,
+        () -> JSONBinder.forType(Tree.class).read(open + "{}" + close));
+    // An unknown key's value nests inside the objects around it.
+    Node node = JSONBinder.forType(Node.class).read("{\"skip\": [[[]]], \"next\": {}}");
+    assertNull(node.next.next);
+    String skipped = "[".repeat(max - 1) + "]".repeat(max - 1);
+    JSONBinder.forType(Node.class).read("{\"skip\": " + skipped + "}");
+    assertThrows(ParseException.class,
+        () -> JSONBinder.forType(Node.class).read("{\"skip\": [" + skipped + "]}"));
+  } // arraysAndSkippedValues()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Get the text of count nodes, each the next of the one before.
+   */
+  static String nodes(int count) {
+    return "{\"next\": ".repeat(count - 1) + "{}" + "}".repeat(count - 1);
+  } // nodes(int)
+
+} // class JSONBinderTest
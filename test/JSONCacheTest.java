@@ -0,0 +1,93 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check that JSONCache charges documents what they hold, even after
+ * they change.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONCacheTest {
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Growing an array deep in a cached document, then setting a field of
+   * a hash above it, and caching it again charges what the same
+   * document would be charged if it had never been sized.
+   */
+  @Test
+  public void chargeAfterNestedMutation() throws Exception {
+    String text = "{\"a\":{\"b\":{\"c\":[1]}}}";
+    JSONHash document = (JSONHash) JSON.parse(text);
+    JSONHash twin = (JSONHash) JSON.parse(text);
+    JSONCache<String> cache = new JSONCache<String>(Long.MAX_VALUE);
+    cache.put("doc", document);
+    long before = cache.bytes();
+
+    grow(document);
+    grow(twin);
+    cache.put("doc", document);
+    assertEquals(twin.retainedSize() + JSONCache.ENTRY, cache.bytes());
+    assertTrue(cache.bytes() > before + 100000 * RetainedSize.WRAPPER);
+  } // chargeAfterNestedMutation()
+
+  /**
+   * Mutations at every level, each followed by a put, keep the charge
+   * in step with a document that gets the same mutations but is sized
+   * only at the end.
+   */
+  @Test
+  public void chargeAfterEachMutation() throws Exception {
+    String text = "{\"a\":[{\"b\":[]}, 2], \"c\":{}}";
+    JSONHash document = (JSONHash) JSON.parse(text);
+    JSONCache<String> cache = new JSONCache<String>(Long.MAX_VALUE);
+    for (int i = 0; i < 50; i++) {
+      mutate(document, i);
+      cache.put("doc", document);
+      JSONHash twin = (JSONHash) JSON.parse(text);
+      for (int j = 0; j <= i; j++) {
+        mutate(twin, j);
+      } // for
+      assertEquals(twin.retainedSize() + JSONCache.ENTRY, cache.bytes(), "step " + i);
+    } // for
+  } // chargeAfterEachMutation()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Add 100,000 strings to the array at a.b.c, then set a field of a.
+   */
+  static void grow(JSONHash document) {
+    JSONHash middle = (JSONHash) document.get(new JSONString("a"));
+    JSONHash inner = (JSONHash) middle.get(new JSONString("b"));
+    JSONArray array = (JSONArray) inner.get(new JSONString("c"));
+    for (int i = 0; i < 100000; i++) {
+      array.add(new JSONString("s" + i));
+    } // for
+    middle.set(new JSONString("d"), JSONConstant.TRUE);
+  } // grow(JSONHash)
+
+  /**
+   * Make the ith of a series of changes to {"a":[{"b":[]}, 2], "c":{}},
+   * at one of its three levels.
+   */
+  static void mutate(JSONHash document, int i) {
+    JSONArray a = (JSONArray) document.get(new JSONString("a"));
+    JSONHash b = (JSONHash) a.get(0);
+    if (i % 3 == 0) {
+      ((JSONArray) b.get(new JSONString("b"))).add(new JSONString("value " + i));
+    } else if (i % 3 == 1) {
+      b.set(new JSONString("k" + i), JSONInteger.valueOf(i * 1000));
+    } else {
+      a.set(1, new JSONString("x".repeat(i)));
+    } // if/else
+  } // mutate(JSONHash, int)
+
+} // class JSONCacheTest
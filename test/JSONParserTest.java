@@ -0,0 +1,168 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check the parser against the validator: on any input, both accept it
+ * or both reject it.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONParserTest {
+
+  // +-----------+---------------------------------------------------
+  // | Constants |
+  // +-----------+
+
+  /**
+   * The characters we mutate documents with: the ones the grammar cares
+   * about most.
+   */
+  static final String MUTATIONS = "{}[],:\"\\ -+.eE0123tfnu";
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Documents we generate are accepted by both, and read back the same.
+   */
+  @Test
+  public void validDocuments() throws Exception {
+    Random random = new Random(26);
+    for (int i = 0; i < 500; i++) {
+      String text = document(random, 4);
+      JSONValue value = JSON.parse(text);
+      JSON.validate(text.getBytes(StandardCharsets.UTF_8));
+      assertEquals(value, JSON.parse(value.toString()), text);
+    } // for
+  } // validDocuments()
+
+  /**
+   * Documents with one character inserted, deleted, or replaced are
+   * accepted by both or rejected by both.
+   */
+  @Test
+  public void mutatedDocuments() throws Exception {
+    Random random = new Random(41);
+    for (int i = 0; i < 20000; i++) {
+      StringBuilder text = new StringBuilder(document(random, 3));
+      int at = random.nextInt(text.length() + 1);
+      char c = MUTATIONS.charAt(random.nextInt(MUTATIONS.length()));
+      int edit = random.nextInt(3);
+      if ((edit == 0) || (at == text.length())) {
+        text.insert(at, c);
+      } else if (edit == 1) {
+        text.deleteCharAt(at);
+      } else {
+        text.setCharAt(at, c);
+      } // if/else
+      assertAgree(text.toString());
+    } // for
+  } // mutatedDocuments()
+
+  /**
+   * Numbers outside the grammar are rejected by both.
+   */
+  @Test
+  public void invalidNumbers() throws Exception {
+    String[] numbers = { "01", "-01", "1.", ".5", "-", "+1", "1e", "1e+", "1.e3", "00",
+        "0x1p3", "NaN", "1f", "[-01, 1.]", "[1,]", "{\"a\": 1,}" };
+    for (String number : numbers) {
+      assertThrows(ParseException.class, () -> JSON.parse(number), number);
+      assertAgree(number);
+    } // for
+  } // invalidNumbers()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * Make sure the parser and the validator agree on text. The parser
+   * may also reject a number that fits the grammar but not a
+   * BigDecimal; the validator has no such limit.
+   */
+  static void assertAgree(String text) {
+    boolean parsed = true;
+    boolean validated = true;
+    try {
+      JSON.parse(text);
+    } catch (ParseException e) {
+      if (e.getMessage().equals("Number out of range")) {
+        return;
+      } // if
+      parsed = false;
+    } catch (Exception e) {
+      throw new AssertionError("Unexpected exception parsing " + text, e);
+    } // try/catch
+    try {
+      JSON.validate(text.getBytes(StandardCharsets.UTF_8));
+    } catch (ParseException e) {
+      validated = false;
+    } // try/catch
+    assertEquals(validated, parsed, "parse and validate disagree on " + text);
+  } // assertAgree(String)
+
+  /**
+   * Generate the text of a random document, nested at most depth deep.
+   */
+  static String document(Random random, int depth) {
+    StringBuilder text = new StringBuilder();
+    value(random, depth, text);
+    return text.toString();
+  } // document(Random, int)
+
+  /**
+   * Append a random value to text.
+   */
+  static void value(Random random, int depth, StringBuilder text) {
+    int kind = random.nextInt((depth > 0) ? 7 : 5);
+    if (kind == 0) {
+      text.append(new String[] { "true", "false", "null" }[random.nextInt(3)]);
+    } else if (kind == 1) {
+      text.append(new String[] { "0", "-0", "7", "-12", "3.25", "1e5", "-2.5E-3", "0.0",
+          "123456789012345678901234567890" }[random.nextInt(9)]);
+    } else if (kind == 2) {
+      text.append(random.nextInt());
+    } else if ((kind == 3) || (kind == 4)) {
+      string(random, text);
+    } else if (kind == 5) {
+      text.append('[');
+      int size = random.nextInt(4);
+      for (int i = 0; i < size; i++) {
+        text.append((i > 0) ? ", " : "");
+        value(random, depth - 1, text);
+      } // for
+      text.append(']');
+    } else {
+      text.append('{');
+      int size = random.nextInt(4);
+      for (int i = 0; i < size; i++) {
+        text.append((i > 0) ? ", " : "");
+        text.append("\"k").append(i).append("\": ");
+        value(random, depth - 1, text);
+      } // for
+      text.append('}');
+    } // if/else
+  } // value(Random, int, StringBuilder)
+
+  /**
+   * Append a random string, with some escapes and non-ASCII characters.
+   */
+  static void string(Random random, StringBuilder text) {
+    String[] pieces = { "a", "bc", " ", "\\n", "\\\"", "\\\\", "\\u00e9", "é", "中",
+        "\\/", "\\t" };
+    text.append('"');
+    int length = random.nextInt(5);
+    for (int i = 0; i < length; i++) {
+      text.append(pieces[random.nextInt(pieces.length)]);
+    } // for
+    text.append('"');
+  } // string(Random, StringBuilder)
+
+} // class JSONParserTest
@@ -0,0 +1,162 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Check JSONQuery against the same aggregation done the slow way, by
+ * parsing every line.
+ * @author Connor Heagy
+ * @author Alex Maret
+ */
+public class JSONQueryTest {
+
+  // +--------+------------------------------------------------------
+  // | Fields |
+  // +--------+
+
+  /**
+   * Where we write files to query.
+   */
+  @TempDir
+  Path dir;
+
+  // +-------+-------------------------------------------------------
+  // | Tests |
+  // +-------+
+
+  /**
+   * Grouping, filtering, and every aggregate agree with a naive
+   * aggregation, on a stream and on a file split across threads.
+   */
+  @Test
+  public void matchesNaiveAggregation() throws Exception {
+    Random random = new Random(46);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      line(random, text);
+    } // for
+    byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+    Path path = this.dir.resolve("lines.json");
+    Files.write(path, bytes);
+
+    JSONArray expected = naive(text.toString());
+    assertEquals(expected, query().run(new ByteArrayInputStream(bytes)));
+    assertEquals(expected, query().setThreads(4).run(path));
+  } // matchesNaiveAggregation()
+
+  // +---------+-----------------------------------------------------
+  // | Helpers |
+  // +---------+
+
+  /**
+   * The query we check.
+   */
+  static JSONQuery query() {
+    return new JSONQuery().groupBy("req.method").where("level", new JSONString("error"))
+        .count().sum("bytes").min("bytes").max("latency").distinct("user");
+  } // query()
+
+  /**
+   * Run query() by parsing each line.
+   */
+  static JSONArray naive(String text) throws Exception {
+    JSONString level = new JSONString("level");
+    JSONString req = new JSONString("req");
+    JSONString method = new JSONString("method");
+    JSONString bytes = new JSONString("bytes");
+    JSONString latency = new JSONString("latency");
+    JSONString user = new JSONString("user");
+    Map<JSONValue, long[]> totals = new LinkedHashMap<JSONValue, long[]>();
+    Map<JSONValue, Double> latencies = new LinkedHashMap<JSONValue, Double>();
+    Map<JSONValue, Set<String>> users = new LinkedHashMap<JSONValue, Set<String>>();
+    for (String line : text.split("\n")) {
+      JSONHash hash = (JSONHash) JSON.parse(line);
+      if (!new JSONString("error").equals(field(hash, level))) {
+        continue;
+      } // if
+      JSONValue group = JSONConstant.NULL;
+      JSONValue request = field(hash, req);
+      if ((request instanceof JSONHash) && (field((JSONHash) request, method) != null)) {
+        group = field((JSONHash) request, method);
+      } // if
+      // count, sum, min, and whether we've seen a number
+      long[] total = totals.computeIfAbsent(group, (g) -> new long[4]);
+      ++total[0];
+      JSONValue b = field(hash, bytes);
+      if (b instanceof JSONInteger) {
+        long n = Long.parseLong(b.toString());
+        total[1] += n;
+        total[2] = (total[3] == 0) ? n : Math.min(total[2], n);
+        total[3] = 1;
+      } // if
+      JSONValue l = field(hash, latency);
+      if (l instanceof JSONReal) {
+        double d = Double.parseDouble(l.toString());
+        latencies.merge(group, d, Math::max);
+      } // if
+      users.computeIfAbsent(group, (g) -> new HashSet<String>()).add(hash.get(user).toString());
+    } // for
+
+    JSONArray rows = new JSONArray();
+    for (Map.Entry<JSONValue, long[]> entry : totals.entrySet()) {
+      JSONValue group = entry.getKey();
+      long[] total = entry.getValue();
+      JSONHash row = new JSONHash();
+      row.set(new JSONString("req.method"), group);
+      row.set(new JSONString("count"), JSONInteger.valueOf(total[0]));
+      row.set(new JSONString("sum(bytes)"),
+          (total[3] == 0) ? JSONConstant.NULL : JSONInteger.valueOf(total[1]));
+      row.set(new JSONString("min(bytes)"),
+          (total[3] == 0) ? JSONConstant.NULL : JSONInteger.valueOf(total[2]));
+      row.set(new JSONString("max(latency)"), latencies.containsKey(group)
+          ? new JSONReal(latencies.get(group)) : JSONConstant.NULL);
+      row.set(new JSONString("distinct(user)"), JSONInteger.valueOf(users.get(group).size()));
+      rows.add(row);
+    } // for
+    return rows;
+  } // naive(String)
+
+  /**
+   * Get a field of hash, or null if it's missing.
+   */
+  static JSONValue field(JSONHash hash, JSONString key) {
+    return hash.getHash().containsKey(key) ? hash.get(key) : null;
+  } // field(JSONHash, JSONString)
+
+  /**
+   * Append a random line, with some fields missing or of the wrong type
+   * and a random document the query has to skip.
+   */
+  static void line(Random random, StringBuilder text) {
+    text.append("{\"level\": ").append(random.nextInt(3) == 0 ? "\"info\"" : "\"error\"");
+    text.append(", \"extra\": ");
+    JSONParserTest.value(random, 3, text);
+    int method = random.nextInt(5);
+    if (method < 4) {
+      text.append(", \"req\": {\"path\": \"/x\", \"method\": ");
+      text.append(new String[] { "\"GET\"", "\"PUT\"", "\"DELETE\"", "7" }[method]);
+      text.append('}');
+    } // if
+    int bytes = random.nextInt(10);
+    if (bytes < 8) {
+      text.append(", \"bytes\": ").append(random.nextInt(2000000) - 1000);
+    } else if (bytes == 8) {
+      text.append(", \"bytes\": \"lots\"");
+    } // if/else
+    if (random.nextInt(20) != 0) {
+      text.append(", \"latency\": ").append(random.nextInt(4000) / 4.0);
+    } // if
+    text.append(", \"user\": \"u").append(random.nextInt(50)).append("\"}\n");
+  } // line(Random, StringBuilder)
+
+} // class JSONQueryTest